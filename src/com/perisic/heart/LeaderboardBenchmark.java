@@ -0,0 +1,149 @@
+package com.perisic.heart;
+
+import com.perisic.heart.database.DatabaseConnection;
+import com.perisic.heart.database.LeaderboardTable;
+import com.perisic.heart.metrics.LatencyHistogram;
+import java.sql.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the leaderboard queries against synthetic players as the table
+ * grows, next to the COUNT(*) rank query they replaced.
+ *
+ * Top-N should stay flat as players are added and rank should barely move,
+ * while the COUNT(*) rank grows with the table. Runs against copies of the
+ * leaderboard tables (bench_*), which are dropped afterwards unless
+ * -Dheart.bench.keep=true.
+ *
+ * Run with: java com.perisic.heart.LeaderboardBenchmark [players] [queries]
+ */
+public class LeaderboardBenchmark {
+    private static final LeaderboardTable TABLE =
+        new LeaderboardTable("bench_leaderboard_ranked", "bench_leaderboard_score_counts");
+    private static final String COUNT_RANK_SQL =
+        "SELECT COUNT(*) + 1 FROM bench_leaderboard_ranked " +
+        "WHERE total_score > (SELECT total_score FROM bench_leaderboard_ranked WHERE username = ?)";
+    private static final int INSERT_BATCH = 10_000;
+    private static final int MAX_SCORE = 20_000;
+    
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                System.out.println("No database connection");
+                return;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(TABLE.dropSql());
+                stmt.execute(TABLE.createRanked);
+                stmt.execute(TABLE.createCounts);
+            }
+            
+            System.out.printf("%10s %12s %12s %12s %12s %14s%n",
+                "players", "top 10", "top 100", "rank", "position", "COUNT(*) rank");
+            Random random = new Random(42);
+            int inserted = 0;
+            for (int checkpoint = Math.min(players, 10_000); inserted < players; checkpoint = Math.min(players, checkpoint * 10)) {
+                long start = System.currentTimeMillis();
+                inserted = fill(conn, inserted, checkpoint, random);
+                recount(conn);
+                System.out.printf("%10s (loaded in %d s)%n", "", (System.currentTimeMillis() - start) / 1000);
+                
+                System.out.printf("%10d %12s %12s %12s %12s %14s%n", inserted,
+                    p50(timeTop(conn, 10, queries)),
+                    p50(timeTop(conn, 100, queries)),
+                    p50(timeByPlayer(conn, TABLE.rankSql, inserted, queries)),
+                    p50(timeByPlayer(conn, TABLE.positionSql, inserted, queries)),
+                    p50(timeByPlayer(conn, COUNT_RANK_SQL, inserted, Math.max(1, queries / 10))));
+            }
+            
+            if (!Boolean.getBoolean("heart.bench.keep")) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(TABLE.dropSql());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Add players until there are upTo. Scores are skewed the way real ones
+     * are: most players low, a few very high.
+     */
+    private static int fill(Connection conn, int from, int upTo, Random random) throws SQLException {
+        String sql = "INSERT INTO bench_leaderboard_ranked " +
+                     "(user_id, username, total_score, accuracy, games_played) VALUES (?, ?, ?, ?, ?)";
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int id = from + 1; id <= upTo; id++) {
+                double skew = random.nextDouble();
+                stmt.setInt(1, id);
+                stmt.setString(2, "bench_" + id);
+                stmt.setInt(3, (int) (skew * skew * skew * MAX_SCORE));
+                stmt.setDouble(4, Math.round(random.nextDouble() * 10_000) / 100.0);
+                stmt.setInt(5, 1 + random.nextInt(500));
+                stmt.addBatch();
+                if (id % INSERT_BATCH == 0 || id == upTo) {
+                    stmt.executeBatch();
+                    conn.commit();
+                }
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return upTo;
+    }
+    
+    private static void recount(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : TABLE.rebuildCountsSql()) {
+                stmt.execute(sql);
+            }
+            stmt.execute("ANALYZE TABLE bench_leaderboard_ranked, bench_leaderboard_score_counts");
+        }
+    }
+    
+    private static LatencyHistogram timeTop(Connection conn, int limit, int queries) throws SQLException {
+        LatencyHistogram latency = new LatencyHistogram();
+        try (PreparedStatement stmt = conn.prepareStatement(TABLE.topSql)) {
+            stmt.setInt(1, limit);
+            for (int i = 0; i < queries; i++) {
+                long start = System.nanoTime();
+                drain(stmt.executeQuery());
+                latency.recordSince(start);
+            }
+        }
+        return latency;
+    }
+    
+    /**
+     * Run a query taking one username for random players.
+     */
+    private static LatencyHistogram timeByPlayer(Connection conn, String sql, int players, int queries) throws SQLException {
+        LatencyHistogram latency = new LatencyHistogram();
+        Random random = new Random(7);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < queries; i++) {
+                stmt.setString(1, "bench_" + (1 + random.nextInt(players)));
+                long start = System.nanoTime();
+                drain(stmt.executeQuery());
+                latency.recordSince(start);
+            }
+        }
+        return latency;
+    }
+    
+    private static void drain(ResultSet rs) throws SQLException {
+        try (ResultSet r = rs) {
+            while (r.next()) {
+                r.getString(1);
+            }
+        }
+    }
+    
+    private static String p50(LatencyHistogram latency) {
+        return String.format("%.2f ms", latency.getValueAtPercentile(50) / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
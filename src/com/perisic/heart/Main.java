@@ -1,10 +1,36 @@
 package com.perisic.heart;
 
+import com.perisic.heart.database.SchemaMigrator;
+import com.perisic.heart.gui.EdtMonitor;
 import com.perisic.heart.gui.LoginWindow;
+import com.perisic.heart.journal.AnswerJournal;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.service.BackgroundExecutor;
+import com.perisic.heart.service.LeaderboardIndex;
+import com.perisic.heart.service.PersistenceQueue;
+import com.perisic.heart.service.PlayerAnalytics;
+import com.perisic.heart.service.PuzzlePrefetcher;
 import javax.swing.SwingUtilities;
 
 public class Main {
     public static void main(String[] args) {
+        // JMX bean and the periodic metrics file
+        MetricsRegistry.getInstance().start();
+        // Times every Swing event and reports where the EDT stalls
+        EdtMonitor.install();
+        // Schema changes can wait on other clients, so never on the EDT
+        BackgroundExecutor.getInstance().execute(SchemaMigrator::migrate);
+        // Start filling the puzzle queue while the player logs in
+        PuzzlePrefetcher.getInstance();
+        // Re-queues anything a previous run couldn't write to MySQL
+        PersistenceQueue.getInstance();
+        // Loads the leaderboard in the background so rank lookups don't need SQL
+        LeaderboardIndex.getInstance();
+        // Keeps every answer in a binary journal (see JournalReplay)
+        AnswerJournal.install();
+        // Reaction times, recent accuracy and streaks for the game-over dialog and leaderboard
+        PlayerAnalytics.install();
+        
         SwingUtilities.invokeLater(() -> {
             LoginWindow login = new LoginWindow();
             login.setVisible(true);
@@ -0,0 +1,106 @@
+package com.perisic.heart;
+
+import com.perisic.heart.model.Game;
+import com.perisic.heart.service.PuzzleCsv;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Compares bytes allocated per puzzle for the old String/split/decode path
+ * and the in-place PuzzleCsv path.
+ *
+ * Run with: java com.perisic.heart.PuzzleDecodeBenchmark [iterations]
+ */
+public class PuzzleDecodeBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        byte[] payload = samplePayload();
+        System.out.println("Payload: " + payload.length + " bytes, " + iterations + " iterations");
+        
+        // Warm up both paths so the JIT is not measured
+        run(payload, 50, true, true);
+        run(payload, 50, false, true);
+        
+        report("parse only, old path", run(payload, iterations, true, false), iterations);
+        report("parse only, new path", run(payload, iterations, false, false), iterations);
+        report("with ImageIO, old path", run(payload, iterations, true, true), iterations);
+        report("with ImageIO, new path", run(payload, iterations, false, true), iterations);
+    }
+    
+    private static long[] run(byte[] payload, int iterations, boolean legacy, boolean readImage) throws Exception {
+        // Fresh response bodies, as if each had just arrived from the network
+        byte[][] bodies = new byte[iterations][];
+        for (int i = 0; i < iterations; i++) {
+            bodies[i] = payload.clone();
+        }
+        
+        long checksum = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (legacy) {
+                checksum += legacyDecode(bodies[i], readImage);
+            } else if (readImage) {
+                Game game = PuzzleCsv.decode(bodies[i], null);
+                checksum += game.getSolution();
+            } else {
+                checksum += PuzzleCsv.parseOnly(bodies[i]);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        return new long[] { allocated, elapsed, checksum };
+    }
+    
+    /**
+     * The decoding GameServer.getRandomGame() used to do.
+     */
+    private static int legacyDecode(byte[] body, boolean readImage) throws Exception {
+        String data = new String(body, StandardCharsets.UTF_8);
+        String[] parts = data.split(",");
+        byte[] imageBytes = Base64.getDecoder().decode(parts[0]);
+        int solution = Integer.parseInt(parts[1].trim());
+        if (readImage) {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            return solution + image.getWidth();
+        }
+        return solution + imageBytes.length;
+    }
+    
+    private static void report(String name, long[] result, int iterations) {
+        System.out.printf("%-24s %10d bytes/puzzle %8.3f ms/puzzle%n",
+            name, result[0] / iterations, result[1] / 1_000_000.0 / iterations);
+    }
+    
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    private static byte[] samplePayload() throws Exception {
+        BufferedImage image = new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(7);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 600, 300);
+        for (int i = 0; i < 400; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillOval(random.nextInt(600), random.nextInt(300), 30, 30);
+        }
+        g.dispose();
+        
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        String csv = Base64.getEncoder().encodeToString(png.toByteArray()) + ",7";
+        return csv.getBytes(StandardCharsets.UTF_8);
+    }
+}
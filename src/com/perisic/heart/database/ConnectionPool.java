@@ -0,0 +1,336 @@
+package com.perisic.heart.database;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.perisic.heart.log.Log;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of MySQL connections.
+ *
+ * Callers get a proxy whose close() hands the physical connection back to the
+ * pool instead of closing it, so the services' try-with-resources blocks keep
+ * working unchanged. Connections are pinged on borrow, retired after maxLifetime,
+ * evicted after idleTimeout, and reported when held longer than leakThreshold.
+ */
+public class ConnectionPool {
+    private static final int VALIDATION_TIMEOUT_MS = 2000;
+    private static final long HOUSEKEEPING_INTERVAL_MS = 30_000;
+    
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long leakThresholdMs;
+    
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+    
+    // Metrics
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong waitNanosTotal = new AtomicLong();
+    private final AtomicLong waitNanosMax = new AtomicLong();
+    private final AtomicLong useNanosTotal = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong retired = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    
+    public ConnectionPool(String url, String user, String password) {
+        this(url, user, password,
+             Integer.getInteger("heart.db.pool.maxSize", 10),
+             Integer.getInteger("heart.db.pool.minIdle", 1),
+             Long.getLong("heart.db.pool.maxWaitMs", 5_000),
+             Long.getLong("heart.db.pool.idleTimeoutMs", 5 * 60_000),
+             Long.getLong("heart.db.pool.maxLifetimeMs", 30 * 60_000),
+             Long.getLong("heart.db.pool.leakThresholdMs", 30_000));
+    }
+    
+    public ConnectionPool(String url, String user, String password, int maxSize, int minIdle,
+                          long maxWaitMs, long idleTimeoutMs, long maxLifetimeMs, long leakThresholdMs) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = minIdle;
+        this.maxWaitMs = maxWaitMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.permits = new Semaphore(maxSize, true);
+        
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+            HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Borrow a connection, waiting up to maxWaitMs if the pool is exhausted.
+     * Close the returned connection to give it back.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                    "No database connection available after " + maxWaitMs + " ms (" + getStats() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = create();
+            }
+            pooled.borrowedAt = System.nanoTime();
+            pooled.borrowedBy = new Throwable("Connection borrowed here");
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            
+            long waited = System.nanoTime() - start;
+            borrows.incrementAndGet();
+            waitNanosTotal.addAndGet(waited);
+            waitNanosMax.accumulateAndGet(waited, Math::max);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    private PooledConnection takeValidIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst(); // most recently used first - warmest connection
+            }
+            if (pooled == null) return null;
+            
+            if (pooled.isExpired()) {
+                retire(pooled);
+                continue;
+            }
+            try {
+                pooled.physical.unwrap(JdbcConnection.class).pingInternal(true, VALIDATION_TIMEOUT_MS);
+                return pooled;
+            } catch (SQLException e) {
+                validationFailures.incrementAndGet();
+                retire(pooled);
+            }
+        }
+    }
+    
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        created.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+    
+    private void giveBack(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) return;
+        useNanosTotal.addAndGet(System.nanoTime() - pooled.borrowedAt);
+        pooled.borrowedBy = null;
+        
+        boolean reusable = !closed && !pooled.isExpired();
+        if (reusable) {
+            try {
+                // Undo anything the borrower left behind
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.physical.clearWarnings();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+        
+        if (reusable) {
+            pooled.lastUsed = System.nanoTime();
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        } else {
+            retire(pooled);
+        }
+        permits.release();
+    }
+    
+    private void retire(PooledConnection pooled) {
+        retired.incrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Already broken - nothing to do
+        }
+    }
+    
+    private void housekeep() {
+        long now = System.nanoTime();
+        
+        // Idle eviction and max lifetime, oldest-used connections first
+        synchronized (idle) {
+            int keep = minIdle;
+            for (Iterator<PooledConnection> it = idle.descendingIterator(); it.hasNext(); ) {
+                PooledConnection pooled = it.next();
+                boolean idleTooLong = now - pooled.lastUsed > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+                if (pooled.isExpired() || (idleTooLong && idle.size() > keep)) {
+                    it.remove();
+                    retire(pooled);
+                }
+            }
+        }
+        
+        // Leak detection
+        for (PooledConnection pooled : borrowed) {
+            long held = now - pooled.borrowedAt;
+            if (!pooled.leakReported && held > TimeUnit.MILLISECONDS.toNanos(leakThresholdMs)) {
+                pooled.leakReported = true;
+                leaks.incrementAndGet();
+                Throwable where = pooled.borrowedBy;
+                String message = "⚠️ Possible connection leak: held for "
+                                 + TimeUnit.NANOSECONDS.toSeconds(held) + "s";
+                if (where != null) {
+                    Log.error(message, where);
+                } else {
+                    Log.warn(message);
+                }
+            }
+        }
+    }
+    
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        synchronized (idle) {
+            for (PooledConnection pooled : idle) {
+                retire(pooled);
+            }
+            idle.clear();
+        }
+    }
+    
+    public int getActiveCount() { return borrowed.size(); }
+    public int getMaxSize() { return maxSize; }
+    public long getBorrowCount() { return borrows.get(); }
+    public long getCreatedCount() { return created.get(); }
+    public long getTimeoutCount() { return timeouts.get(); }
+    public long getLeakCount() { return leaks.get(); }
+    
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+    
+    public double getAverageWaitMillis() {
+        long n = borrows.get();
+        return n == 0 ? 0 : waitNanosTotal.get() / (double) n / 1_000_000;
+    }
+    
+    public double getMaxWaitMillis() {
+        return waitNanosMax.get() / 1_000_000.0;
+    }
+    
+    public double getAverageUseMillis() {
+        long n = borrows.get();
+        return n == 0 ? 0 : useNanosTotal.get() / (double) n / 1_000_000;
+    }
+    
+    public String getStats() {
+        return String.format(
+            "active=%d idle=%d max=%d borrows=%d created=%d retired=%d wait avg %.2f ms max %.2f ms, "
+            + "use avg %.2f ms, validation failures=%d timeouts=%d leaks=%d",
+            getActiveCount(), getIdleCount(), maxSize, borrows.get(), created.get(), retired.get(),
+            getAverageWaitMillis(), getMaxWaitMillis(), getAverageUseMillis(),
+            validationFailures.get(), timeouts.get(), leaks.get());
+    }
+    
+    /**
+     * A physical connection plus pool bookkeeping.
+     */
+    private class PooledConnection {
+        final Connection physical;
+        final long createdAt = System.nanoTime();
+        volatile long lastUsed = createdAt;
+        volatile long borrowedAt;
+        volatile Throwable borrowedBy;
+        volatile boolean leakReported;
+        
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+        
+        boolean isExpired() {
+            return System.nanoTime() - createdAt > TimeUnit.MILLISECONDS.toNanos(maxLifetimeMs);
+        }
+        
+        /**
+         * A fresh handle per borrow, so a stale handle closed twice can't return
+         * a connection someone else is now using.
+         */
+        Connection newHandle() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean handleClosed = false;
+                
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!handleClosed) {
+                                handleClosed = true;
+                                giveBack(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return handleClosed || physical.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled[" + physical + "]";
+                        default:
+                            if (handleClosed) {
+                                throw new SQLException("Connection has been returned to the pool");
+                            }
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+        }
+    }
+}
@@ -1,48 +1,65 @@
 package com.perisic.heart.database;
 
+import com.perisic.heart.log.Log;
 import java.sql.*;
 
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/heart_game";
-    private static final String USER = "root";
-    private static final String PASSWORD = "12345678"; 
+    // rewriteBatchedStatements lets the driver send a JDBC batch as a few multi-row statements
+    private static final String URL = setting("heart.db.url", "HEART_DB_URL",
+        "jdbc:mysql://localhost:3306/heart_game?rewriteBatchedStatements=true");
+    private static final String USER = setting("heart.db.user", "HEART_DB_USER", "root");
+    private static final String PASSWORD = setting("heart.db.password", "HEART_DB_PASSWORD", "12345678");
     
-    private static Connection connection = null;
+    private static ConnectionPool pool = null;
     
+    /**
+     * Borrow a connection from the pool. Closing it hands it back. The
+     * schema is brought up to date by SchemaMigrator at startup, not here,
+     * so borrowing never waits for a migration.
+     */
     public static Connection getConnection() {
         try {
-            if (connection == null || connection.isClosed()) {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-                System.out.println("✅ Database connected successfully!");
-            }
-            return connection;
+            return getPool().getConnection();
         } catch (ClassNotFoundException e) {
-            System.err.println("❌ MySQL Driver not found!");
-            e.printStackTrace();
+            Log.error("❌ MySQL Driver not found!", e);
             return null;
         } catch (SQLException e) {
-            System.err.println("❌ Database connection failed!");
-            System.err.println("Make sure MySQL is running and credentials are correct");
-            e.printStackTrace();
+            Log.error("❌ Database connection failed! Make sure MySQL is running and credentials are correct", e);
             return null;
         }
     }
     
-    public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Database connection closed");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    public static synchronized ConnectionPool getPool() throws ClassNotFoundException {
+        if (pool == null) {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+            pool = new ConnectionPool(URL, USER, PASSWORD);
+            Log.info("✅ Database connection pool ready (max " + pool.getMaxSize() + ")");
+        }
+        return pool;
+    }
+    
+    public static synchronized void closeConnection() {
+        if (pool != null) {
+            Log.info("Database pool stats: " + pool.getStats());
+            pool.close();
+            pool = null;
+            Log.info("Database connection closed");
         }
     }
     
+    /**
+     * System property first, then environment variable, then the local development default.
+     */
+    private static String setting(String property, String environment, String fallback) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            value = System.getenv(environment);
+        }
+        return value != null ? value : fallback;
+    }
+    
     public static boolean testConnection() {
-        try {
-            Connection conn = getConnection();
+        try (Connection conn = getConnection()) {
             return conn != null && !conn.isClosed();
         } catch (SQLException e) {
             return false;
@@ -0,0 +1,201 @@
+package com.perisic.heart.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The physical leaderboard: one row per player in leaderboard_ranked, kept
+ * in (total_score DESC, accuracy DESC, username) order by a covering index,
+ * and the number of players on each score in leaderboard_score_counts.
+ *
+ * Top-N and pages read straight down the index, so they cost the rows
+ * returned however many players there are. A rank is the sum of the counts
+ * above the player's score plus the ties ahead of them, one index seek each.
+ * Both tables are created by SchemaMigrator and kept up to date by
+ * Maintenance in the transaction that changes player_stats.
+ */
+public final class LeaderboardTable {
+    public static final LeaderboardTable DEFAULT = new LeaderboardTable("leaderboard_ranked", "leaderboard_score_counts");
+    
+    private static final String COLUMNS = "username, total_score, accuracy, games_played";
+    // Binary, so ties on score and accuracy sort the same here as in compareUsernames()
+    private static final String USERNAME_TYPE = "VARCHAR(50) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL";
+    
+    final String ranked;
+    final String counts;
+    
+    public final String createRanked;
+    public final String createCounts;
+    public final String binaryUsernameSql;
+    public final String topSql;
+    public final String pageSql;
+    public final String pageAfterSql;
+    public final String rankSql;
+    public final String positionSql;
+    public final String totalSql;
+    
+    private final String decrementSql;
+    private final String upsertSql;
+    private final String incrementSql;
+    
+    public LeaderboardTable(String ranked, String counts) {
+        this.ranked = ranked;
+        this.counts = counts;
+        
+        createRanked =
+            "CREATE TABLE IF NOT EXISTS " + ranked + " (" +
+            "  user_id INT NOT NULL PRIMARY KEY," +
+            "  username " + USERNAME_TYPE + "," +
+            "  total_score INT NOT NULL," +
+            "  accuracy DOUBLE NOT NULL," +
+            "  games_played INT NOT NULL," +
+            "  UNIQUE KEY uk_" + ranked + "_username (username)," +
+            // Covers every leaderboard query, so none of them touches the rows
+            "  KEY idx_" + ranked + "_order (total_score DESC, accuracy DESC, username, games_played)" +
+            ") ENGINE=InnoDB";
+        binaryUsernameSql = "ALTER TABLE " + ranked + " MODIFY username " + USERNAME_TYPE;
+        createCounts =
+            "CREATE TABLE IF NOT EXISTS " + counts + " (" +
+            "  total_score INT NOT NULL PRIMARY KEY," +
+            "  players INT NOT NULL" +
+            ") ENGINE=InnoDB";
+        
+        String order = " ORDER BY total_score DESC, accuracy DESC, username LIMIT ?";
+        topSql = "SELECT " + COLUMNS + " FROM " + ranked + order;
+        pageSql = topSql + " OFFSET ?";
+        pageAfterSql = "SELECT " + COLUMNS + " FROM " + ranked + " " +
+                       "WHERE total_score < ? OR (total_score = ? AND " +
+                       "(accuracy < ? OR (accuracy = ? AND username > ?)))" + order;
+        // Score, then accuracy, as LeaderboardIndex ranks; no row for an unknown player
+        rankSql = "SELECT 1 + " +
+                  "(SELECT COALESCE(SUM(players), 0) FROM " + counts + " c WHERE c.total_score > me.total_score) + " +
+                  "(SELECT COUNT(*) FROM " + ranked + " t WHERE t.total_score = me.total_score AND " +
+                  "t.accuracy > me.accuracy) " +
+                  "AS player_rank FROM " + ranked + " me WHERE me.username = ?";
+        positionSql = "SELECT " +
+                      "(SELECT COALESCE(SUM(players), 0) FROM " + counts + " c WHERE c.total_score > me.total_score) + " +
+                      "(SELECT COUNT(*) FROM " + ranked + " t WHERE t.total_score = me.total_score AND " +
+                      "(t.accuracy > me.accuracy OR (t.accuracy = me.accuracy AND t.username < me.username))) " +
+                      "AS ahead FROM " + ranked + " me WHERE me.username = ?";
+        totalSql = "SELECT COALESCE(SUM(players), 0) AS total FROM " + counts;
+        
+        decrementSql = "UPDATE " + counts + " c JOIN " + ranked + " r ON c.total_score = r.total_score " +
+                       "SET c.players = c.players - 1 WHERE r.username = ?";
+        upsertSql = "INSERT INTO " + ranked + " (user_id, " + COLUMNS + ") " +
+                    "SELECT u.user_id, u.username, ps.total_score, " +
+                    "CASE WHEN ps.total_attempts > 0 THEN ps.correct_answers * 100.0 / ps.total_attempts ELSE 0 END, " +
+                    "ps.games_played " +
+                    "FROM users u JOIN player_stats ps ON u.user_id = ps.user_id WHERE u.username = ? " +
+                    "ON DUPLICATE KEY UPDATE total_score = VALUES(total_score), accuracy = VALUES(accuracy), " +
+                    "games_played = VALUES(games_played)";
+        incrementSql = "INSERT INTO " + counts + " (total_score, players) " +
+                       "SELECT total_score, 1 FROM " + ranked + " WHERE username = ? " +
+                       "ON DUPLICATE KEY UPDATE players = players + 1";
+    }
+    
+    /**
+     * The username tie-break of the leaderboard order: Unicode code point
+     * order, as the utf8mb4_bin collation of the username column compares.
+     * String.compareTo differs only when a surrogate pair meets a character
+     * from U+E000 to U+FFFF.
+     */
+    public static int compareUsernames(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x == y) continue;
+            if (x >= 0xD800 && y >= 0xD800) {
+                // Move surrogates above U+E000..U+FFFF, where their code points are
+                x += x >= 0xE000 ? -0x800 : 0x2000;
+                y += y >= 0xE000 ? -0x800 : 0x2000;
+            }
+            return x - y;
+        }
+        return a.length() - b.length();
+    }
+    
+    /**
+     * Fill both tables from player_stats, e.g. when they are first created.
+     */
+    public String[] backfillSql() {
+        return new String[] {
+            "INSERT INTO " + ranked + " (user_id, " + COLUMNS + ") " +
+            "SELECT u.user_id, u.username, ps.total_score, " +
+            "CASE WHEN ps.total_attempts > 0 THEN ps.correct_answers * 100.0 / ps.total_attempts ELSE 0 END, " +
+            "ps.games_played " +
+            "FROM users u JOIN player_stats ps ON u.user_id = ps.user_id " +
+            "ON DUPLICATE KEY UPDATE total_score = VALUES(total_score), accuracy = VALUES(accuracy), " +
+            "games_played = VALUES(games_played)",
+            rebuildCountsSql()[0],
+            rebuildCountsSql()[1]
+        };
+    }
+    
+    /**
+     * Recount the players on each score from the ranked table.
+     */
+    public String[] rebuildCountsSql() {
+        return new String[] {
+            "DELETE FROM " + counts,
+            "INSERT INTO " + counts + " (total_score, players) " +
+            "SELECT total_score, COUNT(*) FROM " + ranked + " GROUP BY total_score"
+        };
+    }
+    
+    public String dropSql() {
+        return "DROP TABLE IF EXISTS " + ranked + ", " + counts;
+    }
+    
+    public Maintenance maintenance(Connection conn) throws SQLException {
+        return new Maintenance(conn);
+    }
+    
+    /**
+     * Moves players' rows to their current player_stats. Add the players
+     * whose stats changed, then execute() in the same transaction, after
+     * the player_stats updates.
+     */
+    public class Maintenance implements AutoCloseable {
+        private final PreparedStatement decrement;
+        private final PreparedStatement upsert;
+        private final PreparedStatement increment;
+        private int players = 0;
+        
+        Maintenance(Connection conn) throws SQLException {
+            decrement = conn.prepareStatement(decrementSql);
+            upsert = conn.prepareStatement(upsertSql);
+            increment = conn.prepareStatement(incrementSql);
+        }
+        
+        public void add(String username) throws SQLException {
+            decrement.setString(1, username);
+            decrement.addBatch();
+            upsert.setString(1, username);
+            upsert.addBatch();
+            increment.setString(1, username);
+            increment.addBatch();
+            players++;
+        }
+        
+        /**
+         * Each statement runs for every player before the next starts, so a
+         * player must only be added once per execute().
+         */
+        public void execute() throws SQLException {
+            if (players == 0) return;
+            decrement.executeBatch();
+            upsert.executeBatch();
+            increment.executeBatch();
+            players = 0;
+        }
+        
+        @Override
+        public void close() throws SQLException {
+            decrement.close();
+            upsert.close();
+            increment.close();
+        }
+    }
+}
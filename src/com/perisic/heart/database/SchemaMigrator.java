@@ -0,0 +1,147 @@
+package com.perisic.heart.database;
+
+import com.perisic.heart.log.Log;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date, once per process, the first time
+ * a connection is handed out.
+ *
+ * Applied versions are recorded in schema_version. Several clients starting
+ * at once take turns through a named MySQL lock, and every migration is
+ * written so that running it twice does no harm.
+ */
+public class SchemaMigrator {
+    private static final String LOCK_NAME = "heart_game_schema";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+    
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+    
+    static {
+        LeaderboardTable leaderboard = LeaderboardTable.DEFAULT;
+        List<String> createLeaderboard = new ArrayList<>();
+        createLeaderboard.add(leaderboard.createRanked);
+        createLeaderboard.add(leaderboard.createCounts);
+        createLeaderboard.addAll(Arrays.asList(leaderboard.backfillSql()));
+        MIGRATIONS.add(new Migration(1, "leaderboard table with rank index and score counts", createLeaderboard));
+        MIGRATIONS.add(new Migration(2, "ids of applied queued writes", Arrays.asList(
+            "CREATE TABLE IF NOT EXISTS applied_writes (" +
+            "  write_id BIGINT NOT NULL PRIMARY KEY," +
+            "  applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+            "  INDEX idx_applied_at (applied_at)" +
+            ") ENGINE=InnoDB")));
+        MIGRATIONS.add(new Migration(3, "binary username order in the leaderboard table",
+            Arrays.asList(leaderboard.binaryUsernameSql)));
+    }
+    
+    private static volatile boolean done = false;
+    
+    private static final class Migration {
+        final int version;
+        final String description;
+        final List<String> statements;
+        
+        Migration(int version, String description, List<String> statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+    
+    /**
+     * Bring the schema up to date on a connection of its own. Can wait a
+     * minute for another client's migration, so never call it on the EDT.
+     * Returns false if the database can't be reached or the migration failed.
+     */
+    public static boolean migrate() {
+        if (done) return true;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return conn != null && migrate(conn);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Run whatever hasn't been applied yet. Once a call has succeeded the
+     * rest return straight away; after a failure the next call tries again.
+     */
+    public static boolean migrate(Connection conn) {
+        if (done) return true;
+        synchronized (SchemaMigrator.class) {
+            if (done) return true;
+            try {
+                migrateLocked(conn);
+                done = true;
+            } catch (SQLException e) {
+                Log.error("❌ Schema migration failed, will retry: " + e.getMessage(), e);
+            }
+            return done;
+        }
+    }
+    
+    public static boolean isDone() {
+        return done;
+    }
+    
+    private static void migrateLocked(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                         "  version INT NOT NULL PRIMARY KEY," +
+                         "  description VARCHAR(200) NOT NULL," +
+                         "  applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                         ") ENGINE=InnoDB");
+            
+            try (ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', " + LOCK_TIMEOUT_SECONDS + ")")) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another client to migrate the schema");
+                }
+            }
+            try {
+                int current = currentVersion(stmt);
+                for (Migration migration : MIGRATIONS) {
+                    if (migration.version > current) {
+                        apply(conn, migration);
+                    }
+                }
+            } finally {
+                stmt.execute("DO RELEASE_LOCK('" + LOCK_NAME + "')");
+            }
+        }
+    }
+    
+    private static int currentVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean autoCommit = conn.getAutoCommit();
+        // DDL commits implicitly in MySQL; the data statements after it share one transaction
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement record = conn.prepareStatement(
+                 "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            
+            for (String sql : migration.statements) {
+                stmt.execute(sql);
+            }
+            record.setInt(1, migration.version);
+            record.setString(2, migration.description);
+            record.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        Log.info("🛠️ Applied schema migration {} ({}) in {} ms", migration.version,
+                 migration.description, System.currentTimeMillis() - start);
+    }
+}
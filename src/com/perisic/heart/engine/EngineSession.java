@@ -0,0 +1,108 @@
+package com.perisic.heart.engine;
+
+import com.perisic.heart.model.Game;
+import com.perisic.heart.model.GameSession;
+import com.perisic.heart.model.Player;
+import com.perisic.heart.service.TimingWheel;
+
+/**
+ * One player's session inside the GameEngine.
+ *
+ * Wraps a GameSession with an explicit state machine. Every transition is
+ * synchronized on the session, so puzzles, answers and the expiry timer can
+ * arrive from different threads without double-counting an answer or
+ * handing out two puzzles at once.
+ */
+public class EngineSession {
+    private final long id;
+    private final GameSession session;
+    private SessionState state = SessionState.WAITING_FOR_PUZZLE;
+    private long answeredAtNanos = 0;
+    private TimingWheel.Timeout expiry;
+    private volatile Object attachment;
+    
+    EngineSession(long id, Player player, int durationSeconds) {
+        this.id = id;
+        this.session = new GameSession(player, durationSeconds);
+    }
+    
+    /**
+     * WAITING_FOR_PUZZLE -> AWAITING_ANSWER. Returns nanoseconds since the
+     * answer that asked for this puzzle (0 for the first one), or -1 if the
+     * session wasn't waiting for a puzzle.
+     */
+    synchronized long offerPuzzle(Game game, long now) {
+        if (state != SessionState.WAITING_FOR_PUZZLE) return -1;
+        session.setCurrentGame(game);
+        state = SessionState.AWAITING_ANSWER;
+        return answeredAtNanos == 0 ? 0 : now - answeredAtNanos;
+    }
+    
+    /**
+     * What an accepted answer was checked against.
+     */
+    static final class Answered {
+        final Game game;
+        final boolean correct;
+        
+        Answered(Game game, boolean correct) {
+            this.game = game;
+            this.correct = correct;
+        }
+    }
+    
+    /**
+     * AWAITING_ANSWER -> WAITING_FOR_PUZZLE. Returns null if no puzzle was
+     * showing, e.g. a double click or an answer after the session ended.
+     * The game comes from the same locked step, so it is the one checked
+     * even if the next puzzle arrives straight after.
+     */
+    synchronized Answered answer(int answer, long now) {
+        if (state != SessionState.AWAITING_ANSWER) return null;
+        Game game = session.getCurrentGame();
+        boolean correct = session.checkAnswer(answer, now);
+        answeredAtNanos = now;
+        state = SessionState.WAITING_FOR_PUZZLE;
+        return new Answered(game, correct);
+    }
+    
+    /**
+     * Any state -> ENDED. Returns true only for the call that ended it.
+     */
+    synchronized boolean end() {
+        if (state == SessionState.ENDED) return false;
+        state = SessionState.ENDED;
+        session.endSession();
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        return true;
+    }
+    
+    synchronized void setExpiry(TimingWheel.Timeout expiry) {
+        this.expiry = expiry;
+    }
+    
+    boolean isExpired(long now) {
+        return session.getClock().isExpired(now);
+    }
+    
+    long getDeadlineNanos() {
+        return session.getClock().getDeadlineNanos();
+    }
+    
+    public long getId() { return id; }
+    public Player getPlayer() { return session.getPlayer(); }
+    public GameSession getGameSession() { return session; }
+    public synchronized SessionState getState() { return state; }
+    public synchronized Game getCurrentGame() { return session.getCurrentGame(); }
+    public synchronized int getSessionScore() { return session.getSessionScore(); }
+    public synchronized int getSessionAttempts() { return session.getSessionAttempts(); }
+    public synchronized double getSessionAccuracy() { return session.getSessionAccuracy(); }
+    
+    /**
+     * Lets whoever drives the session (e.g. a simulated player) hang its own state off it.
+     */
+    public Object getAttachment() { return attachment; }
+    public void setAttachment(Object attachment) { this.attachment = attachment; }
+}
@@ -0,0 +1,241 @@
+package com.perisic.heart.engine;
+
+import com.perisic.heart.journal.AnswerJournal;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.Game;
+import com.perisic.heart.model.Player;
+import com.perisic.heart.service.GameSource;
+import com.perisic.heart.service.PuzzlePrefetcher;
+import com.perisic.heart.service.TimingWheel;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless game engine hosting any number of concurrent sessions.
+ *
+ * GameService drives exactly one session for GameWindow. The engine does the
+ * same job for many sessions at once, with no Swing and no global event
+ * dispatcher: puzzles come from a shared PuzzlePrefetcher, finished sessions
+ * go to a ResultStore, and the caller hears about puzzles and session ends
+ * through a Listener. When the prefetch queue is empty, sessions wait in
+ * line for a feeder thread instead of blocking the answering thread.
+ * Sessions expire through the shared TimingWheel, so idle sessions cost
+ * nothing until their deadline.
+ */
+public class GameEngine {
+    
+    public interface Listener {
+        /** A puzzle is now showing in the session. Called on an engine or answering thread. */
+        void onPuzzle(EngineSession session, Game game);
+        
+        void onSessionEnded(EngineSession session);
+    }
+    
+    private final PuzzlePrefetcher prefetcher;
+    private final ResultStore store;
+    private final Listener listener;
+    private final Map<Long, EngineSession> sessions = new ConcurrentHashMap<>();
+    private final BlockingQueue<EngineSession> starving = new LinkedBlockingQueue<>();
+    private final TimingWheel timer;
+    private final AtomicLong nextId = new AtomicLong();
+    private Thread feeder;
+    private volatile boolean running = false;
+    private volatile AnswerJournal journal;
+    
+    // Metrics
+    private final LatencyHistogram answerToPuzzle = new LatencyHistogram();
+    private final LatencyHistogram expiryLateness = new LatencyHistogram();
+    private final AtomicLong sessionsStarted = new AtomicLong();
+    private final AtomicLong sessionsEnded = new AtomicLong();
+    private final AtomicLong answers = new AtomicLong();
+    private final AtomicLong correctAnswers = new AtomicLong();
+    private final AtomicLong rejectedAnswers = new AtomicLong();
+    private final AtomicLong starved = new AtomicLong();
+    
+    public GameEngine(GameSource source, ResultStore store, Listener listener) {
+        this(new PuzzlePrefetcher(source,
+                 Integer.getInteger("heart.engine.prefetch", 1024),
+                 Integer.getInteger("heart.engine.producers", 2)),
+             store, listener);
+    }
+    
+    public GameEngine(PuzzlePrefetcher prefetcher, ResultStore store, Listener listener) {
+        this.prefetcher = prefetcher;
+        MetricsRegistry.getInstance().register("engine.answerToPuzzle", answerToPuzzle);
+        MetricsRegistry.getInstance().register("engine.expiryLateness", expiryLateness);
+        this.store = store;
+        this.listener = listener;
+        this.timer = TimingWheel.getInstance();
+    }
+    
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        prefetcher.start();
+        feeder = new Thread(this::feed, "engine-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+    }
+    
+    /**
+     * End every open session and stop the engine's threads.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (EngineSession session : sessions.values()) {
+            endSession(session);
+        }
+        if (feeder != null) {
+            feeder.interrupt();
+        }
+        prefetcher.stop();
+    }
+    
+    public EngineSession startSession(Player player, int durationSeconds) {
+        return startSession(player, durationSeconds, null);
+    }
+    
+    /**
+     * Start a session with its attachment already set, so the listener sees
+     * it on the very first puzzle.
+     */
+    public EngineSession startSession(Player player, int durationSeconds, Object attachment) {
+        if (!running) throw new IllegalStateException("Engine is not running");
+        
+        EngineSession session = new EngineSession(nextId.incrementAndGet(), player, durationSeconds);
+        session.setAttachment(attachment);
+        sessions.put(session.getId(), session);
+        sessionsStarted.incrementAndGet();
+        session.setExpiry(timer.schedule(() -> expire(session), session.getDeadlineNanos()));
+        requestPuzzle(session);
+        return session;
+    }
+    
+    /**
+     * Journal every answer from now on; null stops journaling.
+     */
+    public void setJournal(AnswerJournal journal) {
+        this.journal = journal;
+    }
+    
+    /**
+     * Check an answer and move the session on to its next puzzle. Returns
+     * null if the session had no puzzle showing.
+     */
+    public Boolean submitAnswer(EngineSession session, int answer) {
+        long now = System.nanoTime();
+        EngineSession.Answered answered = session.answer(answer, now);
+        if (answered == null) {
+            rejectedAnswers.incrementAndGet();
+            return null;
+        }
+        boolean correct = answered.correct;
+        AnswerJournal journal = this.journal;
+        if (journal != null) {
+            journal.append(session.getPlayer().getUsername(), answered.game, answer, correct,
+                           session.getGameSession().getClock().getStartNanos(), now);
+        }
+        answers.incrementAndGet();
+        if (correct) correctAnswers.incrementAndGet();
+        
+        if (session.isExpired(now)) {
+            endSession(session);
+        } else {
+            requestPuzzle(session);
+        }
+        return correct;
+    }
+    
+    private void expire(EngineSession session) {
+        expiryLateness.record(System.nanoTime() - session.getDeadlineNanos());
+        endSession(session);
+    }
+    
+    public void endSession(EngineSession session) {
+        if (!session.end()) return;
+        sessions.remove(session.getId());
+        sessionsEnded.incrementAndGet();
+        try {
+            store.saveSession(session.getPlayer(), session.getSessionScore(),
+                              session.getSessionAccuracy(), session.getSessionAttempts());
+        } catch (RuntimeException e) {
+            Log.error("❌ Could not store session " + session.getId() + ": " + e.getMessage());
+        }
+        listener.onSessionEnded(session);
+    }
+    
+    private void requestPuzzle(EngineSession session) {
+        Game game = prefetcher.poll();
+        if (game != null) {
+            deliver(session, game);
+        } else {
+            starved.incrementAndGet();
+            starving.add(session);
+        }
+    }
+    
+    private void deliver(EngineSession session, Game game) {
+        long latency = session.offerPuzzle(game, System.nanoTime());
+        if (latency < 0) return; // Ended in the meantime
+        if (latency > 0) {
+            answerToPuzzle.record(latency);
+        }
+        listener.onPuzzle(session, game);
+    }
+    
+    /**
+     * Hands puzzles to sessions that found the prefetch queue empty, in the
+     * order they asked.
+     */
+    private void feed() {
+        while (running) {
+            try {
+                EngineSession session = starving.take();
+                Game game = null;
+                while (game == null && running && session.getState() == SessionState.WAITING_FOR_PUZZLE) {
+                    game = prefetcher.take(100, TimeUnit.MILLISECONDS);
+                }
+                if (game != null) {
+                    deliver(session, game);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+    
+    public int getActiveSessions() { return sessions.size(); }
+    public int getStarvingSessions() { return starving.size(); }
+    public long getSessionsStarted() { return sessionsStarted.get(); }
+    public long getSessionsEnded() { return sessionsEnded.get(); }
+    public long getAnswers() { return answers.get(); }
+    public long getCorrectAnswers() { return correctAnswers.get(); }
+    public long getRejectedAnswers() { return rejectedAnswers.get(); }
+    public long getStarvedCount() { return starved.get(); }
+    public PuzzlePrefetcher getPrefetcher() { return prefetcher; }
+    
+    /**
+     * Time from an answer arriving to the session's next puzzle showing.
+     */
+    public LatencyHistogram getAnswerToPuzzleLatency() {
+        return answerToPuzzle;
+    }
+    
+    /**
+     * How long after its deadline each session was actually ended.
+     */
+    public LatencyHistogram getExpiryLateness() {
+        return expiryLateness;
+    }
+    
+    public String getStats() {
+        return String.format("active=%d started=%d ended=%d answers=%d correct=%d rejected=%d starved=%d "
+                             + "expiry late %s | %s",
+            getActiveSessions(), getSessionsStarted(), getSessionsEnded(), getAnswers(),
+            getCorrectAnswers(), getRejectedAnswers(), getStarvedCount(),
+            expiryLateness.summary(TimeUnit.MILLISECONDS), prefetcher.getStats());
+    }
+}
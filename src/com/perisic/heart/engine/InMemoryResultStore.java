@@ -0,0 +1,50 @@
+package com.perisic.heart.engine;
+
+import com.perisic.heart.model.Player;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for MySQL in load tests. Keeps the same per-player totals as
+ * the player_stats table, in a ConcurrentHashMap.
+ */
+public class InMemoryResultStore implements ResultStore {
+    private final Map<String, PlayerStats> players = new ConcurrentHashMap<>();
+    private final AtomicLong sessions = new AtomicLong();
+    
+    @Override
+    public void saveSession(Player player, int sessionScore, double sessionAccuracy, int sessionAttempts) {
+        players.compute(player.getUsername(), (username, stats) -> {
+            if (stats == null) stats = new PlayerStats();
+            stats.totalScore = player.getScore();
+            stats.correctAnswers = player.getCorrectAnswers();
+            stats.totalAttempts = player.getTotalAttempts();
+            stats.gamesPlayed++;
+            stats.bestSessionScore = Math.max(stats.bestSessionScore, sessionScore);
+            return stats;
+        });
+        sessions.incrementAndGet();
+    }
+    
+    public int getPlayerCount() {
+        return players.size();
+    }
+    
+    public long getSessionCount() {
+        return sessions.get();
+    }
+    
+    public int getBestSessionScore(String username) {
+        PlayerStats stats = players.get(username);
+        return stats != null ? stats.bestSessionScore : 0;
+    }
+    
+    private static class PlayerStats {
+        int totalScore;
+        int correctAnswers;
+        int totalAttempts;
+        int gamesPlayed;
+        int bestSessionScore;
+    }
+}
@@ -0,0 +1,140 @@
+package com.perisic.heart.engine;
+
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.model.Game;
+import com.perisic.heart.model.Player;
+import com.perisic.heart.service.GameSource;
+import com.perisic.heart.service.LocalGameSource;
+import com.perisic.heart.service.PuzzleCorpus;
+import java.util.concurrent.*;
+
+/**
+ * Drives a GameEngine with synthetic players to find where it stops scaling.
+ *
+ * Every player plays back-to-back sessions: it waits a think time after each
+ * puzzle, answers correctly with the configured probability, and starts a new
+ * session as soon as one ends. Once a second the simulator prints sessions/sec,
+ * answers/sec and the answer-to-next-puzzle latency percentiles.
+ *
+ * Run with: java com.perisic.heart.engine.LoadSimulator [players] [seconds]
+ *
+ *   -Dheart.sim.players=1000        concurrent players
+ *   -Dheart.sim.seconds=30          length of the run
+ *   -Dheart.sim.sessionSeconds=30   length of one game session
+ *   -Dheart.sim.thinkMs=800         mean think time per puzzle
+ *   -Dheart.sim.thinkJitterMs=400   think time varies by up to this much either way
+ *   -Dheart.sim.accuracy=0.7        chance of a correct answer
+ *   -Dheart.sim.store=memory        memory, or mysql to go through the PersistenceQueue
+ */
+public class LoadSimulator implements GameEngine.Listener {
+    private final int sessionSeconds;
+    private final long thinkMs;
+    private final long thinkJitterMs;
+    private final double accuracy;
+    private final ScheduledExecutorService players;
+    private GameEngine engine;
+    private volatile boolean running = true;
+    
+    public LoadSimulator(int sessionSeconds, long thinkMs, long thinkJitterMs, double accuracy) {
+        this.sessionSeconds = sessionSeconds;
+        this.thinkMs = thinkMs;
+        this.thinkJitterMs = thinkJitterMs;
+        this.accuracy = accuracy;
+        this.players = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "sim-player");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("heart.sim.players", 1000);
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : Integer.getInteger("heart.sim.seconds", 30);
+        
+        LoadSimulator simulator = new LoadSimulator(
+            Integer.getInteger("heart.sim.sessionSeconds", 30),
+            Long.getLong("heart.sim.thinkMs", 800),
+            Long.getLong("heart.sim.thinkJitterMs", 400),
+            Double.parseDouble(System.getProperty("heart.sim.accuracy", "0.7")));
+        
+        GameSource source = new LocalGameSource(PuzzleCorpus.getInstance());
+        InMemoryResultStore memory = new InMemoryResultStore();
+        ResultStore store = memory;
+        if ("mysql".equals(System.getProperty("heart.sim.store"))) {
+            store = new PersistenceResultStore();
+        }
+        
+        System.out.println("🚦 " + playerCount + " players for " + seconds + "s, puzzles from " + source.getName());
+        simulator.run(new GameEngine(source, store, simulator), playerCount, seconds);
+        if (store == memory) {
+            System.out.println("💾 Stored " + memory.getSessionCount() + " sessions for "
+                               + memory.getPlayerCount() + " players");
+        }
+    }
+    
+    public void run(GameEngine engine, int playerCount, int seconds) throws InterruptedException {
+        this.engine = engine;
+        engine.start();
+        
+        // Spread the logins over the first second instead of all at once
+        for (int i = 0; i < playerCount; i++) {
+            Player player = new Player(String.format("sim-%05d", i));
+            long delay = ThreadLocalRandom.current().nextLong(1000);
+            players.schedule(() -> startSession(player), delay, TimeUnit.MILLISECONDS);
+        }
+        
+        LatencyHistogram total = new LatencyHistogram();
+        long lastSessions = 0;
+        long lastAnswers = 0;
+        long start = System.nanoTime();
+        for (int second = 1; second <= seconds; second++) {
+            long nextTick = start + second * 1_000_000_000L;
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, nextTick - System.nanoTime()));
+            
+            long sessions = engine.getSessionsEnded();
+            long answers = engine.getAnswers();
+            LatencyHistogram interval = engine.getAnswerToPuzzleLatency().copyAndReset();
+            total.add(interval);
+            System.out.printf("t=%3ds active=%d sessions/s=%d answers/s=%d starving=%d answer->puzzle %s%n",
+                second, engine.getActiveSessions(), sessions - lastSessions, answers - lastAnswers,
+                engine.getStarvingSessions(), interval.summary(TimeUnit.MILLISECONDS));
+            lastSessions = sessions;
+            lastAnswers = answers;
+        }
+        
+        running = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        players.shutdownNow();
+        engine.stop();
+        
+        System.out.println("==== Load simulation finished ====");
+        System.out.printf("sessions/s %.1f, answers/s %.1f over %.1fs%n",
+            engine.getSessionsEnded() / elapsed, engine.getAnswers() / elapsed, elapsed);
+        System.out.println("answer->puzzle " + total.summary(TimeUnit.MILLISECONDS));
+        System.out.println("engine: " + engine.getStats());
+    }
+    
+    private void startSession(Player player) {
+        if (!running) return;
+        engine.startSession(player, sessionSeconds);
+    }
+    
+    @Override
+    public void onPuzzle(EngineSession session, Game game) {
+        if (!running) return;
+        long jitter = thinkJitterMs > 0 ? ThreadLocalRandom.current().nextLong(-thinkJitterMs, thinkJitterMs + 1) : 0;
+        long think = Math.max(0, thinkMs + jitter);
+        players.schedule(() -> answer(session, game), think, TimeUnit.MILLISECONDS);
+    }
+    
+    private void answer(EngineSession session, Game game) {
+        boolean right = ThreadLocalRandom.current().nextDouble() < accuracy;
+        engine.submitAnswer(session, right ? game.getSolution() : game.getSolution() + 1);
+    }
+    
+    @Override
+    public void onSessionEnded(EngineSession session) {
+        if (!running) return;
+        players.execute(() -> startSession(session.getPlayer()));
+    }
+}
@@ -0,0 +1,20 @@
+package com.perisic.heart.engine;
+
+import com.perisic.heart.model.Player;
+import com.perisic.heart.service.LeaderboardService;
+import com.perisic.heart.service.PersistenceQueue;
+
+/**
+ * Stores finished sessions in MySQL through the write-behind PersistenceQueue,
+ * the same way GameWindow does at game over.
+ */
+public class PersistenceResultStore implements ResultStore {
+    private final PersistenceQueue queue = PersistenceQueue.getInstance();
+    
+    @Override
+    public void saveSession(Player player, int sessionScore, double sessionAccuracy, int sessionAttempts) {
+        queue.savePlayer(player);
+        LeaderboardService.getInstance().recordGame(player.getUsername());
+        queue.saveSession(player.getUsername(), sessionScore, sessionAccuracy, sessionAttempts);
+    }
+}
@@ -0,0 +1,12 @@
+package com.perisic.heart.engine;
+
+import com.perisic.heart.model.Player;
+
+/**
+ * Where the engine puts a finished session: MySQL through the
+ * PersistenceQueue in production, memory in load tests.
+ */
+public interface ResultStore {
+    
+    void saveSession(Player player, int sessionScore, double sessionAccuracy, int sessionAttempts);
+}
@@ -0,0 +1,11 @@
+package com.perisic.heart.engine;
+
+/**
+ * Where an EngineSession is in its round trip:
+ * WAITING_FOR_PUZZLE -> AWAITING_ANSWER -> WAITING_FOR_PUZZLE ... -> ENDED
+ */
+public enum SessionState {
+    WAITING_FOR_PUZZLE,
+    AWAITING_ANSWER,
+    ENDED
+}
@@ -9,11 +9,27 @@ public class GameEvent {
         public final boolean correct;
         public final int answer;
         public final Player player;
+        // The puzzle answered, or null if unknown
+        public final Game game;
+        // System.nanoTime() at session start and at the answer
+        public final long sessionStartNanos;
+        public final long answeredAtNanos;
+        // From the puzzle appearing to the answer, 0 if unknown
+        public final long reactionNanos;
         
         public AnswerSubmitted(int answer, boolean correct, Player player) {
+            this(answer, correct, player, null, 0, System.nanoTime(), 0);
+        }
+        
+        public AnswerSubmitted(int answer, boolean correct, Player player, Game game,
+                               long sessionStartNanos, long answeredAtNanos, long reactionNanos) {
             this.answer = answer;
             this.correct = correct;
             this.player = player;
+            this.game = game;
+            this.sessionStartNanos = sessionStartNanos;
+            this.answeredAtNanos = answeredAtNanos;
+            this.reactionNanos = reactionNanos;
         }
     }
     
@@ -1,64 +1,270 @@
 package com.perisic.heart.events;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.Counter;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.service.BackgroundExecutor;
+import java.awt.EventQueue;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Delivers game events to listeners asynchronously through a preallocated
+ * ring buffer.
+ *
+ * Publishing claims a sequence number, stores the event in its slot and
+ * wakes the listeners; it never takes a lock, never waits for a listener
+ * and allocates nothing itself. Every listener has its own cursor into the
+ * ring and is drained in batches on the executor it registered with (the
+ * EDT for windows, the BackgroundExecutor otherwise), so a slow listener
+ * only delays itself. A listener that falls a whole ring behind loses its
+ * oldest events, which shows up in getStats().
+ */
 public class GameEventDispatcher {
     private static GameEventDispatcher instance;
-    private List<GameEventListener> listeners = new ArrayList<>();
+    
+    private static final LatencyHistogram EDT_TASK = MetricsRegistry.getInstance().histogram("edt.task");
+    private static final LatencyHistogram DISPATCH = MetricsRegistry.getInstance().histogram("events.dispatch");
+    private static final LatencyHistogram DELIVERY_LATENCY = MetricsRegistry.getInstance().histogram("events.latency");
+    private static final Counter DROPPED = MetricsRegistry.getInstance().counter("events.dropped");
+    
+    /** Runs listener code on the Swing event dispatch thread, timing each task. */
+    public static final Executor EDT = task -> EventQueue.invokeLater(MetricsRegistry.timed(EDT_TASK, task));
+    
+    private static final int RING_SIZE = Integer.highestOneBit(
+        Math.max(16, Integer.getInteger("heart.events.ringSize", 1024)));
+    private static final int MAX_BATCH = 64;
+    
+    private final int mask = RING_SIZE - 1;
+    private final AtomicReferenceArray<Object> events = new AtomicReferenceArray<>(RING_SIZE);
+    private final AtomicLongArray publishedAt = new AtomicLongArray(RING_SIZE);
+    // Sequence stored in each slot once its event is complete, -1 while being written
+    private final AtomicLongArray published = new AtomicLongArray(RING_SIZE);
+    private final AtomicLong nextSequence = new AtomicLong();
+    
+    // Replaced, never changed, so publish() can walk it without a lock or an iterator
+    private volatile Subscription[] subscriptions = new Subscription[0];
     
     public interface GameEventListener {
         void onAnswerSubmitted(GameEvent.AnswerSubmitted event);
         void onGameLoaded(GameEvent.GameLoaded event);
         void onPlayerLoggedIn(GameEvent.PlayerLoggedIn event);
         void onScoreUpdated(GameEvent.ScoreUpdated event);
-        void onSessionEnded(GameEvent.SessionEnded event); 
+        void onSessionEnded(GameEvent.SessionEnded event);
     }
     
-    private GameEventDispatcher() {}
+    private GameEventDispatcher() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            published.set(i, -1);
+        }
+    }
     
-    public static GameEventDispatcher getInstance() {
+    public static synchronized GameEventDispatcher getInstance() {
         if (instance == null) {
             instance = new GameEventDispatcher();
         }
         return instance;
     }
     
+    /**
+     * Listen on the BackgroundExecutor.
+     */
     public void addListener(GameEventListener listener) {
-        listeners.add(listener);
+        addListener(listener, BackgroundExecutor.getInstance()::execute);
     }
     
-    public void removeListener(GameEventListener listener) {
-        listeners.remove(listener);
+    /**
+     * Listen on the given executor. Events are delivered one batch at a time
+     * and in publish order. Only events published from now on are delivered.
+     */
+    public synchronized void addListener(GameEventListener listener, Executor executor) {
+        Subscription[] grown = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        grown[grown.length - 1] = new Subscription(listener, executor, nextSequence.get());
+        subscriptions = grown;
     }
     
-    public void notifyAnswerSubmitted(GameEvent.AnswerSubmitted event) {
-        for (GameEventListener listener : listeners) {
-            listener.onAnswerSubmitted(event);
+    public synchronized void removeListener(GameEventListener listener) {
+        Subscription[] kept = new Subscription[subscriptions.length];
+        int count = 0;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                subscription.active = false;
+            } else {
+                kept[count++] = subscription;
+            }
         }
+        subscriptions = Arrays.copyOf(kept, count);
+    }
+    
+    public void notifyAnswerSubmitted(GameEvent.AnswerSubmitted event) {
+        publish(event);
     }
     
     public void notifyGameLoaded(GameEvent.GameLoaded event) {
-        for (GameEventListener listener : listeners) {
-            listener.onGameLoaded(event);
-        }
+        publish(event);
     }
     
     public void notifyPlayerLoggedIn(GameEvent.PlayerLoggedIn event) {
-        for (GameEventListener listener : listeners) {
-            listener.onPlayerLoggedIn(event);
-        }
+        publish(event);
     }
     
     public void notifyScoreUpdated(GameEvent.ScoreUpdated event) {
-        for (GameEventListener listener : listeners) {
-            listener.onScoreUpdated(event);
-        }
+        publish(event);
     }
     
     public void notifySessionEnded(GameEvent.SessionEnded event) {
-        for (GameEventListener listener : listeners) {
-            listener.onSessionEnded(event);
+        publish(event);
+    }
+    
+    private void publish(Object event) {
+        long sequence = nextSequence.getAndIncrement();
+        int slot = (int) (sequence & mask);
+        published.set(slot, -1);
+        events.set(slot, event);
+        publishedAt.set(slot, System.nanoTime());
+        published.set(slot, sequence);
+        
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+    }
+    
+    public String getStats() {
+        StringBuilder stats = new StringBuilder("published=").append(nextSequence.get());
+        for (Subscription subscription : subscriptions) {
+            stats.append(" | ").append(subscription.getStats());
+        }
+        return stats.toString();
+    }
+    
+    /**
+     * One listener's cursor into the ring.
+     */
+    private class Subscription implements Runnable {
+        final GameEventListener listener;
+        final Executor executor;
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        volatile boolean active = true;
+        volatile long cursor;
+        
+        // Metrics, written only by the draining thread
+        volatile long delivered = 0;
+        volatile long dropped = 0;
+        volatile long batches = 0;
+        volatile long latencyTotalNanos = 0;
+        volatile long latencyMaxNanos = 0;
+        
+        Subscription(GameEventListener listener, Executor executor, long cursor) {
+            this.listener = listener;
+            this.executor = executor;
+            this.cursor = cursor;
+        }
+        
+        void wake() {
+            if (active && scheduled.compareAndSet(false, true)) {
+                if (executor == EDT) {
+                    // Straight onto the queue, no wrapper; run() times itself
+                    EventQueue.invokeLater(this);
+                } else {
+                    executor.execute(this);
+                }
+            }
+        }
+        
+        @Override
+        public void run() {
+            if (executor != EDT) {
+                drain();
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                drain();
+            } finally {
+                EDT_TASK.recordSince(start);
+            }
+        }
+        
+        /**
+         * Deliver up to MAX_BATCH events, then hand the thread back.
+         */
+        private void drain() {
+            long sequence = cursor;
+            int count = 0;
+            while (active && count < MAX_BATCH) {
+                long head = nextSequence.get();
+                if (sequence >= head) break;
+                if (sequence < head - RING_SIZE) {
+                    // Overwritten before we got to it
+                    dropped += head - RING_SIZE - sequence;
+                    DROPPED.add(head - RING_SIZE - sequence);
+                    sequence = head - RING_SIZE;
+                    continue;
+                }
+                
+                int slot = (int) (sequence & mask);
+                if (published.get(slot) != sequence) break; // Still being written
+                Object event = events.get(slot);
+                long at = publishedAt.get(slot);
+                if (published.get(slot) != sequence) continue; // Overwritten while reading
+                
+                sequence++;
+                cursor = sequence;
+                long start = System.nanoTime();
+                deliver(event);
+                DISPATCH.recordSince(start);
+                count++;
+                
+                long latency = System.nanoTime() - at;
+                DELIVERY_LATENCY.record(latency);
+                latencyTotalNanos += latency;
+                if (latency > latencyMaxNanos) latencyMaxNanos = latency;
+            }
+            cursor = sequence;
+            delivered += count;
+            if (count > 0) batches++;
+            
+            scheduled.set(false);
+            if (active && isReady(sequence)) {
+                wake();
+            }
+        }
+        
+        private boolean isReady(long sequence) {
+            long head = nextSequence.get();
+            return sequence < head
+                && (sequence < head - RING_SIZE || published.get((int) (sequence & mask)) == sequence);
+        }
+        
+        private void deliver(Object event) {
+            try {
+                if (event instanceof GameEvent.AnswerSubmitted) {
+                    listener.onAnswerSubmitted((GameEvent.AnswerSubmitted) event);
+                } else if (event instanceof GameEvent.GameLoaded) {
+                    listener.onGameLoaded((GameEvent.GameLoaded) event);
+                } else if (event instanceof GameEvent.PlayerLoggedIn) {
+                    listener.onPlayerLoggedIn((GameEvent.PlayerLoggedIn) event);
+                } else if (event instanceof GameEvent.ScoreUpdated) {
+                    listener.onScoreUpdated((GameEvent.ScoreUpdated) event);
+                } else if (event instanceof GameEvent.SessionEnded) {
+                    listener.onSessionEnded((GameEvent.SessionEnded) event);
+                }
+            } catch (RuntimeException e) {
+                Log.error("❌ Event listener " + listener.getClass().getSimpleName()
+                          + " failed: " + e.getMessage(), e);
+            }
+        }
+        
+        String getStats() {
+            long n = delivered;
+            return String.format("%s lag=%d delivered=%d dropped=%d batches=%d latency avg %.2f ms max %.2f ms",
+                listener.getClass().getSimpleName(), nextSequence.get() - cursor, n, dropped, batches,
+                n > 0 ? latencyTotalNanos / (double) n / 1_000_000 : 0.0, latencyMaxNanos / 1_000_000.0);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package com.perisic.heart.gui;
+
+import com.perisic.heart.model.Game;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small LRU cache of puzzle images already converted for the screen.
+ *
+ * Images are scaled to fit the game panel and copied into a BufferedImage
+ * compatible with the screen's GraphicsConfiguration. That way Swing can blit
+ * them on every repaint without a colour-model conversion. prepare() is meant
+ * to run off the EDT (the prefetch producers call it), so the EDT only swaps
+ * in a ready image.
+ */
+public class DisplayImageCache {
+    private static DisplayImageCache instance;
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    // Viewport of GameWindow's game panel before it has been laid out
+    private static final Dimension DEFAULT_TARGET = new Dimension(1076, 416);
+    
+    private final int capacity;
+    private final Map<BufferedImage, BufferedImage> cache;
+    private volatile Dimension targetSize;
+    private long hits = 0;
+    private long misses = 0;
+    
+    public static synchronized DisplayImageCache getInstance() {
+        if (instance == null) {
+            instance = new DisplayImageCache(DEFAULT_TARGET, DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+    
+    public DisplayImageCache(Dimension targetSize, int capacity) {
+        this.targetSize = targetSize;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<BufferedImage, BufferedImage>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BufferedImage, BufferedImage> eldest) {
+                return size() > DisplayImageCache.this.capacity;
+            }
+        };
+    }
+    
+    /**
+     * Convert a game's image for display. Safe to call from any thread.
+     */
+    public void prepare(Game game) {
+        if (game == null || game.getImage() == null) return;
+        BufferedImage source = game.getImage();
+        
+        Dimension target = targetSize;
+        synchronized (this) {
+            if (matches(cache.get(source), source, target)) return;
+        }
+        BufferedImage ready = convert(source, target);
+        synchronized (this) {
+            cache.put(source, ready);
+        }
+    }
+    
+    /**
+     * Display-ready version of the image, converting on the spot (and counting
+     * a miss) if prepare() did not get to it first.
+     */
+    public BufferedImage get(BufferedImage source) {
+        Dimension target = targetSize;
+        BufferedImage ready;
+        synchronized (this) {
+            ready = cache.get(source);
+            if (matches(ready, source, target)) {
+                hits++;
+                return ready;
+            }
+            misses++;
+        }
+        ready = convert(source, target);
+        synchronized (this) {
+            cache.put(source, ready);
+        }
+        return ready;
+    }
+    
+    /**
+     * Change the size images are scaled to. Cached images that come out
+     * differently at the new size are converted again on their next get().
+     */
+    public void setTargetSize(Dimension size) {
+        if (size.width <= 0 || size.height <= 0) return;
+        targetSize = new Dimension(size);
+    }
+    
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    
+    private static boolean matches(BufferedImage ready, BufferedImage source, Dimension target) {
+        return ready != null && ready.getWidth() == scaledWidth(source, target)
+                             && ready.getHeight() == scaledHeight(source, target);
+    }
+    
+    private static double scale(BufferedImage source, Dimension target) {
+        // Fit inside the panel, but never enlarge - upscaled hearts get blurry
+        return Math.min(1.0, Math.min(
+            target.getWidth() / source.getWidth(),
+            target.getHeight() / source.getHeight()));
+    }
+    
+    private static int scaledWidth(BufferedImage source, Dimension target) {
+        return Math.max(1, (int) Math.round(source.getWidth() * scale(source, target)));
+    }
+    
+    private static int scaledHeight(BufferedImage source, Dimension target) {
+        return Math.max(1, (int) Math.round(source.getHeight() * scale(source, target)));
+    }
+    
+    private static BufferedImage convert(BufferedImage source, Dimension target) {
+        int width = scaledWidth(source, target);
+        int height = scaledHeight(source, target);
+        
+        BufferedImage ready = createCompatibleImage(width, height, source.getTransparency());
+        Graphics2D g = ready.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return ready;
+    }
+    
+    static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+                ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        }
+        GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice().getDefaultConfiguration();
+        return config.createCompatibleImage(width, height, transparency);
+    }
+}
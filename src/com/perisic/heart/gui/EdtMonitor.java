@@ -0,0 +1,265 @@
+package com.perisic.heart.gui;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.Counter;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InvocationEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replaces the system event queue to find out when, and where, the EDT
+ * stalls.
+ *
+ * Every dispatched event is timed into the edt.dispatch histogram. A
+ * watchdog thread looks at the EDT every heart.edt.sampleMs (default 25)
+ * and, while an event has been running longer than heart.edt.stallMs
+ * (default 100), samples its stack. A stall is charged to the sampled call
+ * site: the innermost frame of our own code, plus the outermost one that
+ * got there, e.g. "LeaderboardService.getPlayerRank:170 <- GameWindow.onScoreUpdated:580".
+ * Stalls too short to be sampled are charged to the event itself.
+ *
+ * Time an event spends in a nested event loop (a modal dialog) isn't a
+ * stall, since the UI stays responsive; only what it does after the loop
+ * returns counts. The worst offenders are in getReport(), which is also
+ * part of every metrics report (JMX and file).
+ */
+public class EdtMonitor extends EventQueue {
+    private static EdtMonitor instance;
+    
+    private static final int MAX_REPORTED = 15;
+    private static final int EXAMPLE_FRAMES = 12;
+    
+    private final long stallNanos;
+    private final long sampleMillis;
+    private final LatencyHistogram dispatchTime = MetricsRegistry.getInstance().histogram("edt.dispatch");
+    private final Counter stalls = MetricsRegistry.getInstance().counter("edt.stalls");
+    private final Counter modalLoops = MetricsRegistry.getInstance().counter("edt.modalLoops");
+    private final ConcurrentHashMap<String, Offender> offenders = new ConcurrentHashMap<>();
+    
+    // Written on the EDT, read by the watchdog. dispatchStart is 0 while idle.
+    private volatile Thread edt;
+    private volatile long dispatchStart = 0;
+    private volatile long dispatchEpoch = 0;
+    // EDT only
+    private long dispatchCount = 0;
+    private long resumedAt = 0;
+    private long resumedEpoch = 0;
+    // First call site the watchdog sampled during a dispatch
+    private final AtomicReference<Sample> lastSample = new AtomicReference<>();
+    
+    private static final class Sample {
+        final long epoch;
+        final String site;
+        final StackTraceElement[] stack;
+        
+        Sample(long epoch, String site, StackTraceElement[] stack) {
+            this.epoch = epoch;
+            this.site = site;
+            this.stack = stack;
+        }
+    }
+    
+    /**
+     * Stalls charged to one call site.
+     */
+    private static final class Offender {
+        final String site;
+        final StackTraceElement[] example;
+        long count;
+        long totalNanos;
+        long maxNanos;
+        
+        Offender(String site, StackTraceElement[] example) {
+            this.site = site;
+            this.example = example;
+        }
+        
+        synchronized void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+    
+    private EdtMonitor(long stallMillis, long sampleMillis) {
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+        this.sampleMillis = Math.max(1, sampleMillis);
+    }
+    
+    /**
+     * Push the monitor onto the system event queue. Safe to call twice.
+     */
+    public static synchronized EdtMonitor install() {
+        if (instance == null) {
+            instance = new EdtMonitor(Long.getLong("heart.edt.stallMs", 100),
+                                      Long.getLong("heart.edt.sampleMs", 25));
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(instance);
+            
+            Thread watchdog = new Thread(instance::watch, "edt-watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+            MetricsRegistry.getInstance().section("EDT stalls", instance::getReport);
+        }
+        return instance;
+    }
+    
+    public static synchronized EdtMonitor getInstance() {
+        return instance;
+    }
+    
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        // Waiting for input, e.g. in a modal dialog's nested loop, isn't a stall
+        dispatchStart = 0;
+        return super.getNextEvent();
+    }
+    
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        edt = Thread.currentThread();
+        long count = ++dispatchCount;
+        long epoch = ++dispatchEpoch;
+        long start = System.nanoTime();
+        dispatchStart = start;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long end = System.nanoTime();
+            if (dispatchCount == count) {
+                long elapsed = end - start;
+                dispatchTime.record(elapsed);
+                if (elapsed > stallNanos) {
+                    recordStall(event, epoch, elapsed);
+                }
+            } else {
+                // Ran a nested loop: only the time since it last dispatched was ours
+                modalLoops.increment();
+                long tail = end - resumedAt;
+                dispatchTime.record(tail);
+                if (tail > stallNanos) {
+                    recordStall(event, resumedEpoch, tail);
+                }
+            }
+            // If this was nested, the event below it carries on from here
+            resumedAt = end;
+            resumedEpoch = ++dispatchEpoch;
+            dispatchStart = end;
+        }
+    }
+    
+    private void recordStall(AWTEvent event, long epoch, long elapsed) {
+        Sample sample = lastSample.get();
+        String site;
+        StackTraceElement[] stack;
+        if (sample != null && sample.epoch == epoch) {
+            site = sample.site;
+            stack = sample.stack;
+        } else {
+            site = "(not sampled) " + describe(event);
+            stack = new StackTraceElement[0];
+        }
+        offenders.computeIfAbsent(site, s -> new Offender(s, stack)).record(elapsed);
+        stalls.increment();
+        Log.warn("🐢 EDT stalled {} ms in {}", TimeUnit.NANOSECONDS.toMillis(elapsed), site);
+    }
+    
+    private static String describe(AWTEvent event) {
+        if (event instanceof InvocationEvent) {
+            // paramString names the Runnable, usually a lambda of the class that posted it
+            String params = event.paramString();
+            int runnable = params.indexOf("runnable=");
+            if (runnable >= 0) {
+                int end = params.indexOf(',', runnable);
+                return "invokeLater " + params.substring(runnable + 9, end < 0 ? params.length() : end);
+            }
+        }
+        return event.getClass().getSimpleName() + " on " + event.getSource().getClass().getSimpleName();
+    }
+    
+    private void watch() {
+        while (true) {
+            try {
+                Thread.sleep(sampleMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = dispatchStart;
+            long epoch = dispatchEpoch;
+            Thread thread = edt;
+            if (start == 0 || thread == null || System.nanoTime() - start < stallNanos) continue;
+            
+            Sample previous = lastSample.get();
+            if (previous != null && previous.epoch == epoch) continue; // Already have this one
+            
+            StackTraceElement[] stack = thread.getStackTrace();
+            // The EDT may have moved on while we were sampling
+            if (dispatchEpoch != epoch) continue;
+            lastSample.set(new Sample(epoch, callSite(stack), trim(stack)));
+        }
+    }
+    
+    /**
+     * "Inner.method:line <- Outer.method:line" over our own frames.
+     */
+    private static String callSite(StackTraceElement[] stack) {
+        StackTraceElement inner = null;
+        StackTraceElement outer = null;
+        for (StackTraceElement frame : stack) {
+            if (!frame.getClassName().startsWith("com.perisic.heart.")
+                || frame.getClassName().equals(EdtMonitor.class.getName())) {
+                continue;
+            }
+            if (inner == null) inner = frame;
+            outer = frame;
+        }
+        if (inner == null) {
+            // Only JDK code: Swing painting or layout, say
+            return stack.length > 0 ? "(library) " + format(stack[0]) : "(unknown)";
+        }
+        return inner == outer ? format(inner) : format(inner) + " <- " + format(outer);
+    }
+    
+    private static String format(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName()
+               + ":" + frame.getLineNumber();
+    }
+    
+    private static StackTraceElement[] trim(StackTraceElement[] stack) {
+        StackTraceElement[] example = new StackTraceElement[Math.min(EXAMPLE_FRAMES, stack.length)];
+        System.arraycopy(stack, 0, example, 0, example.length);
+        return example;
+    }
+    
+    /**
+     * Call sites by total time stalled, worst first, each with a sampled stack.
+     */
+    public String getReport() {
+        List<Offender> worst = new ArrayList<>(offenders.values());
+        worst.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("dispatch %s, stalls over %d ms: %d, modal loops: %d%n",
+            dispatchTime.summary(TimeUnit.MILLISECONDS), TimeUnit.NANOSECONDS.toMillis(stallNanos),
+            stalls.get(), modalLoops.get()));
+        for (Offender offender : worst.subList(0, Math.min(MAX_REPORTED, worst.size()))) {
+            synchronized (offender) {
+                report.append(String.format("%6d ms total %5d x  max %5d ms  %s%n",
+                    TimeUnit.NANOSECONDS.toMillis(offender.totalNanos), offender.count,
+                    TimeUnit.NANOSECONDS.toMillis(offender.maxNanos), offender.site));
+            }
+            for (StackTraceElement frame : offender.example) {
+                report.append("        at ").append(frame).append('\n');
+            }
+        }
+        return report.toString();
+    }
+}
@@ -4,9 +4,15 @@ import com.perisic.heart.model.Player;
 import com.perisic.heart.model.GameSession;
 import com.perisic.heart.service.*;
 import com.perisic.heart.events.*;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
 import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
 
 public class GameWindow extends JFrame implements GameEventDispatcher.GameEventListener {
     
@@ -19,11 +25,17 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
     private JLabel rankLabel;
     private JLabel timerLabel;
     private JProgressBar timerProgress;
-    private Timer countdownTimer;
+    private TimingWheel.Timeout countdownTick;
     private Timer answerDelayTimer;
     private JButton[] numberButtons;
     private boolean isShowingGameOver = false;
     private JButton soundToggleBtn;
+    private DisplayImageCache displayCache;
+    private LeaderboardIndex.Subscription rankSubscription;
+    
+    // EDT frame-time instrumentation for puzzle display
+    private static final LatencyHistogram IMAGE_SWAP = MetricsRegistry.getInstance().histogram("gui.imageSwap");
+    private static final LatencyHistogram PUZZLE_PAINT = MetricsRegistry.getInstance().histogram("gui.puzzlePaint");
     
     // Classic professional colors
     private static final Color DARK_BLUE = new Color(31, 58, 96);
@@ -38,11 +50,20 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
         gameService = new GameService();
         soundManager = SoundManager.getInstance();
         
+        // Convert puzzle images for the screen on the prefetch threads, not the EDT
+        displayCache = DisplayImageCache.getInstance();
+        PuzzlePrefetcher.getInstance().setPreparer(displayCache::prepare);
+        
         // IMPORTANT: Register listener BEFORE starting session!
-        GameEventDispatcher.getInstance().addListener(this);
+        // Events are delivered on the EDT, so the handlers can touch Swing directly
+        GameEventDispatcher.getInstance().addListener(this, GameEventDispatcher.EDT);
         
         setupClassicGameWindow(player);
         
+        // The leaderboard tells us when our rank moves, rather than being asked after every answer
+        rankSubscription = LeaderboardIndex.getInstance().subscribe(
+            player.getUsername(), this::showRank, GameEventDispatcher.EDT);
+        
         // Manually reset display to 0 before starting session
         scoreLabel.setText(createStatLabel("SCORE", "0", SUCCESS).getText());
         accuracyLabel.setText(createStatLabel("ACCURACY", "0.0%", LIGHT_BLUE).getText());
@@ -183,12 +204,27 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
         gamePanel.setBorder(new LineBorder(new Color(200, 200, 200), 2));
         gamePanel.setPreferredSize(new Dimension(1080, 420));
         
-        imageLabel = new JLabel("Loading game...", JLabel.CENTER);
+        imageLabel = new JLabel("Loading game...", JLabel.CENTER) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                long start = System.nanoTime();
+                super.paintComponent(g);
+                if (getIcon() != null) {
+                    PUZZLE_PAINT.recordSince(start);
+                }
+            }
+        };
         imageLabel.setFont(new Font("Arial", Font.ITALIC, 16));
         imageLabel.setForeground(new Color(127, 140, 141));
         
         JScrollPane scrollPane = new JScrollPane(imageLabel);
         scrollPane.setBorder(null);
+        scrollPane.getViewport().addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                displayCache.setTargetSize(scrollPane.getViewport().getExtentSize());
+            }
+        });
         gamePanel.add(scrollPane, BorderLayout.CENTER);
         
         return gamePanel;
@@ -252,70 +288,82 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
     
     private void startCountdownTimer() {
         lastTickSecond = -1;
+        updateCountdown();
+    }
+    
+    /**
+     * Wake up exactly when the displayed second changes instead of polling
+     * the session clock.
+     */
+    private void scheduleCountdown(GameSession session) {
+        countdownTick = TimingWheel.getInstance().schedule(
+            () -> EventQueue.invokeLater(this::updateCountdown),
+            session.getClock().getNextSecondNanos());
+    }
+    
+    private void updateCountdown() {
+        GameSession session = gameService.getSession();
+        if (session == null || isShowingGameOver) return;
         
-        countdownTimer = new Timer(100, e -> {
-            if (gameService.getSession() != null && gameService.getSession().isSessionActive()) {
-                long remaining = gameService.getSession().getRemainingSeconds();
-                timerLabel.setText(String.valueOf(remaining));
-                timerProgress.setValue((int) remaining);
-                
-                if (remaining > 0 && remaining != lastTickSecond) {
-                    soundManager.playTickSound();
-                    lastTickSecond = remaining;
-                }
-                
-                JPanel timerPanel = (JPanel) timerLabel.getParent().getParent();
-                if (remaining <= 5 && remaining > 0) {
-                    timerPanel.setBackground(DANGER);
-                    timerProgress.setForeground(Color.WHITE);
-                } else if (remaining <= 10) {
-                    timerPanel.setBackground(WARNING);
-                    timerProgress.setForeground(Color.WHITE);
-                } else {
-                    timerPanel.setBackground(DARK_BLUE);
-                    timerProgress.setForeground(SUCCESS);
-                }
-                
-                if (remaining <= 0) {
-                    System.out.println("⏰ Timer reached 0! Ending session...");
-                    
-                    if (countdownTimer != null && countdownTimer.isRunning()) {
-                        countdownTimer.stop();
-                    }
-                    
-                    disableAllButtons();
-                    
-                    if (answerDelayTimer != null && answerDelayTimer.isRunning()) {
-                        System.out.println("❌ Cancelling pending answer timer...");
-                        answerDelayTimer.stop();
-                    }
-                    
-                    soundManager.playGameOverSound();
-                    
-                    Timer endSessionTimer = new Timer(500, evt -> {
-                        System.out.println("🎮 Calling endSession now...");
-                        if (gameService.getSession() != null) {
-                            gameService.endSession();
-                        } else {
-                            System.out.println("⚠️ Session is null, showing dialog manually");
-                            showGameOverDialog();
-                        }
-                    });
-                    endSessionTimer.setRepeats(false);
-                    endSessionTimer.start();
-                }
+        long remaining = session.getRemainingSeconds();
+        if (remaining > 0 && !session.isSessionActive()) return;
+        
+        timerLabel.setText(String.valueOf(remaining));
+        timerProgress.setValue((int) remaining);
+        
+        if (remaining > 0 && remaining != lastTickSecond) {
+            soundManager.playTickSound();
+            lastTickSecond = remaining;
+        }
+        
+        JPanel timerPanel = (JPanel) timerLabel.getParent().getParent();
+        if (remaining <= 5 && remaining > 0) {
+            timerPanel.setBackground(DANGER);
+            timerProgress.setForeground(Color.WHITE);
+        } else if (remaining <= 10) {
+            timerPanel.setBackground(WARNING);
+            timerProgress.setForeground(Color.WHITE);
+        } else {
+            timerPanel.setBackground(DARK_BLUE);
+            timerProgress.setForeground(SUCCESS);
+        }
+        
+        if (remaining > 0) {
+            scheduleCountdown(session);
+            return;
+        }
+        
+        Log.debug("⏰ Timer reached 0! Ending session...");
+        
+        disableAllButtons();
+        
+        if (answerDelayTimer != null && answerDelayTimer.isRunning()) {
+            Log.debug("❌ Cancelling pending answer timer...");
+            answerDelayTimer.stop();
+        }
+        
+        soundManager.playGameOverSound();
+        
+        Timer endSessionTimer = new Timer(500, evt -> {
+            Log.debug("🎮 Calling endSession now...");
+            if (gameService.getSession() != null) {
+                gameService.endSession();
+            } else {
+                Log.warn("⚠️ Session is null, showing dialog manually");
+                showGameOverDialog();
             }
         });
-        countdownTimer.start();
+        endSessionTimer.setRepeats(false);
+        endSessionTimer.start();
     }
     
     private void handleAnswer(int answer) {
         if (gameService.getSession() == null || !gameService.getSession().isSessionActive()) {
-            System.out.println("⚠️ Session inactive, ignoring button click");
+            Log.debug("⚠️ Session inactive, ignoring button click");
             return;
         }
         
-        System.out.println("🎯 Button " + answer + " clicked");
+        Log.debug("🎯 Button {} clicked", answer);
         gameService.submitAnswer(answer);
         
         if (answerDelayTimer != null && answerDelayTimer.isRunning()) {
@@ -324,10 +372,10 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
         
         answerDelayTimer = new Timer(800, e -> {
             if (gameService.getSession() != null && gameService.getSession().isSessionActive()) {
-                System.out.println("⏭️ Loading next game...");
+                Log.debug("⏭️ Loading next game...");
                 gameService.loadNextGame();
             } else {
-                System.out.println("⏰ Session ended, not loading next game");
+                Log.debug("⏰ Session ended, not loading next game");
             }
         });
         answerDelayTimer.setRepeats(false);
@@ -335,7 +383,7 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
     }
     
     private void showLeaderboard() {
-        LeaderboardWindow leaderboard = new LeaderboardWindow(this);
+        LeaderboardWindow leaderboard = new LeaderboardWindow(this, gameService.getSession().getPlayer().getUsername());
         leaderboard.setVisible(true);
     }
     
@@ -359,12 +407,12 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
     
     private void showGameOverDialog() {
         if (!isShowingGameOver) {
-            System.out.println("⚠️ showGameOverDialog called but flag not set, aborting");
+            Log.warn("⚠️ showGameOverDialog called but flag not set, aborting");
             return;
         }
         
-        if (countdownTimer != null) {
-            countdownTimer.stop();
+        if (countdownTick != null) {
+            countdownTick.cancel();
         }
         
         if (answerDelayTimer != null && answerDelayTimer.isRunning()) {
@@ -374,16 +422,18 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
         Player player = gameService.getSession().getPlayer();
         String username = player.getUsername();
         double sessionAccuracy = gameService.getSession().getSessionAccuracy();
+        int sessionScore = gameService.getSession().getSessionScore();
+        int sessionAttempts = gameService.getSession().getSessionAttempts();
         
-        PlayerDataService.getInstance().savePlayer(player);
-        PlayerDataService.getInstance().saveSession(
-            username,
-            gameService.getSession().getSessionScore(),
-            sessionAccuracy,
-            gameService.getSession().getSessionAttempts()
-        );
+        // Hand the writes to the write-behind queue so the dialog never waits on MySQL
+        PersistenceQueue persistence = PersistenceQueue.getInstance();
+        persistence.savePlayer(player);
+        LeaderboardService.getInstance().recordGame(username);
+        persistence.saveSession(username, sessionScore, sessionAccuracy, sessionAttempts);
         
         boolean passed = sessionAccuracy >= 50.0;
+        double averageSeconds = gameService.getSession().getAverageReactionMillis() / 1000.0;
+        PlayerAnalytics.Summary analytics = PlayerAnalytics.getInstance().getSummary(username);
         
         String title;
         String message;
@@ -398,17 +448,26 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
                 "=== THIS SESSION ===\n" +
                 "Score: %d\n" +
                 "Accuracy: %.1f%% ✅ (50%%+ required)\n" +
-                "Games: %d\n\n" +
+                "Games: %d\n" +
+                "Average Time: %.2f s\n\n" +
                 "=== TOTAL PROGRESS ===\n" +
                 "Overall Score: %d\n" +
                 "Overall Accuracy: %.1f%%\n" +
+                "Recent Accuracy: %.1f%%\n" +
+                "Median Time: %.2f s (90%% within %.2f s)\n" +
+                "Best Streak: %d\n" +
                 "Total Games: %d\n\n" +
                 "Play another round?",
                 gameService.getSession().getSessionScore(),
                 sessionAccuracy,
                 gameService.getSession().getSessionAttempts(),
+                averageSeconds,
                 player.getScore(),
                 player.getAccuracy(),
+                analytics.getDecayedAccuracy(),
+                analytics.getMedianMillis() / 1000.0,
+                analytics.getP90Millis() / 1000.0,
+                analytics.getBestStreak(),
                 player.getTotalAttempts()
             );
         } else {
@@ -420,17 +479,26 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
                 "=== THIS SESSION ===\n" +
                 "Score: %d\n" +
                 "Accuracy: %.1f%% ❌ (Need 50%%+)\n" +
-                "Games: %d\n\n" +
+                "Games: %d\n" +
+                "Average Time: %.2f s\n\n" +
                 "=== TOTAL PROGRESS ===\n" +
                 "Overall Score: %d\n" +
                 "Overall Accuracy: %.1f%%\n" +
+                "Recent Accuracy: %.1f%%\n" +
+                "Median Time: %.2f s (90%% within %.2f s)\n" +
+                "Best Streak: %d\n" +
                 "Total Games: %d\n\n" +
                 "Try again?",
                 gameService.getSession().getSessionScore(),
                 sessionAccuracy,
                 gameService.getSession().getSessionAttempts(),
+                averageSeconds,
                 player.getScore(),
                 player.getAccuracy(),
+                analytics.getDecayedAccuracy(),
+                analytics.getMedianMillis() / 1000.0,
+                analytics.getP90Millis() / 1000.0,
+                analytics.getBestStreak(),
                 player.getTotalAttempts()
             );
         }
@@ -444,18 +512,19 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
         );
         
         GameEventDispatcher.getInstance().removeListener(this);
+        rankSubscription.cancel();
         isShowingGameOver = false;
         
         if (choice == JOptionPane.YES_OPTION) {
             dispose();
-            Player existingPlayer = PlayerDataService.getInstance().loadPlayer(username);
-            if (existingPlayer != null) {
-                GameWindow newGame = new GameWindow(existingPlayer);
-                newGame.setVisible(true);
-            } else {
-                GameWindow newGame = new GameWindow(player);
-                newGame.setVisible(true);
-            }
+            // loadPlayer sees queued progress, so there's no need to wait for the flush
+            BackgroundExecutor.getInstance().submit(() -> {
+                Player existingPlayer = PlayerDataService.getInstance().loadPlayer(username);
+                SwingUtilities.invokeLater(() -> {
+                    GameWindow newGame = new GameWindow(existingPlayer != null ? existingPlayer : player);
+                    newGame.setVisible(true);
+                });
+            });
         } else {
             dispose();
             LoginWindow login = new LoginWindow();
@@ -465,90 +534,86 @@ public class GameWindow extends JFrame implements GameEventDispatcher.GameEventL
     
     @Override
     public void onAnswerSubmitted(GameEvent.AnswerSubmitted event) {
-        System.out.println("📝 Answer submitted: " + event.answer + " - " + (event.correct ? "CORRECT" : "WRONG"));
+        Log.debug("📝 Answer submitted: {} - {}", event.answer, event.correct ? "CORRECT" : "WRONG");
         
-        SwingUtilities.invokeLater(() -> {
-            GameSession session = gameService.getSession();
-            
-            if (session == null) {
-                System.out.println("⚠️ WARNING: Session is null!");
-                return;
-            }
-            
-            System.out.println("📊 Session stats - Score: " + session.getSessionScore() + 
-                             ", Accuracy: " + session.getSessionAccuracy() + 
-                             ", Attempts: " + session.getSessionAttempts());
-            
-            if (event.correct) {
-                feedbackLabel.setText("✓ CORRECT! Well done!");
-                feedbackLabel.setBackground(SUCCESS);
-                soundManager.playCorrectSound();
-            } else {
-                feedbackLabel.setText("✗ WRONG! Try again!");
-                feedbackLabel.setBackground(DANGER);
-                soundManager.playWrongSound();
-            }
+        GameSession session = gameService.getSession();
+        
+        if (session == null) {
+            Log.warn("⚠️ WARNING: Session is null!");
+            return;
+        }
+        
+        Log.debug("📊 Session stats - Score: {}, Accuracy: {}, Attempts: {}",
+                  session.getSessionScore(), session.getSessionAccuracy(), session.getSessionAttempts());
+        
+        if (event.correct) {
+            feedbackLabel.setText("✓ CORRECT! Well done!");
+            feedbackLabel.setBackground(SUCCESS);
+            soundManager.playCorrectSound();
+        } else {
+            feedbackLabel.setText("✗ WRONG! Try again!");
+            feedbackLabel.setBackground(DANGER);
+            soundManager.playWrongSound();
+        }
+        
+        scoreLabel.setText(createStatLabel("SCORE", 
+            String.valueOf(session.getSessionScore()), SUCCESS).getText());
+        accuracyLabel.setText(createStatLabel("ACCURACY", 
+            String.format("%.1f%%", session.getSessionAccuracy()), LIGHT_BLUE).getText());
             
-            scoreLabel.setText(createStatLabel("SCORE", 
-                String.valueOf(session.getSessionScore()), SUCCESS).getText());
-            accuracyLabel.setText(createStatLabel("ACCURACY", 
-                String.format("%.1f%%", session.getSessionAccuracy()), LIGHT_BLUE).getText());
-                
-            System.out.println("✅ Display updated");
-        });
+        Log.debug("✅ Display updated");
     }
     
     @Override
     public void onGameLoaded(GameEvent.GameLoaded event) {
-        SwingUtilities.invokeLater(() -> {
-            if (event.game != null) {
-                ImageIcon icon = new ImageIcon(event.game.getImage());
-                imageLabel.setIcon(icon);
-                imageLabel.setText("");
-                feedbackLabel.setText("How many hearts do you see?");
-                feedbackLabel.setBackground(DARK_GRAY);
-            } else {
-                imageLabel.setText("Failed to load game. Check internet connection.");
-                feedbackLabel.setText("Loading next game...");
-            }
-        });
+        if (event.game != null) {
+            long start = System.nanoTime();
+            BufferedImage ready = displayCache.get(event.game.getImage());
+            imageLabel.setIcon(new ImageIcon(ready));
+            imageLabel.setText("");
+            feedbackLabel.setText("How many hearts do you see?");
+            feedbackLabel.setBackground(DARK_GRAY);
+            IMAGE_SWAP.recordSince(start);
+            Log.debug("🖼️ EDT image swap {} µs (display cache hits {}, misses {})",
+                (System.nanoTime() - start) / 1000, displayCache.getHits(), displayCache.getMisses());
+        } else {
+            imageLabel.setText("Failed to load game. Check internet connection.");
+            feedbackLabel.setText("Loading next game...");
+        }
     }
     
     @Override
     public void onPlayerLoggedIn(GameEvent.PlayerLoggedIn event) {
-        System.out.println("🎮 Player logged in event - Resetting display to 0");
-        SwingUtilities.invokeLater(() -> {
-            scoreLabel.setText(createStatLabel("SCORE", "0", SUCCESS).getText());
-            accuracyLabel.setText(createStatLabel("ACCURACY", "0.0%", LIGHT_BLUE).getText());
-            System.out.println("✅ Display reset complete");
-        });
+        Log.debug("🎮 Player logged in event - Resetting display to 0");
+        scoreLabel.setText(createStatLabel("SCORE", "0", SUCCESS).getText());
+        accuracyLabel.setText(createStatLabel("ACCURACY", "0.0%", LIGHT_BLUE).getText());
+        Log.debug("✅ Display reset complete");
     }
     
     @Override
     public void onScoreUpdated(GameEvent.ScoreUpdated event) {
-        System.out.println("📊 Score updated event received");
-        SwingUtilities.invokeLater(() -> {
-            LeaderboardService lb = LeaderboardService.getInstance();
-            int rank = lb.getPlayerRank(event.player.getUsername());
-            int total = lb.getTotalPlayers();
-            rankLabel.setText(createStatLabel("RANK", rank + "/" + total, LIGHT_BLUE).getText());
-            System.out.println("✅ Rank updated: " + rank + "/" + total);
-        });
+        // The rank label follows rankSubscription
+        Log.debug("📊 Score updated event received");
+    }
+    
+    private void showRank(String username, int rank, int total) {
+        rankLabel.setText(createStatLabel("RANK", rank > 0 ? rank + "/" + total : "-", LIGHT_BLUE).getText());
+        Log.debug("✅ Rank updated: {}/{}", rank, total);
     }
     
     @Override
     public void onSessionEnded(GameEvent.SessionEnded event) {
-        System.out.println("📢 SessionEnded event received!");
+        Log.debug("📢 SessionEnded event received!");
         
         if (isShowingGameOver) {
-            System.out.println("⚠️ Game over dialog already showing, ignoring duplicate event");
+            Log.warn("⚠️ Game over dialog already showing, ignoring duplicate event");
             return;
         }
         
         isShowingGameOver = true;
         
         SwingUtilities.invokeLater(() -> {
-            System.out.println("💬 Showing game over dialog...");
+            Log.debug("💬 Showing game over dialog...");
             showGameOverDialog();
         });
     }
@@ -0,0 +1,98 @@
+package com.perisic.heart.gui;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Pre-rasterized floating hearts for LoginWindow's background.
+ *
+ * Hearts are bucketed by size, colour and rotation, and each bucket is drawn
+ * once with antialiasing into a translucent compatible image, so a frame is
+ * only a handful of image blits. Sprites are created on first use; a login
+ * screen typically needs a few hundred of them, a few MB in total.
+ */
+class HeartSprites {
+    static final int MIN_SIZE = 20;
+    static final int SIZE_STEP = 5;
+    static final int SIZE_BUCKETS = 6;
+    static final int ROTATION_BUCKETS = 24;
+    static final int COLOURS = 8;
+    
+    private final Color[] palette = new Color[COLOURS];
+    private final Map<Integer, BufferedImage> sprites = new HashMap<>();
+    
+    HeartSprites() {
+        // Same pinks and reds the hearts used to pick at random, fixed up front
+        Random random = new Random(7);
+        for (int i = 0; i < COLOURS; i++) {
+            palette[i] = new Color(200 + random.nextInt(56), 50 + random.nextInt(100),
+                                   100 + random.nextInt(100), 100 + random.nextInt(100));
+        }
+    }
+    
+    static int sizeOf(int sizeBucket) {
+        return MIN_SIZE + sizeBucket * SIZE_STEP;
+    }
+    
+    static int rotationBucket(float degrees) {
+        float turn = ((degrees % 360) + 360) % 360;
+        return Math.round(turn * ROTATION_BUCKETS / 360f) % ROTATION_BUCKETS;
+    }
+    
+    /**
+     * Width and height of a sprite: enough for the heart at any rotation
+     * around its pivot, which sits in the middle.
+     */
+    static int sideOf(int sizeBucket) {
+        return (int) Math.ceil(sizeOf(sizeBucket) * 1.25) + 2;
+    }
+    
+    BufferedImage get(int sizeBucket, int colour, int rotationBucket) {
+        int key = (sizeBucket * COLOURS + colour) * ROTATION_BUCKETS + rotationBucket;
+        BufferedImage sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = render(sizeBucket, colour, rotationBucket);
+            sprites.put(key, sprite);
+        }
+        return sprite;
+    }
+    
+    int getCount() {
+        return sprites.size();
+    }
+    
+    private BufferedImage render(int sizeBucket, int colour, int rotationBucket) {
+        int side = sideOf(sizeBucket);
+        BufferedImage sprite = DisplayImageCache.createCompatibleImage(side, side, Transparency.TRANSLUCENT);
+        Graphics2D g = sprite.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(palette[colour]);
+        
+        float x = side / 2f;
+        float y = side / 2f;
+        g.rotate(Math.toRadians(rotationBucket * 360.0 / ROTATION_BUCKETS), x, y);
+        
+        // Same outline as the hearts used to draw, pivoting on (x, y)
+        Path2D.Float heart = new Path2D.Float();
+        float halfSize = sizeOf(sizeBucket) / 2f;
+        heart.moveTo(x, y + halfSize * 0.3f);
+        heart.curveTo(
+            x - halfSize, y - halfSize * 0.5f,
+            x - halfSize, y + halfSize * 0.3f,
+            x, y + halfSize
+        );
+        heart.curveTo(
+            x + halfSize, y + halfSize * 0.3f,
+            x + halfSize, y - halfSize * 0.5f,
+            x, y + halfSize * 0.3f
+        );
+        heart.closePath();
+        g.fill(heart);
+        g.dispose();
+        return sprite;
+    }
+}
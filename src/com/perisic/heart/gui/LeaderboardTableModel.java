@@ -0,0 +1,206 @@
+package com.perisic.heart.gui;
+
+import com.perisic.heart.model.LeaderboardEntry;
+import com.perisic.heart.service.BackgroundExecutor;
+import com.perisic.heart.service.LeaderboardService;
+import com.perisic.heart.service.PlayerAnalytics;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Shows the whole leaderboard without ever loading all of it.
+ *
+ * JTable only asks for the rows it is about to paint, so a page is fetched
+ * in the background the first time one of its rows scrolls into view, and
+ * the rows update when it arrives. Only the MAX_PAGES most recently used
+ * pages are kept, so memory is the same for fifty players or a million.
+ * While scrolling, the page above is usually cached and its last row is
+ * the keyset for the next query; jumps far down fall back to an offset.
+ * A page that fails to load isn't cached: its rows are repainted a moment
+ * later and the next getValueAt asks for it again.
+ *
+ * Everything except the fetches themselves runs on the EDT.
+ */
+class LeaderboardTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    
+    static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 8;
+    private static final int RETRY_DELAY_MS = 1000;
+    private static final String[] COLUMNS = {"Rank", "Player", "Score", "Accuracy", "Games", "Median Time"};
+    private static final Object[] EMPTY_ROW = {null, "No players yet", null, "Be the first!", null, null};
+    
+    private final LeaderboardService service;
+    private final Map<Integer, List<LeaderboardEntry>> pages =
+        new LinkedHashMap<Integer, List<LeaderboardEntry>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<LeaderboardEntry>> eldest) {
+                return size() > MAX_PAGES;
+            }
+        };
+    private final Set<Integer> loading = new HashSet<>();
+    private int rowCount = 0;
+    private boolean countLoaded = false;
+    // Bumped on refresh so answers to older requests are dropped
+    private int generation = 0;
+    
+    private long keysetFetches = 0;
+    private long offsetFetches = 0;
+    
+    LeaderboardTableModel(LeaderboardService service) {
+        this.service = service;
+    }
+    
+    /**
+     * Forget everything and start again from the current player count.
+     */
+    void refresh() {
+        int requested = ++generation;
+        pages.clear();
+        loading.clear();
+        BackgroundExecutor.getInstance().submit(() -> {
+            int total = service.getTotalPlayers();
+            SwingUtilities.invokeLater(() -> {
+                if (requested != generation) return;
+                rowCount = total;
+                countLoaded = true;
+                fireTableDataChanged();
+            });
+        });
+    }
+    
+    /**
+     * Find the player's row in the background and hand it to onFound on the
+     * EDT; -1 if the player isn't on the leaderboard.
+     */
+    void findRow(String username, IntConsumer onFound) {
+        BackgroundExecutor.getInstance().submit(() -> {
+            int position = service.getPlayerPosition(username);
+            SwingUtilities.invokeLater(() -> onFound.accept(position < rowCount ? position : -1));
+        });
+    }
+    
+    @Override
+    public int getRowCount() {
+        return isEmptyState() ? 1 : rowCount;
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int column) {
+        if (column == 0 || column == 2 || column == 4) {
+            return Integer.class;
+        }
+        return String.class;
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (isEmptyState()) return EMPTY_ROW[column];
+        if (column == 0) return row + 1;
+        
+        LeaderboardEntry entry = entryAt(row);
+        if (entry == null) {
+            return column == 1 ? "Loading..." : null;
+        }
+        switch (column) {
+            case 1: return entry.getUsername();
+            case 2: return entry.getScore();
+            case 3: return String.format("%.1f%%", entry.getAccuracy());
+            case 4: return entry.getGamesPlayed();
+            default: return medianTime(entry.getUsername());
+        }
+    }
+    
+    /**
+     * Only players who have answered on this machine have reaction times.
+     */
+    private static String medianTime(String username) {
+        PlayerAnalytics.Summary summary = PlayerAnalytics.getInstance().getSummary(username);
+        return summary.getMedianMillis() > 0 ? String.format("%.2f s", summary.getMedianMillis() / 1000.0) : "-";
+    }
+    
+    private boolean isEmptyState() {
+        return countLoaded && rowCount == 0;
+    }
+    
+    private LeaderboardEntry entryAt(int row) {
+        int page = row / PAGE_SIZE;
+        int index = row % PAGE_SIZE;
+        List<LeaderboardEntry> entries = pages.get(page);
+        if (entries == null) {
+            requestPage(page);
+            return null;
+        }
+        // Near the end of a page: fetch the next one before it is needed
+        if (index >= PAGE_SIZE * 3 / 4 && !pages.containsKey(page + 1)) {
+            requestPage(page + 1);
+        }
+        return index < entries.size() ? entries.get(index) : null;
+    }
+    
+    private void requestPage(int page) {
+        int first = page * PAGE_SIZE;
+        if (first >= rowCount || !loading.add(page)) return;
+        
+        List<LeaderboardEntry> above = pages.get(page - 1);
+        LeaderboardEntry after = above != null && above.size() == PAGE_SIZE ? above.get(PAGE_SIZE - 1) : null;
+        if (after != null) {
+            keysetFetches++;
+        } else {
+            offsetFetches++;
+        }
+        
+        int requested = generation;
+        BackgroundExecutor.getInstance().submit(() -> {
+            List<LeaderboardEntry> entries = service.getPage(first, after, PAGE_SIZE);
+            SwingUtilities.invokeLater(() -> {
+                if (requested != generation) return;
+                loading.remove(page);
+                if (entries == null) {
+                    retryLater(first);
+                    return;
+                }
+                pages.put(page, entries);
+                rowsUpdated(first);
+            });
+        });
+    }
+    
+    private void retryLater(int first) {
+        int requested = generation;
+        Timer retry = new Timer(RETRY_DELAY_MS, e -> {
+            if (requested == generation) rowsUpdated(first);
+        });
+        retry.setRepeats(false);
+        retry.start();
+    }
+    
+    private void rowsUpdated(int first) {
+        int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+        if (last >= first) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+    
+    String getStats() {
+        return String.format("rows=%d cachedPages=%d/%d keysetFetches=%d offsetFetches=%d",
+            rowCount, pages.size(), MAX_PAGES, keysetFetches, offsetFetches);
+    }
+}
@@ -1,18 +1,17 @@
 package com.perisic.heart.gui;
 
-import com.perisic.heart.model.LeaderboardEntry;
 import com.perisic.heart.service.LeaderboardService;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
 import java.awt.*;
-import java.util.List;
 
 public class LeaderboardWindow extends JFrame {
     
     private JTable leaderboardTable;
-    private DefaultTableModel tableModel;
+    private LeaderboardTableModel tableModel;
     private LeaderboardService leaderboardService;
+    private String username;
     
     // Modern colors
     private static final Color DARK_BLUE = new Color(31, 58, 96);
@@ -24,6 +23,14 @@ public class LeaderboardWindow extends JFrame {
     private static final Color DARK_GRAY = new Color(52, 73, 94);
     
     public LeaderboardWindow(JFrame parent) {
+        this(parent, null);
+    }
+    
+    /**
+     * With a username, the window offers to jump to that player's row.
+     */
+    public LeaderboardWindow(JFrame parent, String username) {
+        this.username = username;
         leaderboardService = LeaderboardService.getInstance();
         setupModernWindow(parent);
         loadLeaderboard();
@@ -31,7 +38,7 @@ public class LeaderboardWindow extends JFrame {
     
     private void setupModernWindow(JFrame parent) {
         setTitle("Leaderboard - Top Players");
-        setSize(750, 550);
+        setSize(850, 550);
         setLocationRelativeTo(parent);
         getContentPane().setBackground(LIGHT_GRAY);
         
@@ -83,21 +90,8 @@ public class LeaderboardWindow extends JFrame {
         tablePanel.setBackground(Color.WHITE);
         tablePanel.setBorder(new LineBorder(new Color(200, 200, 200), 1));
         
-        String[] columnNames = {"Rank", "Player", "Score", "Accuracy", "Games"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-            
-            @Override
-            public Class<?> getColumnClass(int column) {
-                if (column == 0 || column == 2 || column == 4) {
-                    return Integer.class;
-                }
-                return String.class;
-            }
-        };
+        // Pages rows in from the database as they scroll into view
+        tableModel = new LeaderboardTableModel(leaderboardService);
         
         leaderboardTable = new JTable(tableModel);
         
@@ -122,7 +116,7 @@ public class LeaderboardWindow extends JFrame {
         // Center align columns
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
         centerRenderer.setHorizontalAlignment(JLabel.CENTER);
-        for (int i = 0; i < 5; i++) {
+        for (int i = 0; i < leaderboardTable.getColumnCount(); i++) {
             leaderboardTable.getColumnModel().getColumn(i).setCellRenderer(
                 i == 0 ? new RankCellRenderer() : centerRenderer
             );
@@ -134,6 +128,7 @@ public class LeaderboardWindow extends JFrame {
         leaderboardTable.getColumnModel().getColumn(2).setPreferredWidth(100); // Score
         leaderboardTable.getColumnModel().getColumn(3).setPreferredWidth(120); // Accuracy
         leaderboardTable.getColumnModel().getColumn(4).setPreferredWidth(100); // Games
+        leaderboardTable.getColumnModel().getColumn(5).setPreferredWidth(110); // Median Time
         
         JScrollPane scrollPane = new JScrollPane(leaderboardTable);
         scrollPane.setBorder(null);
@@ -197,6 +192,11 @@ public class LeaderboardWindow extends JFrame {
         
         closeBtn.addActionListener(e -> dispose());
         
+        if (username != null) {
+            JButton myRankBtn = createModernButton("MY RANK", new Color(52, 152, 219));
+            myRankBtn.addActionListener(e -> jumpToMyRank());
+            buttonPanel.add(myRankBtn);
+        }
         buttonPanel.add(refreshBtn);
         buttonPanel.add(closeBtn);
         
@@ -228,26 +228,17 @@ public class LeaderboardWindow extends JFrame {
     }
     
     private void loadLeaderboard() {
-        tableModel.setRowCount(0);
-        
-        List<LeaderboardEntry> topPlayers = leaderboardService.getTopPlayers(50);
-        
-        if (topPlayers.isEmpty()) {
-            // Show empty state
-            Object[] emptyRow = {"", "No players yet", "", "Be the first!", ""};
-            tableModel.addRow(emptyRow);
-        } else {
-            int rank = 1;
-            for (LeaderboardEntry entry : topPlayers) {
-                Object[] row = {
-                    rank++,
-                    entry.getUsername(),
-                    entry.getScore(),
-                    String.format("%.1f%%", entry.getAccuracy()),
-                    entry.getGamesPlayed()
-                };
-                tableModel.addRow(row);
+        tableModel.refresh();
+    }
+    
+    private void jumpToMyRank() {
+        tableModel.findRow(username, row -> {
+            if (row < 0) {
+                JOptionPane.showMessageDialog(this, "You're not on the leaderboard yet - finish a game first!");
+                return;
             }
-        }
+            leaderboardTable.getSelectionModel().setSelectionInterval(row, row);
+            leaderboardTable.scrollRectToVisible(leaderboardTable.getCellRect(row, 0, true));
+        });
     }
 }
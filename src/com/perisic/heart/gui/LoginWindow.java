@@ -4,7 +4,8 @@ import com.perisic.heart.model.Player;
 import com.perisic.heart.service.*;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -234,9 +235,32 @@ public class LoginWindow extends JFrame {
     // ========================================================================
     
     class AnimatedBackgroundPanel extends JPanel {
+        private static final int TARGET_FRAME_MS = 30;
+        private static final int MAX_FRAME_MS = 100;
+        private static final int INACTIVE_FRAME_MS = 100;
+        private static final int ICONIFIED_FRAME_MS = 500;
+        // Painting may use at most this share of each frame, so typing stays snappy
+        private static final double FRAME_BUDGET = 0.25;
+        
         private List<FloatingHeart> hearts;
         private Timer animationTimer;
         private Random random;
+        private final HeartSprites sprites = new HeartSprites();
+        private BufferedImage background;
+        private long lastFrameNanos;
+        private double paintNanosAverage;
+        // Painting time since the last frame, over all the regions painted
+        private long frameNanos;
+        private final List<Rectangle> dirty = new ArrayList<>();
+        
+        // FPS/CPU overlay, toggled with F3 or -Dheart.login.overlay=true
+        private boolean showOverlay = Boolean.getBoolean("heart.login.overlay");
+        private final Rectangle overlayBounds = new Rectangle(8, 8, 260, 34);
+        private String overlayText = "measuring...";
+        private long overlaySince = System.nanoTime();
+        private long overlayCpuSince = processCpuNanos();
+        private int framesPainted;
+        private long paintNanosTotal;
         
         public AnimatedBackgroundPanel() {
             hearts = new ArrayList<>();
@@ -246,16 +270,20 @@ public class LoginWindow extends JFrame {
             for (int i = 0; i < 15; i++) {
                 hearts.add(new FloatingHeart());
             }
+            
+            getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F3"), "toggleOverlay");
+            getActionMap().put("toggleOverlay", new AbstractAction() {
+                @Override
+                public void actionPerformed(java.awt.event.ActionEvent e) {
+                    showOverlay = !showOverlay;
+                    repaint(overlayBounds);
+                }
+            });
         }
         
         public void startAnimation() {
-            animationTimer = new Timer(30, e -> {
-                // Update all hearts
-                for (FloatingHeart heart : hearts) {
-                    heart.update();
-                }
-                repaint();
-            });
+            lastFrameNanos = System.nanoTime();
+            animationTimer = new Timer(TARGET_FRAME_MS, e -> nextFrame());
             animationTimer.start();
         }
         
@@ -265,24 +293,122 @@ public class LoginWindow extends JFrame {
             }
         }
         
+        /**
+         * Move the hearts by the time that actually passed and repaint only
+         * where they were and where they are now. Each heart is painted on
+         * its own: repaint() would merge them into one rectangle covering
+         * most of the panel.
+         */
+        private void nextFrame() {
+            long now = System.nanoTime();
+            // Speeds are per 30 ms frame; cap the step so a long pause doesn't teleport hearts
+            float frames = Math.min(5f, (now - lastFrameNanos) / (TARGET_FRAME_MS * 1_000_000f));
+            lastFrameNanos = now;
+            
+            Window window = SwingUtilities.getWindowAncestor(this);
+            if (window instanceof Frame && (((Frame) window).getExtendedState() & Frame.ICONIFIED) != 0) {
+                animationTimer.setDelay(ICONIFIED_FRAME_MS);
+                return;
+            }
+            
+            for (FloatingHeart heart : hearts) {
+                dirty.add(new Rectangle(heart.getBounds()));
+                heart.update(frames);
+                dirty.get(dirty.size() - 1).add(heart.getBounds());
+            }
+            if (showOverlay && now - overlaySince >= 1_000_000_000L) {
+                updateOverlay(now);
+                dirty.add(overlayBounds);
+            }
+            
+            frameNanos = 0;
+            for (Rectangle region : dirty) {
+                paintImmediately(region);
+            }
+            dirty.clear();
+            paintNanosAverage = paintNanosAverage == 0 ? frameNanos : paintNanosAverage * 0.8 + frameNanos * 0.2;
+            framesPainted++;
+            paintNanosTotal += frameNanos;
+            
+            animationTimer.setDelay(chooseFrameDelay(window));
+        }
+        
+        /**
+         * Full speed while painting stays within budget; slow down when the
+         * machine can't keep up, or when nobody is looking at the window.
+         */
+        private int chooseFrameDelay(Window window) {
+            if (window != null && !window.isActive()) {
+                return INACTIVE_FRAME_MS;
+            }
+            double affordableMs = paintNanosAverage / FRAME_BUDGET / 1_000_000.0;
+            return (int) Math.max(TARGET_FRAME_MS, Math.min(MAX_FRAME_MS, Math.ceil(affordableMs)));
+        }
+        
+        @Override
+        public void paint(Graphics g) {
+            // Time the whole frame, including the login form on top
+            long start = System.nanoTime();
+            super.paint(g);
+            frameNanos += System.nanoTime() - start;
+        }
+        
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            // The cached gradient covers everything, so no need to clear first
+            if (background == null || background.getWidth() != getWidth() || background.getHeight() != getHeight()) {
+                background = createBackground(Math.max(1, getWidth()), Math.max(1, getHeight()));
+            }
+            g.drawImage(background, 0, 0, null);
             
-            // Gradient background
+            // Draw the floating hearts that touch the area being repainted
+            Rectangle clip = g.getClipBounds();
+            for (FloatingHeart heart : hearts) {
+                if (clip == null || clip.intersects(heart.getBounds())) {
+                    heart.draw(g);
+                }
+            }
+            
+            if (showOverlay) {
+                paintOverlay(g);
+            }
+        }
+        
+        private BufferedImage createBackground(int width, int height) {
+            BufferedImage image = DisplayImageCache.createCompatibleImage(width, height, Transparency.OPAQUE);
+            Graphics2D g2d = image.createGraphics();
             GradientPaint gradient = new GradientPaint(
                 0, 0, new Color(255, 182, 193), // Light pink
-                0, getHeight(), new Color(255, 228, 225) // Lighter pink
+                0, height, new Color(255, 228, 225) // Lighter pink
             );
             g2d.setPaint(gradient);
-            g2d.fillRect(0, 0, getWidth(), getHeight());
-            
-            // Draw all floating hearts
-            for (FloatingHeart heart : hearts) {
-                heart.draw(g2d);
-            }
+            g2d.fillRect(0, 0, width, height);
+            g2d.dispose();
+            return image;
+        }
+        
+        private void updateOverlay(long now) {
+            double seconds = (now - overlaySince) / 1e9;
+            long cpu = processCpuNanos();
+            double cpuPercent = overlayCpuSince < 0 || cpu < 0 ? -1 : (cpu - overlayCpuSince) / 1e7 / seconds;
+            overlayText = String.format("%.0f fps  paint %.2f ms  frame %d ms  cpu %s  sprites %d",
+                framesPainted / seconds,
+                framesPainted == 0 ? 0 : paintNanosTotal / 1e6 / framesPainted,
+                animationTimer.getDelay(),
+                cpuPercent < 0 ? "n/a" : String.format("%.1f%%", cpuPercent),
+                sprites.getCount());
+            overlaySince = now;
+            overlayCpuSince = cpu;
+            framesPainted = 0;
+            paintNanosTotal = 0;
+        }
+        
+        private void paintOverlay(Graphics g) {
+            g.setColor(new Color(0, 0, 0, 150));
+            g.fillRect(overlayBounds.x, overlayBounds.y, overlayBounds.width, overlayBounds.height);
+            g.setColor(Color.WHITE);
+            g.setFont(new Font("Monospaced", Font.PLAIN, 10));
+            g.drawString(overlayText, overlayBounds.x + 6, overlayBounds.y + 21);
         }
         
         // Individual floating heart
@@ -290,10 +416,12 @@ public class LoginWindow extends JFrame {
             private float x, y;
             private float speedY;
             private float speedX;
+            private int sizeBucket;
             private int size;
-            private Color color;
+            private int colour;
             private float rotation;
             private float rotationSpeed;
+            private final Rectangle bounds = new Rectangle();
             
             public FloatingHeart() {
                 reset();
@@ -304,23 +432,20 @@ public class LoginWindow extends JFrame {
                 y = random.nextInt(600) + 600; // Start below screen
                 speedY = -0.5f - random.nextFloat() * 1.5f; // Float upward
                 speedX = -0.5f + random.nextFloat(); // Drift sideways
-                size = 20 + random.nextInt(30);
+                sizeBucket = random.nextInt(HeartSprites.SIZE_BUCKETS);
+                size = HeartSprites.sizeOf(sizeBucket);
                 
                 // Random pink/red colors
-                int r = 200 + random.nextInt(56);
-                int g = 50 + random.nextInt(100);
-                int b = 100 + random.nextInt(100);
-                int alpha = 100 + random.nextInt(100);
-                color = new Color(r, g, b, alpha);
+                colour = random.nextInt(HeartSprites.COLOURS);
                 
                 rotation = random.nextFloat() * 360;
                 rotationSpeed = -1 + random.nextFloat() * 2;
             }
             
-            public void update() {
-                y += speedY;
-                x += speedX;
-                rotation += rotationSpeed;
+            public void update(float frames) {
+                y += speedY * frames;
+                x += speedX * frames;
+                rotation += rotationSpeed * frames;
                 
                 // Reset when it goes off top
                 if (y < -size) {
@@ -332,37 +457,27 @@ public class LoginWindow extends JFrame {
                 if (x > 500 + size) x = -size;
             }
             
-            public void draw(Graphics2D g2d) {
-                g2d.setColor(color);
-                
-                // Save transform
-                java.awt.geom.AffineTransform oldTransform = g2d.getTransform();
-                
-                // Rotate around heart center
-                g2d.rotate(Math.toRadians(rotation), x, y);
-                
-                // Draw heart shape
-                Path2D.Float heart = new Path2D.Float();
-                float halfSize = size / 2f;
-                
-                heart.moveTo(x, y + halfSize * 0.3f);
-                heart.curveTo(
-                    x - halfSize, y - halfSize * 0.5f,
-                    x - halfSize, y + halfSize * 0.3f,
-                    x, y + halfSize
-                );
-                heart.curveTo(
-                    x + halfSize, y + halfSize * 0.3f,
-                    x + halfSize, y - halfSize * 0.5f,
-                    x, y + halfSize * 0.3f
-                );
-                heart.closePath();
-                
-                g2d.fill(heart);
-                
-                // Restore transform
-                g2d.setTransform(oldTransform);
+            /**
+             * Where the sprite lands; valid until the next update.
+             */
+            public Rectangle getBounds() {
+                int side = HeartSprites.sideOf(sizeBucket);
+                bounds.setBounds(Math.round(x) - side / 2, Math.round(y) - side / 2, side, side);
+                return bounds;
+            }
+            
+            public void draw(Graphics g) {
+                Rectangle at = getBounds();
+                g.drawImage(sprites.get(sizeBucket, colour, HeartSprites.rotationBucket(rotation)), at.x, at.y, null);
             }
         }
     }
+    
+    private static long processCpuNanos() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
 }
@@ -0,0 +1,398 @@
+package com.perisic.heart.journal;
+
+import com.perisic.heart.events.GameEvent;
+import com.perisic.heart.events.GameEventDispatcher;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.Counter;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.Game;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static com.perisic.heart.journal.JournalFormat.*;
+
+/**
+ * Append-only binary journal of every answer, for analysis and for
+ * rebuilding player_stats (see JournalReplay).
+ *
+ * Records are fixed-width (JournalFormat) and copied straight into a
+ * memory-mapped, pre-allocated segment file, so an append is a few dozen
+ * nanoseconds and never waits for the disk. A "journal-sync" thread forces
+ * whatever was appended every heart.journal.commitMs (default 10): one
+ * flush covers every answer in that window (group commit). Callers that
+ * need an answer to be on disk can awaitDurable() its sequence number.
+ *
+ * Segments are heart.journal.segmentMb (default 32, a million answers) and
+ * live in heart.journal.dir (default ~/.heartgame_journal) next to the
+ * players.dict sidecar. Only one process can write a journal directory.
+ */
+public class AnswerJournal implements GameEventDispatcher.GameEventListener {
+    private static AnswerJournal instance;
+    private static boolean opened = false;
+    
+    private final Path dir;
+    private final int segmentBytes;
+    private final long commitMillis;
+    private final PlayerDictionary players;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    
+    // Guarded by this
+    private final CRC32C crc = new CRC32C();
+    private final byte[] scratch = new byte[RECORD_SIZE];
+    private final ByteBuffer record = order(ByteBuffer.wrap(scratch));
+    private final Map<String, Session> sessions = new HashMap<>();
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int position;
+    private int forcedPosition;
+    private long nextSequence;
+    private int nextSession;
+    
+    // Guarded by commitMonitor: every record before it is on disk
+    private final Object commitMonitor = new Object();
+    private long committedSequence;
+    
+    private final Thread syncer;
+    private volatile boolean closed = false;
+    
+    private final LatencyHistogram commitLatency = MetricsRegistry.getInstance().histogram("journal.commit");
+    private final Counter appended = MetricsRegistry.getInstance().counter("journal.records");
+    private final Counter dropped = MetricsRegistry.getInstance().counter("journal.dropped");
+    
+    private static final class Session {
+        final long startNanos;
+        final int number;
+        
+        Session(long startNanos, int number) {
+            this.startNanos = startNanos;
+            this.number = number;
+        }
+    }
+    
+    public AnswerJournal(Path dir, int segmentBytes, long commitMillis) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = Math.max(2, segmentBytes / RECORD_SIZE) * RECORD_SIZE;
+        this.commitMillis = Math.max(1, commitMillis);
+        Files.createDirectories(dir);
+        
+        lockChannel = FileChannel.open(dir.resolve("journal.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException(dir + " is being written by another process");
+        }
+        players = PlayerDictionary.open(dir.resolve("players.dict"));
+        recover();
+        
+        syncer = new Thread(this::syncLoop, "journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+    
+    /**
+     * The journal at heart.journal.dir, or null if journaling is off
+     * (heart.journal.enabled=false) or the directory can't be used.
+     */
+    public static synchronized AnswerJournal getInstance() {
+        if (!opened) {
+            opened = true;
+            if (!Boolean.parseBoolean(System.getProperty("heart.journal.enabled", "true"))) return null;
+            Path path = Paths.get(System.getProperty("heart.journal.dir",
+                Paths.get(System.getProperty("user.home"), ".heartgame_journal").toString()));
+            try {
+                instance = new AnswerJournal(path, Integer.getInteger("heart.journal.segmentMb", 32) << 20,
+                                             Long.getLong("heart.journal.commitMs", 10));
+                Log.info("📓 Answer journal at {}: {} answers so far", path, instance.getNextSequence());
+                AnswerJournal journal = instance;
+                try {
+                    Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-shutdown"));
+                } catch (IllegalStateException e) {
+                    // Already shutting down
+                }
+            } catch (IOException e) {
+                Log.warn("⚠️ Answers won't be journaled: {}", e.getMessage());
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Journal the answers GameService publishes.
+     */
+    public static void install() {
+        AnswerJournal journal = getInstance();
+        if (journal != null) {
+            GameEventDispatcher.getInstance().addListener(journal);
+        }
+    }
+    
+    /**
+     * Pick up where the last run stopped: after the last intact record of
+     * the newest segment.
+     */
+    private void recover() throws IOException {
+        int last = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            last = files.mapToInt(f -> segmentIndex(f.getFileName().toString())).filter(i -> i > 0).max().orElse(0);
+        }
+        if (last == 0) {
+            openSegment(1, 0);
+            nextSession = 1;
+            return;
+        }
+        
+        segment = map(dir.resolve(segmentName(last)));
+        segmentIndex = last;
+        ByteBuffer header = order(segment.duplicate());
+        if (header.getInt(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IOException(segmentName(last) + " is not an answer journal segment");
+        }
+        long firstSequence = header.getLong(HEADER_FIRST_SEQUENCE);
+        
+        int lastSession = 0;
+        position = RECORD_SIZE;
+        while (position + RECORD_SIZE <= segment.capacity() && intact(position)) {
+            lastSession = Math.max(lastSession, record.getInt(SESSION));
+            position += RECORD_SIZE;
+        }
+        // A crash can leave later pages on disk without earlier ones, with gaps
+        // between them; clear them all so they can't resurface
+        byte[] empty = new byte[RECORD_SIZE];
+        for (int slot = position; slot + RECORD_SIZE <= segment.capacity(); slot += RECORD_SIZE) {
+            if (segment.get(slot + MARKER) != 0) segment.put(slot, empty);
+        }
+        forcedPosition = position;
+        nextSequence = firstSequence + position / RECORD_SIZE - 1;
+        nextSession = lastSession + 1;
+        if (lastSession == 0 && last > 1) {
+            // Fresh segment: the session count carries on from the previous one
+            nextSession = JournalReader.lastSession(dir.resolve(segmentName(last - 1))) + 1;
+        }
+        committedSequence = nextSequence;
+    }
+    
+    /**
+     * Read the slot into record and check it. Caller holds the lock.
+     */
+    private boolean intact(int offset) {
+        segment.get(offset, scratch);
+        if (scratch[MARKER] != RECORD_MARKER) return false;
+        crc.reset();
+        crc.update(scratch, 0, CRC);
+        return (int) crc.getValue() == record.getInt(CRC);
+    }
+    
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+    }
+    
+    private void openSegment(int index, long firstSequence) throws IOException {
+        Path file = dir.resolve(segmentName(index));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(segmentBytes);
+        }
+        MappedByteBuffer mapped = map(file);
+        ByteBuffer header = order(mapped.duplicate());
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+        header.putLong(HEADER_FIRST_SEQUENCE, firstSequence);
+        header.putLong(HEADER_CREATED, System.currentTimeMillis());
+        mapped.force(0, RECORD_SIZE);
+        
+        segment = mapped;
+        segmentIndex = index;
+        position = RECORD_SIZE;
+        forcedPosition = RECORD_SIZE;
+        nextSequence = firstSequence;
+    }
+    
+    /**
+     * Journal one answer. Returns its sequence number, or -1 if it couldn't
+     * be written.
+     *
+     * @param sessionStartNanos System.nanoTime() when the session started; a new value starts a new session
+     * @param answeredAtNanos   System.nanoTime() of the answer
+     */
+    public long append(String username, Game game, int answer, boolean correct,
+                       long sessionStartNanos, long answeredAtNanos) {
+        if (closed) return -1;
+        long puzzleHash = game != null ? game.getPuzzleHash() : 0;
+        int player;
+        try {
+            player = players.idFor(username);
+        } catch (IOException e) {
+            dropped.increment();
+            Log.error("Error adding " + username + " to the journal's players: " + e.getMessage());
+            return -1;
+        }
+        
+        long sequence;
+        synchronized (this) {
+            if (closed) return -1;
+            Session session = sessions.get(username);
+            if (session == null || session.startNanos != sessionStartNanos) {
+                session = new Session(sessionStartNanos, nextSession++);
+                sessions.put(username, session);
+            }
+            try {
+                if (position + RECORD_SIZE > segment.capacity()) {
+                    roll();
+                }
+            } catch (IOException e) {
+                dropped.increment();
+                Log.error("Error starting a new journal segment: " + e.getMessage());
+                return -1;
+            }
+            
+            record.putInt(PLAYER, player);
+            record.putInt(SESSION, session.number);
+            record.putLong(PUZZLE, puzzleHash);
+            record.putLong(NANOS, answeredAtNanos - sessionStartNanos);
+            record.putShort(ANSWER, (short) answer);
+            record.put(FLAGS, correct ? FLAG_CORRECT : 0);
+            record.put(MARKER, RECORD_MARKER);
+            crc.reset();
+            crc.update(scratch, 0, CRC);
+            record.putInt(CRC, (int) crc.getValue());
+            segment.put(position, scratch);
+            
+            position += RECORD_SIZE;
+            sequence = nextSequence++;
+        }
+        appended.increment();
+        return sequence;
+    }
+    
+    /**
+     * Finish the full segment and start the next. Caller holds the lock.
+     */
+    private void roll() throws IOException {
+        segment.force();
+        long firstSequence = nextSequence;
+        openSegment(segmentIndex + 1, firstSequence);
+    }
+    
+    private void syncLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(commitMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            commit();
+        }
+    }
+    
+    /**
+     * Force everything appended so far and wake whoever is waiting for it.
+     */
+    public void commit() {
+        MappedByteBuffer buffer;
+        int from;
+        int to;
+        long upTo;
+        synchronized (this) {
+            buffer = segment;
+            from = forcedPosition;
+            to = position;
+            upTo = nextSequence;
+        }
+        if (to > from) {
+            long start = System.nanoTime();
+            buffer.force(from, to - from);
+            commitLatency.recordSince(start);
+            synchronized (this) {
+                if (segment == buffer) forcedPosition = Math.max(forcedPosition, to);
+            }
+        }
+        synchronized (commitMonitor) {
+            if (upTo > committedSequence) {
+                committedSequence = upTo;
+                commitMonitor.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Wait until the answer with this sequence number is on disk. Returns
+     * false on timeout.
+     */
+    public boolean awaitDurable(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (commitMonitor) {
+            while (committedSequence <= sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(commitMonitor, remaining);
+            }
+            return true;
+        }
+    }
+    
+    public void close() {
+        if (closed) return;
+        syncer.interrupt();
+        commit();
+        synchronized (this) {
+            closed = true;
+            segment.force();
+        }
+        try {
+            players.close();
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            Log.error("Error closing the answer journal: " + e.getMessage());
+        }
+    }
+    
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+    
+    public Path getDirectory() {
+        return dir;
+    }
+    
+    public String getStats() {
+        return String.format("records=%d dropped=%d players=%d segment=%d commit %s",
+            getNextSequence(), dropped.get(), players.size(), segmentIndex,
+            commitLatency.summary(TimeUnit.MICROSECONDS));
+    }
+    
+    @Override
+    public void onAnswerSubmitted(GameEvent.AnswerSubmitted event) {
+        append(event.player.getUsername(), event.game, event.answer, event.correct,
+               event.sessionStartNanos, event.answeredAtNanos);
+    }
+    
+    @Override
+    public void onGameLoaded(GameEvent.GameLoaded event) {}
+    
+    @Override
+    public void onPlayerLoggedIn(GameEvent.PlayerLoggedIn event) {}
+    
+    @Override
+    public void onScoreUpdated(GameEvent.ScoreUpdated event) {}
+    
+    @Override
+    public void onSessionEnded(GameEvent.SessionEnded event) {}
+}
@@ -0,0 +1,71 @@
+package com.perisic.heart.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the answer journal's segment files.
+ *
+ * A segment is a pre-allocated file of 32-byte slots. Slot 0 is the header,
+ * every other slot one answer:
+ *
+ *    0  int    player id (see PlayerDictionary)
+ *    4  int    session number, counting up across the whole journal
+ *    8  long   puzzle hash (Game.getPuzzleHash)
+ *   16  long   nanoseconds from session start to the answer
+ *   24  short  answer given
+ *   26  byte   flags, FLAG_CORRECT
+ *   27  byte   RECORD_MARKER
+ *   28  int    CRC32C of bytes 0-27
+ *
+ * All little-endian. The unwritten rest of a segment is zeros, so the first
+ * slot without the marker ends it; a marker with a bad CRC is a torn write.
+ */
+final class JournalFormat {
+    static final int RECORD_SIZE = 32;
+    static final int MAGIC = 0x4C4E4A48; // "HJNL"
+    static final int VERSION = 1;
+    static final byte RECORD_MARKER = 0x5A;
+    static final byte FLAG_CORRECT = 1;
+    static final String SEGMENT_PREFIX = "answers-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    
+    static final int PLAYER = 0;
+    static final int SESSION = 4;
+    static final int PUZZLE = 8;
+    static final int NANOS = 16;
+    static final int ANSWER = 24;
+    static final int FLAGS = 26;
+    static final int MARKER = 27;
+    static final int CRC = 28;
+    
+    // Header slot
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_SIZE = 8;
+    static final int HEADER_FIRST_SEQUENCE = 16;
+    static final int HEADER_CREATED = 24;
+    
+    private JournalFormat() {}
+    
+    static ByteBuffer order(ByteBuffer buffer) {
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    static String segmentName(int index) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+    
+    /**
+     * The segment's index from its file name, or -1 if it isn't a segment.
+     */
+    static int segmentIndex(String fileName) {
+        if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) return -1;
+        try {
+            return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(),
+                                                       fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
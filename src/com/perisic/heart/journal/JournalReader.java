@@ -0,0 +1,117 @@
+package com.perisic.heart.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static com.perisic.heart.journal.JournalFormat.*;
+
+/**
+ * Reads an answer journal back, oldest record first.
+ *
+ * Segments are mapped read-only and each record is handed to the visitor as
+ * plain values, so a replay allocates nothing per record and runs at memory
+ * speed. Records that fail their CRC are counted and skipped; a segment
+ * ends at its first empty slot.
+ */
+public class JournalReader {
+    private final Path dir;
+    private long records;
+    private long torn;
+    private int segments;
+    
+    /**
+     * Called once per answer.
+     */
+    public interface RecordVisitor {
+        void visit(int playerId, int session, long puzzleHash, long nanosSinceStart, int answer, boolean correct);
+    }
+    
+    public JournalReader(Path dir) {
+        this.dir = dir;
+    }
+    
+    /**
+     * Visit every record in the journal. Returns how many were visited.
+     */
+    public long replay(RecordVisitor visitor) throws IOException {
+        records = 0;
+        torn = 0;
+        segments = 0;
+        int[] indexes;
+        try (Stream<Path> files = Files.list(dir)) {
+            indexes = files.mapToInt(f -> segmentIndex(f.getFileName().toString()))
+                           .filter(i -> i > 0).sorted().toArray();
+        }
+        for (int index : indexes) {
+            replaySegment(dir.resolve(segmentName(index)), visitor);
+            segments++;
+        }
+        return records;
+    }
+    
+    private void replaySegment(Path file, RecordVisitor visitor) throws IOException {
+        ByteBuffer segment = map(file);
+        if (segment.getInt(HEADER_MAGIC) != MAGIC || segment.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IOException(file.getFileName() + " is not an answer journal segment");
+        }
+        CRC32C crc = new CRC32C();
+        byte[] scratch = new byte[RECORD_SIZE];
+        ByteBuffer record = order(ByteBuffer.wrap(scratch));
+        for (int offset = RECORD_SIZE; offset + RECORD_SIZE <= segment.capacity(); offset += RECORD_SIZE) {
+            segment.get(offset, scratch);
+            if (scratch[MARKER] != RECORD_MARKER) break;
+            crc.reset();
+            crc.update(scratch, 0, CRC);
+            if ((int) crc.getValue() != record.getInt(CRC)) {
+                torn++;
+                continue;
+            }
+            records++;
+            visitor.visit(record.getInt(PLAYER), record.getInt(SESSION), record.getLong(PUZZLE),
+                          record.getLong(NANOS), record.getShort(ANSWER), (scratch[FLAGS] & FLAG_CORRECT) != 0);
+        }
+    }
+    
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return order(mapped);
+        }
+    }
+    
+    /**
+     * The highest session number in one segment, 0 if it has no records.
+     */
+    static int lastSession(Path segment) throws IOException {
+        int[] last = {0};
+        JournalReader reader = new JournalReader(segment.getParent());
+        reader.replaySegment(segment, (player, session, puzzle, nanos, answer, correct) ->
+            last[0] = Math.max(last[0], session));
+        return last[0];
+    }
+    
+    /**
+     * Records visited by the last replay.
+     */
+    public long getRecords() {
+        return records;
+    }
+    
+    /**
+     * Records skipped by the last replay because their CRC didn't match.
+     */
+    public long getTorn() {
+        return torn;
+    }
+    
+    public int getSegments() {
+        return segments;
+    }
+}
@@ -0,0 +1,209 @@
+package com.perisic.heart.journal;
+
+import com.perisic.heart.database.DatabaseConnection;
+import com.perisic.heart.database.LeaderboardTable;
+import com.perisic.heart.database.SchemaMigrator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Command-line tool over the answer journal.
+ *
+ *   stats          per-player totals worked out from the journal (default)
+ *   dump [n]       print the first n records (default 100)
+ *   rebuild-stats  overwrite player_stats with the journal's totals
+ *
+ * rebuild-stats only knows what the journal saw: players who answered
+ * before journaling started, or on another machine, get their journaled
+ * answers only. Players the journal has never seen are left alone.
+ *
+ * Run with: java -Dheart.journal.dir=DIR com.perisic.heart.journal.JournalReplay [stats | dump [n] | rebuild-stats]
+ */
+public class JournalReplay {
+    private static final int BATCH = 1000;
+    
+    private final Path dir;
+    private final PlayerDictionary players;
+    
+    // Per-player totals, indexed by player id
+    private int[] attempts = new int[0];
+    private int[] correct = new int[0];
+    private int[] sessions = new int[0];
+    private int[] lastSession = new int[0];
+    
+    public JournalReplay(Path dir) throws IOException {
+        this.dir = dir;
+        this.players = PlayerDictionary.read(dir.resolve("players.dict"));
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(System.getProperty("heart.journal.dir",
+            Paths.get(System.getProperty("user.home"), ".heartgame_journal").toString()));
+        String mode = args.length > 0 ? args[0] : "stats";
+        JournalReplay replay = new JournalReplay(dir);
+        
+        switch (mode) {
+            case "stats":
+                replay.aggregate();
+                replay.printStats();
+                break;
+            case "dump":
+                replay.dump(args.length > 1 ? Long.parseLong(args[1]) : 100);
+                break;
+            case "rebuild-stats":
+                replay.aggregate();
+                replay.rebuildStats();
+                break;
+            default:
+                System.out.println("Usage: JournalReplay [stats | dump [n] | rebuild-stats]");
+        }
+    }
+    
+    /**
+     * Replay the whole journal into the per-player totals.
+     */
+    public void aggregate() throws IOException {
+        JournalReader reader = new JournalReader(dir);
+        ensureCapacity(players.size() + 1);
+        long start = System.nanoTime();
+        long records = reader.replay((player, session, puzzle, nanos, answer, isCorrect) -> {
+            if (player >= attempts.length) ensureCapacity(player + 1);
+            attempts[player]++;
+            if (isCorrect) correct[player]++;
+            if (session != lastSession[player]) {
+                lastSession[player] = session;
+                sessions[player]++;
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Replayed %,d records from %d segments in %d ms (%,.0f records/s), %d torn%n",
+            records, reader.getSegments(), elapsed / 1_000_000,
+            records * 1e9 / Math.max(1, elapsed), reader.getTorn());
+    }
+    
+    private void ensureCapacity(int size) {
+        int capacity = Math.max(size, attempts.length * 2);
+        attempts = Arrays.copyOf(attempts, capacity);
+        correct = Arrays.copyOf(correct, capacity);
+        sessions = Arrays.copyOf(sessions, capacity);
+        lastSession = Arrays.copyOf(lastSession, capacity);
+    }
+    
+    private void printStats() {
+        long totalAttempts = 0;
+        long totalCorrect = 0;
+        long totalSessions = 0;
+        int active = 0;
+        for (int id = 1; id < attempts.length; id++) {
+            if (attempts[id] == 0) continue;
+            active++;
+            totalAttempts += attempts[id];
+            totalCorrect += correct[id];
+            totalSessions += sessions[id];
+        }
+        System.out.printf("%d players, %,d sessions, %,d answers, %.1f%% correct%n", active, totalSessions,
+            totalAttempts, totalAttempts == 0 ? 0 : totalCorrect * 100.0 / totalAttempts);
+        
+        Integer[] ids = new Integer[attempts.length];
+        for (int id = 0; id < ids.length; id++) ids[id] = id;
+        Arrays.sort(ids, (a, b) -> Integer.compare(correct[b], correct[a]));
+        System.out.printf("%-20s %8s %8s %8s%n", "player", "correct", "answers", "sessions");
+        for (int i = 0; i < Math.min(10, ids.length) && attempts[ids[i]] > 0; i++) {
+            int id = ids[i];
+            System.out.printf("%-20s %8d %8d %8d%n", players.nameOf(id), correct[id], attempts[id], sessions[id]);
+        }
+    }
+    
+    private void dump(long limit) throws IOException {
+        long[] printed = {0};
+        new JournalReader(dir).replay((player, session, puzzle, nanos, answer, isCorrect) -> {
+            if (printed[0]++ < limit) {
+                System.out.printf("%-20s session %-6d puzzle %016x at %8.3f s answered %d %s%n",
+                    players.nameOf(player), session, puzzle, nanos / 1e9, answer, isCorrect ? "correct" : "wrong");
+            }
+        });
+    }
+    
+    /**
+     * Write every journaled player's totals to player_stats, score being
+     * their correct answers as in Player.recordAnswer, and move their
+     * leaderboard rows to match.
+     */
+    private void rebuildStats() throws SQLException {
+        String sql = "UPDATE player_stats ps " +
+                     "JOIN users u ON ps.user_id = u.user_id " +
+                     "SET ps.total_score = ?, " +
+                     "    ps.correct_answers = ?, " +
+                     "    ps.total_attempts = ?, " +
+                     "    ps.games_played = ? " +
+                     "WHERE u.username = ?";
+        
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                System.out.println("No database connection");
+                return;
+            }
+            if (!SchemaMigrator.migrate(conn)) {
+                System.out.println("Could not bring the schema up to date");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int updated = 0;
+            int missing = 0;
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 LeaderboardTable.Maintenance leaderboard = LeaderboardTable.DEFAULT.maintenance(conn)) {
+                
+                int batched = 0;
+                for (int id = 1; id < attempts.length; id++) {
+                    String username = players.nameOf(id);
+                    if (attempts[id] == 0 || username == null) continue;
+                    stmt.setInt(1, correct[id]);
+                    stmt.setInt(2, correct[id]);
+                    stmt.setInt(3, attempts[id]);
+                    stmt.setInt(4, sessions[id]);
+                    stmt.setString(5, username);
+                    stmt.addBatch();
+                    leaderboard.add(username);
+                    
+                    if (++batched == BATCH) {
+                        int[] counts = flush(conn, stmt, leaderboard);
+                        updated += counts[0];
+                        missing += counts[1];
+                        batched = 0;
+                    }
+                }
+                int[] counts = flush(conn, stmt, leaderboard);
+                updated += counts[0];
+                missing += counts[1];
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            System.out.printf("Rebuilt player_stats for %d players in %d ms (%d not in the database)%n",
+                updated, System.currentTimeMillis() - start, missing);
+        }
+    }
+    
+    /**
+     * Run and commit one batch. Returns {rows updated, players not found}.
+     */
+    private static int[] flush(Connection conn, PreparedStatement stmt, LeaderboardTable.Maintenance leaderboard) throws SQLException {
+        int updated = 0;
+        int missing = 0;
+        for (int count : stmt.executeBatch()) {
+            if (count == 0) missing++;
+            else updated++;
+        }
+        leaderboard.execute();
+        conn.commit();
+        return new int[] {updated, missing};
+    }
+}
@@ -0,0 +1,107 @@
+package com.perisic.heart.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The journal's sidecar file of player ids: one "id<TAB>username" line per
+ * player, appended the first time they answer. Ids are dense from 1, so
+ * replay can keep per-player totals in plain arrays.
+ */
+public class PlayerDictionary implements AutoCloseable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final FileChannel out;
+    
+    private PlayerDictionary(FileChannel out) {
+        this.out = out;
+    }
+    
+    /**
+     * Open for appending, creating the file if needed.
+     */
+    public static PlayerDictionary open(Path file) throws IOException {
+        PlayerDictionary dictionary = new PlayerDictionary(
+            FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        dictionary.load(file);
+        return dictionary;
+    }
+    
+    /**
+     * Read only, for replay.
+     */
+    public static PlayerDictionary read(Path file) throws IOException {
+        PlayerDictionary dictionary = new PlayerDictionary(null);
+        if (Files.exists(file)) dictionary.load(file);
+        return dictionary;
+    }
+    
+    /**
+     * Read the saved ids. A last line without its newline was cut short by
+     * a crash, and its id never handed out: it is ignored, and cut off the
+     * file when open for appending so the next line doesn't run into it.
+     */
+    private void load(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+        if (end < bytes.length && out != null) {
+            out.truncate(end);
+            out.force(false);
+        }
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) continue;
+            int id = Integer.parseInt(line.substring(0, tab));
+            String name = line.substring(tab + 1);
+            while (names.size() < id) names.add(null);
+            names.set(id - 1, name);
+            ids.put(name, id);
+        }
+    }
+    
+    /**
+     * The player's id, assigning and saving a new one the first time. The
+     * line is on disk before the id is handed out, so no journal record can
+     * refer to an id the dictionary lost.
+     */
+    public synchronized int idFor(String username) throws IOException {
+        Integer id = ids.get(username);
+        if (id != null) return id;
+        
+        int next = names.size() + 1;
+        ByteBuffer line = ByteBuffer.wrap((next + "\t" + username + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            out.write(line);
+        }
+        out.force(false);
+        names.add(username);
+        ids.put(username, next);
+        return next;
+    }
+    
+    /**
+     * The username, or null for an unknown id.
+     */
+    public synchronized String nameOf(int id) {
+        return id >= 1 && id <= names.size() ? names.get(id - 1) : null;
+    }
+    
+    public synchronized int size() {
+        return names.size();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (out != null) out.close();
+    }
+}
@@ -0,0 +1,204 @@
+package com.perisic.heart.log;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leveled console logging that never blocks the caller.
+ *
+ * A log call only checks the level and offers an entry to a bounded queue;
+ * one daemon thread formats and prints entries in batches. If the queue is
+ * full the message is dropped and counted instead of waited for, so the EDT
+ * and game threads never stall on the console.
+ *
+ * {} in a message is replaced by the next argument on the writer thread,
+ * so a disabled level costs no string building - pass values rather than
+ * concatenating them, and only values that won't change afterwards.
+ *
+ * heart.log.level sets the lowest level printed: DEBUG, INFO (default),
+ * WARN, ERROR or OFF. WARN and ERROR go to stderr.
+ */
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+    
+    private static final Level LEVEL = parseLevel(System.getProperty("heart.log.level", "INFO"));
+    private static final int QUEUE_SIZE = Integer.getInteger("heart.log.queueSize", 4096);
+    private static final int MAX_BATCH = 256;
+    private static final long FLUSH_WAIT_MS = 2000;
+    private static final DateTimeFormatter TIME =
+        DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    
+    private static final class Entry {
+        final long millis = System.currentTimeMillis();
+        final Level level;
+        final String thread;
+        final String message;
+        final Object[] args;
+        final Throwable error;
+        
+        Entry(Level level, String message, Object[] args, Throwable error) {
+            this.level = level;
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+            this.args = args;
+            this.error = error;
+        }
+    }
+    
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static final AtomicLong queued = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile long written = 0;
+    private static long droppedReported = 0;
+    
+    static {
+        Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-shutdown"));
+        } catch (IllegalStateException e) {
+            // First used while already shutting down
+        }
+    }
+    
+    private Log() {}
+    
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+    
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) >= 0 && level != Level.OFF;
+    }
+    
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+    
+    public static void debug(String message) { log(Level.DEBUG, message, null, null); }
+    public static void debug(String message, Object... args) { log(Level.DEBUG, message, args, null); }
+    public static void info(String message) { log(Level.INFO, message, null, null); }
+    public static void info(String message, Object... args) { log(Level.INFO, message, args, null); }
+    public static void warn(String message) { log(Level.WARN, message, null, null); }
+    public static void warn(String message, Object... args) { log(Level.WARN, message, args, null); }
+    public static void error(String message) { log(Level.ERROR, message, null, null); }
+    public static void error(String message, Object... args) { log(Level.ERROR, message, args, null); }
+    
+    /**
+     * Print the message followed by the stack trace.
+     */
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, null, error);
+    }
+    
+    private static void log(Level level, String message, Object[] args, Throwable error) {
+        if (!isEnabled(level)) return;
+        if (queue.offer(new Entry(level, message, args, error))) {
+            queued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Wait (briefly) until everything logged so far has been printed.
+     */
+    public static void flush() {
+        long target = queued.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_WAIT_MS);
+        while (written < target && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    public static long getDropped() {
+        return dropped.get();
+    }
+    
+    private static void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder out = new StringBuilder(4096);
+        StringBuilder err = new StringBuilder(1024);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            
+            for (Entry entry : batch) {
+                StringBuilder target = entry.level.compareTo(Level.WARN) >= 0 ? err : out;
+                format(entry, target);
+            }
+            long droppedNow = dropped.get();
+            if (droppedNow != droppedReported) {
+                err.append("⚠️ ").append(droppedNow - droppedReported).append(" log message(s) dropped\n");
+                droppedReported = droppedNow;
+            }
+            print(System.out, out);
+            print(System.err, err);
+            
+            written += batch.size();
+            batch.clear();
+        }
+    }
+    
+    private static void print(PrintStream stream, StringBuilder text) {
+        if (text.length() == 0) return;
+        stream.print(text);
+        stream.flush();
+        text.setLength(0);
+    }
+    
+    private static void format(Entry entry, StringBuilder out) {
+        TIME.formatTo(Instant.ofEpochMilli(entry.millis), out);
+        out.append(' ').append(entry.level.name());
+        for (int i = entry.level.name().length(); i < 5; i++) {
+            out.append(' ');
+        }
+        out.append(" [").append(entry.thread).append("] ");
+        
+        String message = String.valueOf(entry.message);
+        Object[] args = entry.args;
+        if (args == null || args.length == 0) {
+            out.append(message);
+        } else {
+            int from = 0;
+            int next = 0;
+            int at;
+            while (next < args.length && (at = message.indexOf("{}", from)) >= 0) {
+                out.append(message, from, at).append(args[next++]);
+                from = at + 2;
+            }
+            out.append(message, from, message.length());
+        }
+        out.append('\n');
+        
+        if (entry.error != null) {
+            StringWriter trace = new StringWriter();
+            entry.error.printStackTrace(new PrintWriter(trace));
+            out.append(trace);
+        }
+    }
+}
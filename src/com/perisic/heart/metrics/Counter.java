@@ -0,0 +1,22 @@
+package com.perisic.heart.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up. Increments from many threads don't contend.
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder();
+    
+    public void increment() {
+        value.increment();
+    }
+    
+    public void add(long n) {
+        value.add(n);
+    }
+    
+    public long get() {
+        return value.sum();
+    }
+}
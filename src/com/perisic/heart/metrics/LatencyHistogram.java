@@ -0,0 +1,144 @@
+package com.perisic.heart.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the spirit of
+ * HdrHistogram.
+ *
+ * Each power of two is split into 64 linear sub-buckets, so any recorded
+ * value is reported within about 1.6% of the real one, from nanoseconds up
+ * to days, in a fixed 30 KB of counters. record() is a couple of atomic
+ * increments and never allocates, so it is safe on hot paths.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Record one value in nanoseconds. Negative values count as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+    
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return ((shift + 1) << SUB_BUCKET_BITS) | sub;
+    }
+    
+    /**
+     * Middle of the value range a bucket covers.
+     */
+    private static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long sub = bucket & (SUB_BUCKETS - 1);
+        long lower = (SUB_BUCKETS + sub) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+    
+    /**
+     * Value in nanoseconds below which the given percentage (0-100) of
+     * recorded values fall.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+    
+    public long getCount() { return count.get(); }
+    public long getMax() { return max.get(); }
+    
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+    
+    public double getMillisAtPercentile(double percentile) {
+        return getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+    
+    /**
+     * Add everything recorded in another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long n = other.counts.get(i);
+            if (n != 0) counts.addAndGet(i, n);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+    
+    /**
+     * Move everything recorded so far into a new histogram and start over,
+     * e.g. for per-interval reports. Values recorded concurrently end up in
+     * one of the two.
+     */
+    public LatencyHistogram copyAndReset() {
+        LatencyHistogram copy = new LatencyHistogram();
+        long moved = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long n = counts.getAndSet(i, 0);
+            if (n != 0) {
+                copy.counts.set(i, n);
+                moved += n;
+            }
+        }
+        count.addAndGet(-moved);
+        copy.count.set(moved);
+        copy.sum.set(sum.getAndSet(0));
+        copy.max.set(max.getAndSet(0));
+        return copy;
+    }
+    
+    public void reset() {
+        copyAndReset();
+    }
+    
+    /**
+     * e.g. "n=1200 p50 0.41 ms p99 2.10 ms max 5.02 ms"
+     */
+    public String summary(TimeUnit unit) {
+        String suffix = unit == TimeUnit.MICROSECONDS ? " µs" : unit == TimeUnit.NANOSECONDS ? " ns" : " ms";
+        double divisor = unit == TimeUnit.MICROSECONDS ? 1_000.0 : unit == TimeUnit.NANOSECONDS ? 1.0 : 1_000_000.0;
+        return String.format("n=%d p50 %.2f%s p99 %.2f%s p99.9 %.2f%s max %.2f%s",
+            getCount(),
+            getValueAtPercentile(50) / divisor, suffix,
+            getValueAtPercentile(99) / divisor, suffix,
+            getValueAtPercentile(99.9) / divisor, suffix,
+            getMax() / divisor, suffix);
+    }
+}
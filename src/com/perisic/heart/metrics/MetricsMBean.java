@@ -0,0 +1,78 @@
+package com.perisic.heart.metrics;
+
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only JMX view of a MetricsRegistry. The attribute list follows the
+ * registry, so metrics created later show up on the next refresh.
+ */
+class MetricsMBean implements DynamicMBean {
+    private final MetricsRegistry registry;
+    
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        Object value = registry.snapshot().get(name);
+        if (value == null) {
+            throw new AttributeNotFoundException(name);
+        }
+        return value;
+    }
+    
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Object> values = registry.snapshot();
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Object value = values.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+    
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+    
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+    
+    @Override
+    public Object invoke(String operation, Object[] params, String[] signature) throws ReflectionException {
+        if ("report".equals(operation)) {
+            return registry.report();
+        }
+        throw new ReflectionException(new NoSuchMethodException(operation));
+    }
+    
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Object> values = registry.snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                                                     entry.getKey(), true, false, false);
+        }
+        MBeanOperationInfo report = new MBeanOperationInfo("report", "All metrics as text",
+            null, String.class.getName(), MBeanOperationInfo.INFO);
+        return new MBeanInfo(getClass().getName(), "Heart game metrics", attributes, null,
+                             new MBeanOperationInfo[] {report}, null);
+    }
+}
@@ -0,0 +1,197 @@
+package com.perisic.heart.metrics;
+
+import com.perisic.heart.log.Log;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Every counter, gauge and latency histogram in the process, by name.
+ *
+ * Metrics are created on first use and kept for the life of the process.
+ * Hot paths look theirs up once into a static field, after which recording
+ * is a LongAdder or atomic increment - no locks, no allocation.
+ *
+ * start() publishes everything as attributes of one JMX MBean
+ * (com.perisic.heart:type=Metrics, e.g. in JConsole) and appends a report
+ * to heart.metrics.file (default ~/.heartgame_metrics.txt) every
+ * heart.metrics.intervalSeconds (default 60, 0 = never). Values are
+ * totals since start; the file is rolled over to .old at 1 MB.
+ */
+public class MetricsRegistry {
+    private static MetricsRegistry instance;
+    
+    private static final String OBJECT_NAME = "com.perisic.heart:type=Metrics";
+    private static final long MAX_FILE_BYTES = 1024 * 1024;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Supplier<String>> sections = new ConcurrentSkipListMap<>();
+    private final long startedAtNanos = System.nanoTime();
+    private ScheduledExecutorService exporter;
+    
+    private MetricsRegistry() {}
+    
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+    
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+    
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+    
+    /**
+     * Publish a histogram a class already keeps for its own stats.
+     */
+    public void register(String name, LatencyHistogram histogram) {
+        histograms.put(name, histogram);
+    }
+    
+    /**
+     * A value read when exported, e.g. a queue length. Replaces any earlier
+     * gauge of the same name.
+     */
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+    
+    /**
+     * Free-form text appended to every report under its own heading, for
+     * things that aren't numbers, e.g. the worst call sites of something.
+     */
+    public void section(String name, Supplier<String> text) {
+        sections.put(name, text);
+    }
+    
+    /**
+     * Wrap a task so its run time is recorded in the histogram.
+     */
+    public static Runnable timed(LatencyHistogram histogram, Runnable task) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                histogram.recordSince(start);
+            }
+        };
+    }
+    
+    /**
+     * Register the JMX bean and start the file export. Safe to call twice.
+     */
+    public synchronized void start() {
+        if (exporter != null) return;
+        gauge("log.dropped", Log::getDropped);
+        
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            Log.warn("⚠️ Could not register metrics MBean: {}", e.getMessage());
+        }
+        
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Long.getLong("heart.metrics.intervalSeconds", 60);
+        if (interval > 0) {
+            Path file = Paths.get(System.getProperty("heart.metrics.file",
+                Paths.get(System.getProperty("user.home"), ".heartgame_metrics.txt").toString()));
+            exporter.scheduleAtFixedRate(() -> writeReport(file), interval, interval, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeReport(file), "metrics-shutdown"));
+        }
+    }
+    
+    private void writeReport(Path file) {
+        try {
+            if (Files.exists(file) && Files.size(file) > MAX_FILE_BYTES) {
+                Files.move(file, Paths.get(file + ".old"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.write(file, report().getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException | RuntimeException e) {
+            Log.warn("⚠️ Could not write metrics to {}: {}", file, e.getMessage());
+        }
+    }
+    
+    /**
+     * Everything, one metric per line.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("=== ").append(LocalDateTime.now().format(TIMESTAMP))
+              .append(" (up ").append(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAtNanos))
+              .append(" s) ===\n");
+        counters.forEach((name, counter) ->
+            report.append(String.format("%-32s %d%n", name, counter.get())));
+        gauges.forEach((name, gauge) ->
+            report.append(String.format("%-32s %.2f%n", name, read(gauge))));
+        histograms.forEach((name, histogram) ->
+            report.append(String.format("%-32s %s%n", name, histogram.summary(TimeUnit.MILLISECONDS))));
+        sections.forEach((name, text) -> {
+            report.append("--- ").append(name).append(" ---\n");
+            try {
+                report.append(text.get());
+            } catch (RuntimeException e) {
+                report.append("unavailable: ").append(e).append('\n');
+            }
+        });
+        return report.toString();
+    }
+    
+    /**
+     * Flat name -> value view for JMX: histograms become name.count,
+     * name.p50Ms, name.p99Ms, name.p999Ms, name.maxMs and name.meanMs.
+     */
+    Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        gauges.forEach((name, gauge) -> values.put(name, read(gauge)));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".p50Ms", histogram.getMillisAtPercentile(50));
+            values.put(name + ".p99Ms", histogram.getMillisAtPercentile(99));
+            values.put(name + ".p999Ms", histogram.getMillisAtPercentile(99.9));
+            values.put(name + ".maxMs", histogram.getMax() / 1_000_000.0);
+            values.put(name + ".meanMs", histogram.getMean() / 1_000_000.0);
+        });
+        return values;
+    }
+    
+    private static double read(DoubleSupplier gauge) {
+        try {
+            return gauge.getAsDouble();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package com.perisic.heart.model;
 
 import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
 
 public class Game {
     private BufferedImage image;
     private int solution;
+    // The image as it arrived (PNG etc.), so it can be passed on without re-encoding
+    private ByteBuffer encodedImage;
+    private volatile long puzzleHash = 0;
     
     public Game(BufferedImage image, int solution) {
+        this(image, solution, null);
+    }
+    
+    public Game(BufferedImage image, int solution, ByteBuffer encodedImage) {
         this.image = image;
         this.solution = solution;
+        this.encodedImage = encodedImage != null ? encodedImage.asReadOnlyBuffer() : null;
     }
     
     public BufferedImage getImage() { 
@@ -18,4 +29,46 @@ public class Game {
     public int getSolution() { 
         return solution; 
     }
+    
+    /**
+     * The original encoded image bytes, or null if the game was built from
+     * pixels only. Each call returns an independent view.
+     */
+    public ByteBuffer getEncodedImage() {
+        return encodedImage != null ? encodedImage.duplicate() : null;
+    }
+    
+    /**
+     * A 64-bit fingerprint of the puzzle, the same every time the same image
+     * is served: CRC32C and CRC32 of the encoded bytes, or of the pixels if
+     * there are none, side by side. Both run on hardware CRC instructions, so
+     * the first call costs microseconds; later calls are free.
+     */
+    public long getPuzzleHash() {
+        long hash = puzzleHash;
+        if (hash == 0) {
+            CRC32C high = new CRC32C();
+            CRC32 low = new CRC32();
+            if (encodedImage != null) {
+                high.update(encodedImage.duplicate());
+                low.update(encodedImage.duplicate());
+            } else if (image != null) {
+                int width = image.getWidth();
+                ByteBuffer row = ByteBuffer.allocate(width * 4);
+                int[] pixels = new int[width];
+                for (int y = 0; y < image.getHeight(); y++) {
+                    image.getRGB(0, y, width, 1, pixels, 0, width);
+                    row.clear();
+                    row.asIntBuffer().put(pixels);
+                    high.update(row.array());
+                    low.update(row.array());
+                }
+            }
+            high.update(solution);
+            hash = high.getValue() << 32 | low.getValue();
+            if (hash == 0) hash = 1;
+            puzzleHash = hash;
+        }
+        return hash;
+    }
 }
\ No newline at end of file
@@ -1,20 +1,25 @@
 package com.perisic.heart.model;
 
 import java.time.LocalDateTime;
-import java.time.Duration;
 
 public class GameSession {
     private Player player;
     private Game currentGame;
     private LocalDateTime startTime;
+    private SessionClock clock;
     private boolean sessionActive;
     private int sessionDuration; 
     private int sessionScore; 
     private int sessionAttempts; 
+    // System.nanoTime() when the current puzzle was shown, and how long answers took
+    private long puzzleShownNanos;
+    private long lastReactionNanos;
+    private long totalReactionNanos;
     
     public GameSession(Player player, int durationSeconds) {
         this.player = player;
         this.startTime = LocalDateTime.now();
+        this.clock = new SessionClock(durationSeconds);
         this.sessionActive = true;
         this.sessionDuration = durationSeconds;
         this.sessionScore = 0;
@@ -23,11 +28,22 @@ public class GameSession {
     
     public void setCurrentGame(Game game) {
         this.currentGame = game;
+        this.puzzleShownNanos = System.nanoTime();
     }
     
     public boolean checkAnswer(int answer) {
+        return checkAnswer(answer, System.nanoTime());
+    }
+    
+    /**
+     * Check an answer given at now (System.nanoTime()), timing it from when
+     * the puzzle was shown.
+     */
+    public boolean checkAnswer(int answer, long now) {
         if (currentGame == null) return false;
         boolean correct = (currentGame.getSolution() == answer);
+        lastReactionNanos = Math.max(0, now - puzzleShownNanos);
+        totalReactionNanos += lastReactionNanos;
         sessionAttempts++;
         if (correct) {
             sessionScore++;
@@ -37,16 +53,15 @@ public class GameSession {
     }
     
     public long getElapsedSeconds() {
-        return Duration.between(startTime, LocalDateTime.now()).getSeconds();
+        return clock.getElapsedNanos() / 1_000_000_000L;
     }
     
     public long getRemainingSeconds() {
-        long remaining = sessionDuration - getElapsedSeconds();
-        return remaining > 0 ? remaining : 0;
+        return clock.getRemainingSeconds();
     }
     
     public boolean isSessionActive() {
-        return sessionActive && getRemainingSeconds() > 0;
+        return sessionActive && !clock.isExpired();
     }
     
     public void endSession() {
@@ -58,10 +73,17 @@ public class GameSession {
         return (sessionScore * 100.0) / sessionAttempts;
     }
     
+    public double getAverageReactionMillis() {
+        if (sessionAttempts == 0) return 0;
+        return totalReactionNanos / 1e6 / sessionAttempts;
+    }
+    
     public Player getPlayer() { return player; }
     public Game getCurrentGame() { return currentGame; }
     public LocalDateTime getStartTime() { return startTime; }
+    public SessionClock getClock() { return clock; }
     public int getSessionDuration() { return sessionDuration; }
     public int getSessionScore() { return sessionScore; }
     public int getSessionAttempts() { return sessionAttempts; }
+    public long getLastReactionNanos() { return lastReactionNanos; }
 }
\ No newline at end of file
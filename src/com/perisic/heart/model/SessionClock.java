@@ -0,0 +1,53 @@
+package com.perisic.heart.model;
+
+/**
+ * Monotonic countdown for one session, based on System.nanoTime so it is
+ * cheap to read and unaffected by wall-clock changes.
+ */
+public final class SessionClock {
+    private static final long SECOND = 1_000_000_000L;
+    
+    private final long startNanos;
+    private final long deadlineNanos;
+    
+    public SessionClock(int durationSeconds) {
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = startNanos + durationSeconds * SECOND;
+    }
+    
+    public long getStartNanos() { return startNanos; }
+    public long getDeadlineNanos() { return deadlineNanos; }
+    
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+    
+    public long getRemainingNanos() {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+    
+    /**
+     * Whole seconds left, rounded up: 30 during the first second of a
+     * 30-second session, 1 during the last, 0 once it is over.
+     */
+    public long getRemainingSeconds() {
+        return (getRemainingNanos() + SECOND - 1) / SECOND;
+    }
+    
+    /**
+     * When getRemainingSeconds() will next change - the deadline itself
+     * during the last second.
+     */
+    public long getNextSecondNanos() {
+        long remaining = getRemainingSeconds();
+        return remaining <= 1 ? deadlineNanos : deadlineNanos - (remaining - 1) * SECOND;
+    }
+    
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+    
+    public boolean isExpired(long nowNanos) {
+        return nowNanos - deadlineNanos >= 0;
+    }
+}
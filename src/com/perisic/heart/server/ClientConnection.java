@@ -0,0 +1,305 @@
+package com.perisic.heart.server;
+
+import com.perisic.heart.engine.EngineSession;
+import com.perisic.heart.engine.SessionState;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.model.Game;
+import com.perisic.heart.model.LeaderboardEntry;
+import com.perisic.heart.model.Player;
+import com.perisic.heart.service.AuthService;
+import com.perisic.heart.service.LeaderboardIndex;
+import com.perisic.heart.service.LeaderboardService;
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One connected client. Its thread reads and handles requests one at a time.
+ *
+ * Everything sent to the client, including puzzles pushed from engine
+ * threads, goes through an outbox drained by a single writer task, so a
+ * slow client never holds up the engine and frames never interleave.
+ */
+class ClientConnection implements Runnable {
+    private static final int MAX_OUTBOX_FRAMES = 256;
+    private static final int MAX_LEADERBOARD_PAGE = 100;
+    
+    private final HeartServer server;
+    private final Socket socket;
+    private final Queue<byte[]> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outboxSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private OutputStream out;
+    
+    private Player player;
+    private volatile EngineSession session;
+    // Kept current by rankSubscription instead of being looked up per answer
+    private LeaderboardIndex.Subscription rankSubscription;
+    private volatile int rank = -1;
+    private volatile int total = 0;
+    
+    ClientConnection(HeartServer server, Socket socket) {
+        this.server = server;
+        this.socket = socket;
+    }
+    
+    @Override
+    public void run() {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(server.getIdleTimeoutMillis());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new BufferedOutputStream(socket.getOutputStream());
+            
+            while (!closed.get()) {
+                Protocol.Frame frame = Protocol.readFrame(in);
+                long start = System.nanoTime();
+                try {
+                    handle(frame);
+                } catch (RuntimeException e) {
+                    // e.g. the database is unreachable; keep the connection open
+                    Log.error("❌ Request " + frame.type + " failed: " + e);
+                    sendError("Server error, try again later");
+                }
+                server.recordRequest(start);
+            }
+        } catch (EOFException | SocketException e) {
+            // Client went away
+        } catch (IOException e) {
+            Log.warn("⚠️ Client " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            close();
+        }
+    }
+    
+    private void handle(Protocol.Frame frame) throws IOException {
+        DataInputStream body = frame.body;
+        switch (frame.type) {
+            case Protocol.LOGIN:
+                login(body.readUTF(), body.readUTF());
+                break;
+            case Protocol.REGISTER:
+                boolean created = AuthService.getInstance().registerUser(body.readUTF(), body.readUTF());
+                send(Protocol.REGISTERED, b -> b.writeBoolean(created));
+                break;
+            case Protocol.START_SESSION:
+                startSession();
+                break;
+            case Protocol.NEXT_PUZZLE:
+                EngineSession current = session;
+                if (current != null && current.getState() == SessionState.AWAITING_ANSWER) {
+                    sendPuzzle(current, current.getCurrentGame());
+                }
+                break;
+            case Protocol.ANSWER:
+                answer(body.readInt());
+                break;
+            case Protocol.LEADERBOARD:
+                leaderboard(body.readInt(), body.readInt());
+                break;
+            case Protocol.QUIT:
+                close();
+                break;
+            default:
+                sendError("Unknown message type " + frame.type);
+        }
+    }
+    
+    private void login(String username, String password) throws IOException {
+        Player loggedIn = AuthService.getInstance().login(username, password);
+        if (loggedIn == null) {
+            sendError("Invalid username or password");
+            return;
+        }
+        endSession();
+        player = loggedIn;
+        followRank(loggedIn.getUsername());
+        send(Protocol.LOGGED_IN, b -> {
+            b.writeInt(loggedIn.getScore());
+            b.writeInt(loggedIn.getCorrectAnswers());
+            b.writeInt(loggedIn.getTotalAttempts());
+        });
+    }
+    
+    private void startSession() throws IOException {
+        if (player == null) {
+            sendError("Log in first");
+            return;
+        }
+        endSession();
+        // The first puzzle may be pushed before SESSION_STARTED goes out
+        EngineSession started = server.getEngine().startSession(player, server.getSessionSeconds(), this);
+        session = started;
+        send(Protocol.SESSION_STARTED, b -> {
+            b.writeLong(started.getId());
+            b.writeInt(server.getSessionSeconds());
+        });
+    }
+    
+    private void answer(int answer) throws IOException {
+        EngineSession current = session;
+        if (current == null) {
+            sendError("No session running");
+            return;
+        }
+        Boolean correct = server.getEngine().submitAnswer(current, answer);
+        if (correct == null) {
+            sendError("No puzzle showing");
+            return;
+        }
+        
+        LeaderboardService.getInstance().updatePlayer(player.getUsername(), player.getScore(),
+                                                      player.getAccuracy());
+        // As of the last rank change, which may be up to heart.leaderboard.rankIntervalMs behind
+        int rank = this.rank;
+        int total = this.total;
+        send(Protocol.ANSWER_RESULT, b -> {
+            b.writeBoolean(correct);
+            b.writeInt(current.getSessionScore());
+            b.writeInt(current.getSessionAttempts());
+            b.writeInt(player.getScore());
+            b.writeInt(rank);
+            b.writeInt(total);
+        });
+    }
+    
+    private void leaderboard(int offset, int limit) throws IOException {
+        int from = Math.max(0, offset);
+        int count = Math.max(1, Math.min(limit, MAX_LEADERBOARD_PAGE));
+        List<LeaderboardEntry> page;
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isReady()) {
+            page = index.getRange(from, count);
+        } else {
+            List<LeaderboardEntry> top = LeaderboardService.getInstance().getTopPlayers(from + count);
+            page = top.subList(Math.min(from, top.size()), top.size());
+        }
+        send(Protocol.LEADERBOARD_PAGE, b -> {
+            b.writeInt(page.size());
+            for (LeaderboardEntry entry : page) {
+                b.writeUTF(entry.getUsername());
+                b.writeInt(entry.getScore());
+                b.writeDouble(entry.getAccuracy());
+                b.writeInt(entry.getGamesPlayed());
+            }
+        });
+    }
+    
+    /**
+     * Called from engine threads when a puzzle is ready for this client.
+     */
+    void sendPuzzle(EngineSession from, Game game) {
+        // Not the session field: the first puzzle can arrive before startSession() has set it
+        if (from.getAttachment() != this || from.getState() == SessionState.ENDED || game == null) return;
+        try {
+            ByteBuffer image = server.encodedImage(game);
+            send(Protocol.PUZZLE, b -> {
+                b.writeLong(from.getId());
+                b.writeInt(image.remaining());
+                if (image.hasArray()) {
+                    b.write(image.array(), image.arrayOffset() + image.position(), image.remaining());
+                } else {
+                    byte[] chunk = new byte[Math.min(8192, image.remaining())];
+                    while (image.hasRemaining()) {
+                        int n = Math.min(chunk.length, image.remaining());
+                        image.get(chunk, 0, n);
+                        b.write(chunk, 0, n);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            close();
+        }
+    }
+    
+    /**
+     * Called from engine threads when the session's time is up.
+     */
+    void sessionEnded(EngineSession ended) {
+        try {
+            send(Protocol.SESSION_ENDED, b -> {
+                b.writeLong(ended.getId());
+                b.writeInt(ended.getSessionScore());
+                b.writeDouble(ended.getSessionAccuracy());
+                b.writeInt(ended.getSessionAttempts());
+            });
+        } catch (IOException e) {
+            close();
+        }
+    }
+    
+    private void sendError(String message) throws IOException {
+        send(Protocol.ERROR, b -> b.writeUTF(message));
+    }
+    
+    private void send(byte type, Protocol.Body body) throws IOException {
+        if (closed.get()) return;
+        if (outboxSize.incrementAndGet() > MAX_OUTBOX_FRAMES) {
+            Log.warn("⚠️ Client " + socket.getRemoteSocketAddress() + " is not reading, disconnecting");
+            close();
+            return;
+        }
+        outbox.add(Protocol.frame(type, body));
+        if (draining.compareAndSet(false, true)) {
+            server.getWriters().execute(this::drain);
+        }
+    }
+    
+    private void drain() {
+        try {
+            while (true) {
+                byte[] frame;
+                while ((frame = outbox.poll()) != null) {
+                    outboxSize.decrementAndGet();
+                    out.write(frame);
+                    server.recordFrameSent(frame.length);
+                }
+                out.flush();
+                draining.set(false);
+                // Something may have been queued after the last poll
+                if (outbox.isEmpty() || !draining.compareAndSet(false, true)) return;
+            }
+        } catch (IOException e) {
+            draining.set(false);
+            close();
+        }
+    }
+    
+    private synchronized void followRank(String username) {
+        if (rankSubscription != null) rankSubscription.cancel();
+        rank = -1;
+        rankSubscription = LeaderboardIndex.getInstance().subscribe(username, (name, newRank, newTotal) -> {
+            rank = newRank;
+            total = newTotal;
+        }, Runnable::run);
+    }
+    
+    private void endSession() {
+        EngineSession current = session;
+        session = null;
+        if (current != null) {
+            server.getEngine().endSession(current);
+        }
+    }
+    
+    void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        endSession();
+        synchronized (this) {
+            if (rankSubscription != null) rankSubscription.cancel();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        server.connectionClosed(this);
+    }
+}
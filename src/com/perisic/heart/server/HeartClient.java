@@ -0,0 +1,244 @@
+package com.perisic.heart.server;
+
+import com.perisic.heart.model.LeaderboardEntry;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal blocking client for HeartServer.
+ *
+ * Requests are answered in order, so each call writes a frame and waits for
+ * the next response. Pushed PUZZLE and SESSION_ENDED frames are split off by
+ * the reader thread and handed out through nextEvent(). Calls are not meant
+ * to be made from several threads at once.
+ *
+ * Run with: java com.perisic.heart.server.HeartClient host port username password
+ * to play one session with random answers.
+ */
+public class HeartClient implements Closeable {
+    
+    /** Something the server pushed: a new puzzle, or the end of the session. */
+    public static class Event {
+        public final boolean sessionEnded;
+        public final long sessionId;
+        public final byte[] image;      // PUZZLE only
+        public final int score;         // SESSION_ENDED only
+        public final double accuracy;   // SESSION_ENDED only
+        public final int attempts;      // SESSION_ENDED only
+        
+        Event(boolean sessionEnded, long sessionId, byte[] image, int score, double accuracy, int attempts) {
+            this.sessionEnded = sessionEnded;
+            this.sessionId = sessionId;
+            this.image = image;
+            this.score = score;
+            this.accuracy = accuracy;
+            this.attempts = attempts;
+        }
+    }
+    
+    public static class AnswerResult {
+        public final boolean correct;
+        public final int sessionScore;
+        public final int sessionAttempts;
+        public final int totalScore;
+        public final int rank;
+        public final int totalPlayers;
+        
+        AnswerResult(DataInputStream in) throws IOException {
+            correct = in.readBoolean();
+            sessionScore = in.readInt();
+            sessionAttempts = in.readInt();
+            totalScore = in.readInt();
+            rank = in.readInt();
+            totalPlayers = in.readInt();
+        }
+    }
+    
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+    
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final BlockingQueue<Protocol.Frame> responses = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private final Thread reader;
+    private volatile boolean closed = false;
+    
+    public HeartClient(String host, int port) throws IOException {
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), 5000);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        reader = new Thread(() -> readLoop(in), "heart-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    private void readLoop(DataInputStream in) {
+        try {
+            while (!closed) {
+                Protocol.Frame frame = Protocol.readFrame(in);
+                if (frame.type == Protocol.PUZZLE) {
+                    long sessionId = frame.body.readLong();
+                    byte[] image = new byte[frame.body.readInt()];
+                    frame.body.readFully(image);
+                    events.add(new Event(false, sessionId, image, 0, 0, 0));
+                } else if (frame.type == Protocol.SESSION_ENDED) {
+                    events.add(new Event(true, frame.body.readLong(), null,
+                                         frame.body.readInt(), frame.body.readDouble(), frame.body.readInt()));
+                } else {
+                    responses.add(frame);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("⚠️ Connection to server lost: " + e.getMessage());
+            }
+        } finally {
+            closed = true;
+        }
+    }
+    
+    /**
+     * Log in; returns {totalScore, correctAnswers, totalAttempts}, or null if
+     * the server refused.
+     */
+    public int[] login(String username, String password) throws IOException {
+        Protocol.Frame response = request(Protocol.LOGIN, b -> {
+            b.writeUTF(username);
+            b.writeUTF(password);
+        });
+        if (response.type != Protocol.LOGGED_IN) return null;
+        return new int[] { response.body.readInt(), response.body.readInt(), response.body.readInt() };
+    }
+    
+    public boolean register(String username, String password) throws IOException {
+        Protocol.Frame response = request(Protocol.REGISTER, b -> {
+            b.writeUTF(username);
+            b.writeUTF(password);
+        });
+        return response.type == Protocol.REGISTERED && response.body.readBoolean();
+    }
+    
+    /**
+     * Start a session; returns its id, or -1 if the server refused. The first
+     * puzzle arrives through nextEvent().
+     */
+    public long startSession() throws IOException {
+        Protocol.Frame response = request(Protocol.START_SESSION, null);
+        return response.type == Protocol.SESSION_STARTED ? response.body.readLong() : -1;
+    }
+    
+    /**
+     * Ask for the current puzzle again; it arrives through nextEvent().
+     */
+    public void resendPuzzle() throws IOException {
+        send(Protocol.NEXT_PUZZLE, null);
+    }
+    
+    /**
+     * Returns the result, or null if no puzzle was showing.
+     */
+    public AnswerResult answer(int answer) throws IOException {
+        Protocol.Frame response = request(Protocol.ANSWER, b -> b.writeInt(answer));
+        return response.type == Protocol.ANSWER_RESULT ? new AnswerResult(response.body) : null;
+    }
+    
+    public List<LeaderboardEntry> leaderboard(int offset, int limit) throws IOException {
+        Protocol.Frame response = request(Protocol.LEADERBOARD, b -> {
+            b.writeInt(offset);
+            b.writeInt(limit);
+        });
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        if (response.type != Protocol.LEADERBOARD_PAGE) return entries;
+        int count = response.body.readInt();
+        for (int i = 0; i < count; i++) {
+            entries.add(new LeaderboardEntry(response.body.readUTF(), response.body.readInt(),
+                                             response.body.readDouble(), response.body.readInt()));
+        }
+        return entries;
+    }
+    
+    /**
+     * Wait for the next pushed puzzle or session end; null on timeout.
+     */
+    public Event nextEvent(long timeout, TimeUnit unit) throws InterruptedException {
+        return events.poll(timeout, unit);
+    }
+    
+    private Protocol.Frame request(byte type, Protocol.Body body) throws IOException {
+        send(type, body);
+        try {
+            Protocol.Frame response = responses.poll(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (response == null) {
+                throw new IOException(closed ? "Connection closed" : "No response from server");
+            }
+            if (response.type == Protocol.ERROR) {
+                System.out.println("❌ Server: " + response.body.readUTF());
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for server");
+        }
+    }
+    
+    private void send(byte type, Protocol.Body body) throws IOException {
+        if (closed) throw new IOException("Connection closed");
+        out.write(Protocol.frame(type, body));
+        out.flush();
+    }
+    
+    @Override
+    public void close() {
+        if (closed) return;
+        try {
+            send(Protocol.QUIT, null);
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : Protocol.DEFAULT_PORT;
+        String username = args.length > 2 ? args[2] : "bot";
+        String password = args.length > 3 ? args[3] : "bot";
+        
+        try (HeartClient client = new HeartClient(host, port)) {
+            if (client.login(username, password) == null) {
+                client.register(username, password);
+                if (client.login(username, password) == null) return;
+            }
+            System.out.println("✅ Logged in as " + username + ", session " + client.startSession());
+            
+            Event event;
+            while ((event = client.nextEvent(60, TimeUnit.SECONDS)) != null && !event.sessionEnded) {
+                AnswerResult result = client.answer((int) (Math.random() * 10));
+                if (result != null) {
+                    System.out.println((result.correct ? "✅" : "❌") + " session score " + result.sessionScore
+                                       + ", rank " + result.rank + "/" + result.totalPlayers);
+                }
+            }
+            if (event != null) {
+                System.out.printf("🏁 Session over: %d points, %.1f%% accuracy%n", event.score, event.accuracy);
+            }
+            System.out.println("🏆 Top 5: ");
+            for (LeaderboardEntry entry : client.leaderboard(0, 5)) {
+                System.out.println("   " + entry.getUsername() + " " + entry.getScore());
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.perisic.heart.server;
+
+import com.perisic.heart.database.SchemaMigrator;
+import com.perisic.heart.engine.EngineSession;
+import com.perisic.heart.engine.GameEngine;
+import com.perisic.heart.engine.PersistenceResultStore;
+import com.perisic.heart.journal.AnswerJournal;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.Game;
+import com.perisic.heart.service.BackgroundExecutor;
+import com.perisic.heart.service.GameServer;
+import com.perisic.heart.service.GameSource;
+import com.perisic.heart.service.LeaderboardIndex;
+import com.perisic.heart.service.PersistenceQueue;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * Serves the game to many remote players at once over the binary protocol
+ * in Protocol.
+ *
+ * Sessions run in a shared GameEngine, so puzzles come from one prefetch
+ * buffer and results go through the PersistenceQueue. Each connection gets
+ * its own thread (a virtual thread when the JVM has them) that blocks on
+ * reads; writes go out from a second per-task executor.
+ *
+ * Run with: java com.perisic.heart.server.HeartServer [port]
+ *
+ *   -Dheart.server.port=7421          port to listen on
+ *   -Dheart.server.bind=127.0.0.1     address to listen on
+ *   -Dheart.server.maxConnections=10000
+ *   -Dheart.server.idleTimeoutMs=300000  drop clients that send nothing for this long
+ *   -Dheart.server.sessionSeconds=30
+ *
+ * The protocol is not encrypted: LOGIN and REGISTER carry the password in
+ * cleartext. So the server only listens on loopback unless heart.server.bind
+ * says otherwise, and it must sit behind TLS (e.g. a TLS-terminating proxy
+ * or a tunnel) before it is reachable from any other machine.
+ */
+public class HeartServer implements GameEngine.Listener {
+    private final int port;
+    private final String bindAddress;
+    private final int maxConnections;
+    private final int idleTimeoutMillis;
+    private final int sessionSeconds;
+    private final GameSource source;
+    private final GameEngine engine;
+    private final ExecutorService readers;
+    private final ExecutorService writers;
+    private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+    // Fallback for games that were not loaded from encoded bytes
+    private final Map<Game, ByteBuffer> encodedCache = Collections.synchronizedMap(new WeakHashMap<>());
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private volatile boolean running = false;
+    
+    // Metrics
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    
+    public HeartServer(int port) {
+        this(port, new GameServer());
+    }
+    
+    public HeartServer(int port, GameSource source) {
+        this.port = port;
+        this.bindAddress = System.getProperty("heart.server.bind", "127.0.0.1");
+        this.maxConnections = Integer.getInteger("heart.server.maxConnections", 10_000);
+        this.idleTimeoutMillis = Integer.getInteger("heart.server.idleTimeoutMs", 300_000);
+        this.sessionSeconds = Integer.getInteger("heart.server.sessionSeconds", 30);
+        this.source = source;
+        this.engine = new GameEngine(source, new PersistenceResultStore(), this);
+        engine.setJournal(AnswerJournal.getInstance());
+        this.readers = BackgroundExecutor.newThreadPerTaskExecutor("client");
+        this.writers = BackgroundExecutor.newThreadPerTaskExecutor("client-writer");
+        
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.register("server.request", requestLatency);
+        metrics.gauge("server.connections", connections::size);
+        metrics.gauge("server.framesSent", framesSent::get);
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0])
+                                   : Integer.getInteger("heart.server.port", Protocol.DEFAULT_PORT);
+        MetricsRegistry.getInstance().start();
+        HeartServer server = new HeartServer(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "server-shutdown"));
+        server.start();
+        
+        while (true) {
+            try {
+                TimeUnit.SECONDS.sleep(60);
+            } catch (InterruptedException e) {
+                return;
+            }
+            Log.info("📊 Server stats: " + server.getStats());
+        }
+    }
+    
+    public synchronized void start() throws IOException {
+        if (running) return;
+        
+        // Warm up the shared services before the first player arrives
+        SchemaMigrator.migrate();
+        PersistenceQueue.getInstance();
+        LeaderboardIndex.getInstance();
+        
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        InetAddress address = InetAddress.getByName(bindAddress);
+        serverSocket.bind(new InetSocketAddress(address, port), 512);
+        if (!address.isLoopbackAddress()) {
+            Log.warn("⚠️ Listening on " + bindAddress + " without TLS: passwords cross the network in cleartext");
+        }
+        engine.start();
+        running = true;
+        
+        acceptor = new Thread(this::acceptLoop, "server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Log.info("🌐 Heart server listening on " + bindAddress + ":" + getPort()
+                 + " (" + BackgroundExecutor.getInstance().getMode() + ", puzzles from "
+                 + source.getName() + ")");
+    }
+    
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (connections.size() >= maxConnections) {
+                    refused.incrementAndGet();
+                    socket.close();
+                    continue;
+                }
+                accepted.incrementAndGet();
+                ClientConnection connection = new ClientConnection(this, socket);
+                connections.add(connection);
+                readers.execute(connection);
+            } catch (SocketException e) {
+                // Server socket closed by stop()
+            } catch (IOException e) {
+                Log.warn("⚠️ Accept failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (ClientConnection connection : connections) {
+            connection.close();
+        }
+        engine.stop();
+        readers.shutdownNow();
+        writers.shutdown();
+        PersistenceQueue.getInstance().flush();
+        Log.info("🛑 Heart server stopped. " + getStats());
+    }
+    
+    @Override
+    public void onPuzzle(EngineSession session, Game game) {
+        Object attachment = session.getAttachment();
+        if (attachment instanceof ClientConnection) {
+            ((ClientConnection) attachment).sendPuzzle(session, game);
+        }
+    }
+    
+    @Override
+    public void onSessionEnded(EngineSession session) {
+        Object attachment = session.getAttachment();
+        if (attachment instanceof ClientConnection) {
+            ((ClientConnection) attachment).sessionEnded(session);
+        }
+    }
+    
+    /**
+     * The puzzle image as sent on the wire. Games from the corpus or CSV
+     * already carry their encoded bytes; anything else is PNG-encoded once.
+     */
+    ByteBuffer encodedImage(Game game) throws IOException {
+        ByteBuffer encoded = game.getEncodedImage();
+        if (encoded != null) return encoded;
+        
+        ByteBuffer cached = encodedCache.get(game);
+        if (cached != null) return cached.duplicate();
+        
+        ByteArrayOutputStream png = new ByteArrayOutputStream(16 * 1024);
+        ImageIO.write(game.getImage(), "png", png);
+        ByteBuffer buffer = ByteBuffer.wrap(png.toByteArray()).asReadOnlyBuffer();
+        encodedCache.put(game, buffer);
+        return buffer.duplicate();
+    }
+    
+    void connectionClosed(ClientConnection connection) {
+        connections.remove(connection);
+    }
+    
+    void recordRequest(long startNanos) {
+        requestLatency.recordSince(startNanos);
+    }
+    
+    void recordFrameSent(int bytes) {
+        framesSent.incrementAndGet();
+        bytesSent.addAndGet(bytes);
+    }
+    
+    GameEngine getEngine() { return engine; }
+    ExecutorService getWriters() { return writers; }
+    int getIdleTimeoutMillis() { return idleTimeoutMillis; }
+    int getSessionSeconds() { return sessionSeconds; }
+    
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+    
+    public int getConnectionCount() { return connections.size(); }
+    public LatencyHistogram getRequestLatency() { return requestLatency; }
+    
+    public String getStats() {
+        return String.format("connections=%d accepted=%d refused=%d frames=%d sent=%d KB request %s | engine: %s",
+            connections.size(), accepted.get(), refused.get(), framesSent.get(), bytesSent.get() / 1024,
+            requestLatency.summary(TimeUnit.MILLISECONDS), engine.getStats());
+    }
+}
@@ -0,0 +1,91 @@
+package com.perisic.heart.server;
+
+import java.io.*;
+
+/**
+ * Wire format shared by HeartServer and HeartClient.
+ *
+ * Every message is one frame: a 4-byte big-endian length (of everything
+ * after it), a 1-byte message type, then the fields written with
+ * DataOutputStream. Strings are modified UTF-8 (writeUTF), images are
+ * an int length followed by the encoded bytes. Nothing is encrypted, so
+ * passwords are readable by anyone on the path unless a TLS layer wraps
+ * the connection.
+ *
+ * The client sends requests and gets exactly one response to each, in order.
+ * PUZZLE and SESSION_ENDED are pushed by the server whenever they happen and
+ * can arrive between a request and its response.
+ */
+public final class Protocol {
+    public static final int DEFAULT_PORT = 7421;
+    static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+    
+    // Client -> server
+    public static final byte LOGIN = 1;            // username, password
+    public static final byte REGISTER = 2;         // username, password
+    public static final byte START_SESSION = 3;    // (nothing)
+    public static final byte NEXT_PUZZLE = 4;      // (nothing) - resend the puzzle currently showing
+    public static final byte ANSWER = 5;           // int answer
+    public static final byte LEADERBOARD = 6;      // int offset, int limit
+    public static final byte QUIT = 7;             // (nothing)
+    
+    // Server -> client
+    public static final byte LOGGED_IN = 64;       // int totalScore, int correct, int attempts
+    public static final byte ERROR = 65;           // message
+    public static final byte SESSION_STARTED = 66; // long sessionId, int seconds
+    public static final byte PUZZLE = 67;          // push: long sessionId, image
+    public static final byte ANSWER_RESULT = 68;   // boolean correct, int sessionScore, int sessionAttempts,
+                                                   // int totalScore, int rank, int totalPlayers
+    public static final byte SESSION_ENDED = 69;   // push: long sessionId, int score, double accuracy, int attempts
+    public static final byte LEADERBOARD_PAGE = 70; // int count, then count x (username, int score,
+                                                    // double accuracy, int gamesPlayed)
+    public static final byte REGISTERED = 71;      // boolean created
+    
+    private Protocol() {}
+    
+    interface Body {
+        void write(DataOutputStream body) throws IOException;
+    }
+    
+    /**
+     * Encode a whole frame, ready to be written in one go.
+     */
+    static byte[] frame(byte type, Body body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0); // Length, filled in below
+        out.writeByte(type);
+        if (body != null) {
+            body.write(out);
+        }
+        out.flush();
+        byte[] frame = buffer.toByteArray();
+        int length = frame.length - 4;
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return frame;
+    }
+    
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte type = in.readByte();
+        byte[] payload = new byte[length - 1];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+    
+    static final class Frame {
+        final byte type;
+        final DataInputStream body;
+        
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.body = new DataInputStream(new ByteArrayInputStream(payload));
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import javax.sound.sampled.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Software mixer feeding one long-lived SourceDataLine from a render thread.
+ *
+ * Every sound is decoded up front into 16-bit stereo PCM at the output rate,
+ * so play() only drops a sound id into a trigger ring. The render thread picks
+ * it up at the start of the next block and mixes it into a free voice. Nothing
+ * is allocated on play, sounds can overlap, and trigger latency is bounded by
+ * the block size plus the (small) line buffer.
+ */
+public class AudioMixer {
+    private static final float SAMPLE_RATE = 44100f;
+    private static final int CHANNELS = 2;
+    private static final AudioFormat OUTPUT_FORMAT =
+        new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+    
+    private static final int MAX_VOICES = 16;
+    private static final int TRIGGER_RING_SIZE = 64; // power of two
+    private static final int LINE_BUFFER_BLOCKS = 2;
+    private static final float MASTER_GAIN = 0.8f;
+    
+    private final int blockFrames;
+    private final Map<String, Integer> soundIds = new HashMap<>();
+    private short[][] sounds = new short[0][];
+    
+    // Voice pool, only touched by the render thread
+    private final int[] voiceSound = new int[MAX_VOICES];
+    private final int[] voicePosition = new int[MAX_VOICES];
+    private final long[] voiceStarted = new long[MAX_VOICES];
+    private long renderedBlocks = 0;
+    
+    // Multi-producer trigger ring. A slot's sequence is its position while free
+    // for that position, position + 1 once written, and position + ring size
+    // once read, so a writer claims a slot before filling it and the reader only
+    // takes slots whose writer has finished. Sound and time are published by the
+    // sequence write.
+    private final int[] triggers = new int[TRIGGER_RING_SIZE];
+    private final long[] triggerTimes = new long[TRIGGER_RING_SIZE];
+    private final AtomicIntegerArray triggerSequence = new AtomicIntegerArray(TRIGGER_RING_SIZE);
+    private final AtomicInteger triggerWrite = new AtomicInteger();
+    private int triggerRead = 0;
+    
+    // Trigger-to-mix latency, in nanoseconds, excluding the line buffer
+    private volatile long latencyMaxNanos = 0;
+    private volatile long latencyTotalNanos = 0;
+    private volatile long latencyCount = 0;
+    private final AtomicLong droppedTriggers = new AtomicLong();
+    
+    private SourceDataLine line;
+    private Thread renderThread;
+    private volatile boolean running = false;
+    
+    public AudioMixer() {
+        this.blockFrames = Integer.getInteger("heart.audio.blockFrames", 128);
+        for (int i = 0; i < MAX_VOICES; i++) {
+            voiceSound[i] = -1;
+        }
+        for (int i = 0; i < TRIGGER_RING_SIZE; i++) {
+            triggerSequence.set(i, i);
+        }
+    }
+    
+    /**
+     * Decode a WAV file into output-format PCM. Must be called before start().
+     */
+    public boolean load(String name, File file) {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+            short[] pcm = toOutputPcm(in);
+            short[][] grown = new short[sounds.length + 1][];
+            System.arraycopy(sounds, 0, grown, 0, sounds.length);
+            grown[sounds.length] = pcm;
+            soundIds.put(name, sounds.length);
+            sounds = grown;
+            return true;
+        } catch (UnsupportedAudioFileException | IOException e) {
+            Log.warn("   ✗ " + name + ".wav error: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Converts any PCM input to interleaved 16-bit stereo at SAMPLE_RATE.
+     * Throws if Java Sound can't decode it to 16-bit PCM.
+     */
+    private static short[] toOutputPcm(AudioInputStream in) throws IOException, UnsupportedAudioFileException {
+        AudioFormat source = in.getFormat();
+        AudioFormat pcm16 = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+        AudioInputStream decoded;
+        if (source.matches(pcm16)) {
+            decoded = in;
+        } else if (AudioSystem.isConversionSupported(pcm16, source)) {
+            decoded = AudioSystem.getAudioInputStream(pcm16, in);
+        } else {
+            throw new UnsupportedAudioFileException("can't convert " + source + " to 16-bit PCM");
+        }
+        
+        byte[] bytes = decoded.readAllBytes();
+        int channels = pcm16.getChannels();
+        int inFrames = bytes.length / (2 * channels);
+        
+        // Down-mix / up-mix to stereo
+        float[] left = new float[inFrames];
+        float[] right = new float[inFrames];
+        for (int f = 0; f < inFrames; f++) {
+            int base = f * 2 * channels;
+            left[f] = (short) ((bytes[base] & 0xFF) | (bytes[base + 1] << 8));
+            right[f] = channels > 1 ? (short) ((bytes[base + 2] & 0xFF) | (bytes[base + 3] << 8)) : left[f];
+        }
+        
+        // Linear resample to the output rate
+        double step = pcm16.getSampleRate() / SAMPLE_RATE;
+        int outFrames = (int) (inFrames / step);
+        short[] out = new short[outFrames * CHANNELS];
+        for (int f = 0; f < outFrames; f++) {
+            double pos = f * step;
+            int i = (int) pos;
+            float frac = (float) (pos - i);
+            int next = Math.min(i + 1, inFrames - 1);
+            out[f * 2] = (short) (left[i] + (left[next] - left[i]) * frac);
+            out[f * 2 + 1] = (short) (right[i] + (right[next] - right[i]) * frac);
+        }
+        return out;
+    }
+    
+    /**
+     * Open the output line and start the render thread. Returns false if no
+     * audio device is available.
+     */
+    public boolean start() {
+        try {
+            line = AudioSystem.getSourceDataLine(OUTPUT_FORMAT);
+            line.open(OUTPUT_FORMAT, blockFrames * CHANNELS * 2 * LINE_BUFFER_BLOCKS);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            Log.warn("⚠️ No audio output line: " + e.getMessage());
+            return false;
+        }
+        
+        running = true;
+        renderThread = new Thread(this::render, "audio-mixer");
+        renderThread.setDaemon(true);
+        renderThread.setPriority(Thread.MAX_PRIORITY);
+        renderThread.start();
+        return true;
+    }
+    
+    public void stop() {
+        running = false;
+        if (line != null) {
+            line.stop();
+            line.close();
+        }
+    }
+    
+    public boolean hasSound(String name) {
+        return soundIds.containsKey(name);
+    }
+    
+    public int getSoundCount() {
+        return sounds.length;
+    }
+    
+    /**
+     * Trigger a sound. Lock-free and allocation-free; safe from any thread.
+     */
+    public void play(String name) {
+        Integer id = soundIds.get(name);
+        if (id == null || !running) return;
+        
+        int position = triggerWrite.get();
+        while (true) {
+            int slot = position & (TRIGGER_RING_SIZE - 1);
+            int free = triggerSequence.get(slot) - position;
+            if (free == 0) {
+                if (triggerWrite.compareAndSet(position, position + 1)) {
+                    triggers[slot] = id;
+                    triggerTimes[slot] = System.nanoTime();
+                    triggerSequence.set(slot, position + 1);
+                    return;
+                }
+                position = triggerWrite.get();
+            } else if (free < 0) {
+                // The ring is full: the render thread has fallen a whole ring behind
+                droppedTriggers.incrementAndGet();
+                return;
+            } else {
+                position = triggerWrite.get();
+            }
+        }
+    }
+    
+    private void render() {
+        int samples = blockFrames * CHANNELS;
+        int[] mix = new int[samples];
+        byte[] out = new byte[samples * 2];
+        
+        while (running) {
+            takeTriggers();
+            
+            Arrays.fill(mix, 0);
+            for (int v = 0; v < MAX_VOICES; v++) {
+                int sound = voiceSound[v];
+                if (sound < 0) continue;
+                short[] pcm = sounds[sound];
+                int pos = voicePosition[v];
+                int n = Math.min(samples, pcm.length - pos);
+                for (int i = 0; i < n; i++) {
+                    mix[i] += pcm[pos + i];
+                }
+                pos += n;
+                if (pos >= pcm.length) {
+                    voiceSound[v] = -1;
+                } else {
+                    voicePosition[v] = pos;
+                }
+            }
+            
+            for (int i = 0; i < samples; i++) {
+                int sample = (int) (mix[i] * MASTER_GAIN);
+                if (sample > Short.MAX_VALUE) sample = Short.MAX_VALUE;
+                if (sample < Short.MIN_VALUE) sample = Short.MIN_VALUE;
+                out[i * 2] = (byte) sample;
+                out[i * 2 + 1] = (byte) (sample >> 8);
+            }
+            
+            // Blocks once the small line buffer is full, which paces the loop
+            line.write(out, 0, out.length);
+            renderedBlocks++;
+        }
+    }
+    
+    private void takeTriggers() {
+        long now = System.nanoTime();
+        while (true) {
+            int slot = triggerRead & (TRIGGER_RING_SIZE - 1);
+            // Empty, or claimed but still being written: picked up next block
+            if (triggerSequence.get(slot) != triggerRead + 1) return;
+            int sound = triggers[slot];
+            // Written after now was read if it arrived during this loop
+            long latency = Math.max(0, now - triggerTimes[slot]);
+            triggerSequence.set(slot, triggerRead + TRIGGER_RING_SIZE);
+            triggerRead++;
+            
+            latencyTotalNanos += latency;
+            latencyCount++;
+            if (latency > latencyMaxNanos) latencyMaxNanos = latency;
+            
+            startVoice(sound);
+        }
+    }
+    
+    private void startVoice(int sound) {
+        int target = -1;
+        int oldest = 0;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voiceSound[v] < 0) {
+                target = v;
+                break;
+            }
+            if (voiceStarted[v] < voiceStarted[oldest]) oldest = v;
+        }
+        if (target < 0) {
+            target = oldest; // All voices busy - steal the oldest one
+        }
+        voiceSound[target] = sound;
+        voicePosition[target] = 0;
+        voiceStarted[target] = renderedBlocks;
+    }
+    
+    /**
+     * Worst-case delay between play() and the sound reaching the line:
+     * one block of waiting for the trigger plus the line buffer.
+     */
+    public double getLatencyBoundMillis() {
+        // The device may have given us a bigger buffer than we asked for
+        int lineFrames = line != null && line.isOpen()
+            ? line.getBufferSize() / (CHANNELS * 2) : blockFrames * LINE_BUFFER_BLOCKS;
+        return (blockFrames + lineFrames) * 1000.0 / SAMPLE_RATE;
+    }
+    
+    public String getStats() {
+        long count = latencyCount;
+        return String.format("triggers=%d dropped=%d trigger->mix avg %.2f ms max %.2f ms, bound %.1f ms",
+            count, droppedTriggers.get(),
+            count > 0 ? latencyTotalNanos / (double) count / 1_000_000 : 0.0,
+            latencyMaxNanos / 1_000_000.0, getLatencyBoundMillis());
+    }
+}
@@ -0,0 +1,276 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.MetricsRegistry;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One place for all background work in the client: game loading, sound and
+ * database persistence.
+ *
+ * Tasks run on virtual threads when the JVM has them (Java 21+), otherwise
+ * on a bounded pool of daemon platform threads. Work that belongs to a game
+ * session goes through a TaskScope so it can all be cancelled when the
+ * session ends.
+ */
+public class BackgroundExecutor {
+    private static BackgroundExecutor instance;
+    
+    private static final int MAX_PLATFORM_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_QUEUED_TASKS = 1024;
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+    
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final boolean virtualThreads;
+    
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    
+    private BackgroundExecutor() {
+        ExecutorService virtual = createVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : createPlatformExecutor();
+        
+        // Only hands timed work over to the executor, never runs it itself
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonFactory("background-timer"));
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "background-shutdown"));
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("background.active", active::get);
+        metrics.gauge("background.queued", queued::get);
+        metrics.gauge("background.failed", failed::get);
+        Log.info("🧵 Background executor using " + getMode());
+    }
+    
+    public static synchronized BackgroundExecutor getInstance() {
+        if (instance == null) {
+            instance = new BackgroundExecutor();
+        }
+        return instance;
+    }
+    
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * One thread per task, for work that blocks for a long time such as
+     * serving a network connection: virtual threads when the JVM has them,
+     * otherwise an unbounded pool of daemon threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        ExecutorService virtual = createVirtualThreadExecutor();
+        return virtual != null ? virtual : Executors.newCachedThreadPool(daemonFactory(name));
+    }
+    
+    private static ExecutorService createPlatformExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            MAX_PLATFORM_THREADS, MAX_PLATFORM_THREADS,
+            30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_TASKS),
+            daemonFactory("background")
+        );
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+    
+    private static ThreadFactory daemonFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+    
+    public Future<?> submit(Runnable task) {
+        return submit(Executors.callable(task));
+    }
+    
+    public <T> Future<T> submit(Callable<T> task) {
+        queued.incrementAndGet();
+        try {
+            return executor.submit(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    T result = task.call();
+                    completed.incrementAndGet();
+                    return result;
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    if (!(e instanceof InterruptedException)) {
+                        Log.error("❌ Background task failed: " + e.getMessage());
+                    }
+                    throw e;
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            Log.warn("⚠️ Background task rejected: " + e.getMessage());
+            CompletableFuture<T> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(e);
+            return failedFuture;
+        }
+    }
+    
+    public void execute(Runnable task) {
+        submit(task);
+    }
+    
+    /**
+     * Run a task after a delay without holding a thread while waiting.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return scheduler.schedule(() -> { submit(task); }, delay, unit);
+    }
+    
+    public TaskScope newScope(String name) {
+        return new TaskScope(name);
+    }
+    
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                Log.warn("⚠️ Background tasks still running at shutdown: " + active.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public String getMode() {
+        return virtualThreads ? "virtual threads" : "platform pool (" + MAX_PLATFORM_THREADS + " threads)";
+    }
+    
+    public boolean isUsingVirtualThreads() { return virtualThreads; }
+    public int getActiveCount() { return active.get(); }
+    public int getQueuedCount() { return queued.get(); }
+    public long getCompletedCount() { return completed.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+    
+    public String getStats() {
+        return String.format("mode=%s active=%d queued=%d completed=%d failed=%d rejected=%d",
+            getMode(), getActiveCount(), getQueuedCount(), getCompletedCount(),
+            getFailedCount(), getRejectedCount());
+    }
+    
+    /**
+     * A group of tasks that are cancelled together, e.g. everything started
+     * for one game session. Closing the scope interrupts whatever is still running.
+     */
+    public class TaskScope implements AutoCloseable {
+        private final String name;
+        private final Set<Future<?>> tasks = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed = false;
+        
+        private TaskScope(String name) {
+            this.name = name;
+        }
+        
+        public Future<?> submit(Runnable task) {
+            return submit(task, null);
+        }
+        
+        /**
+         * Like submit(task), plus always runs once the task is over: after it
+         * returns or throws, or when it is cancelled, even before it started.
+         * Use it for cleanup the task's own finally would miss in that case.
+         */
+        public Future<?> submit(Runnable task, Runnable always) {
+            FutureTask<Object> future = newTask(task, always);
+            if (closed) {
+                future.cancel(false);
+                return future;
+            }
+            start(future);
+            return future;
+        }
+        
+        public Future<?> schedule(Runnable task, long delay, TimeUnit unit) {
+            FutureTask<Object> future = newTask(task, null);
+            scheduler.schedule(() -> {
+                if (!future.isDone()) {
+                    start(future);
+                }
+            }, delay, unit);
+            return future;
+        }
+        
+        private FutureTask<Object> newTask(Runnable task, Runnable always) {
+            FutureTask<Object> future = new FutureTask<Object>(task, null) {
+                @Override
+                protected void done() {
+                    tasks.remove(this);
+                    if (always != null) always.run();
+                }
+            };
+            tasks.add(future);
+            return future;
+        }
+        
+        /**
+         * Run the task on the pool. A FutureTask keeps what its task threw to
+         * itself, so rethrow it here to have it logged and counted as failed.
+         */
+        private void start(FutureTask<Object> future) {
+            BackgroundExecutor.this.submit(() -> {
+                future.run();
+                if (!future.isCancelled()) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                        throw e;
+                    }
+                }
+                return null;
+            });
+        }
+        
+        public int getRunningCount() {
+            return tasks.size();
+        }
+        
+        public boolean isClosed() {
+            return closed;
+        }
+        
+        /**
+         * Cancel every task of this scope that hasn't finished yet.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            int cancelled = 0;
+            for (Future<?> task : tasks) {
+                if (task.cancel(true)) {
+                    cancelled++;
+                }
+            }
+            tasks.clear();
+            if (cancelled > 0) {
+                Log.debug("🧹 Cancelled " + cancelled + " background task(s) for " + name);
+            }
+        }
+    }
+}
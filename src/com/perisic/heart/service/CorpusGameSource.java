@@ -0,0 +1,31 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.model.Game;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Serves random puzzles from the local PuzzleCorpus - no network at all.
+ */
+public class CorpusGameSource implements GameSource {
+    private final PuzzleCorpus corpus;
+    
+    public CorpusGameSource(PuzzleCorpus corpus) {
+        this.corpus = corpus;
+    }
+    
+    @Override
+    public Game nextGame() {
+        return corpus != null ? corpus.randomGame() : null;
+    }
+    
+    @Override
+    public CompletableFuture<Game> nextGameAsync() {
+        // Decoding from the mapped file is cheap enough to do on the caller
+        return CompletableFuture.completedFuture(nextGame());
+    }
+    
+    @Override
+    public String getName() {
+        return "corpus";
+    }
+}
@@ -0,0 +1,184 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.Counter;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.LeaderboardEntry;
+import com.perisic.heart.model.Player;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MySQL first, the local store when MySQL can't be reached.
+ *
+ * Whatever MySQL answers is mirrored locally. After a failure MySQL is left
+ * alone for heart.store.retryMs (default 5000) so every call doesn't wait
+ * for a connection timeout. Writes always go through the PersistenceQueue,
+ * which keeps them in the local store and replays them into MySQL once it
+ * is back, registrations made while offline included.
+ */
+public class FallbackPlayerRepository implements PlayerRepository {
+    private static FallbackPlayerRepository instance;
+    
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("heart.store.retryMs", 5_000));
+    // Leaderboard rows kept for offline use; players who logged in here are always kept
+    private static final int MIRROR_LIMIT = Integer.getInteger("heart.store.mirrorRows", 10_000);
+    
+    private final PlayerRepository remote;
+    private final LocalPlayerRepository local;
+    private volatile boolean remoteDown = false;
+    private volatile long retryAt = 0;
+    private final Counter localReads = MetricsRegistry.getInstance().counter("store.localReads");
+    
+    public FallbackPlayerRepository(PlayerRepository remote, LocalPlayerRepository local) {
+        this.remote = remote;
+        this.local = local;
+    }
+    
+    public static synchronized FallbackPlayerRepository getInstance() {
+        if (instance == null) {
+            instance = new FallbackPlayerRepository(MySqlPlayerRepository.getInstance(),
+                                                    LocalPlayerRepository.getInstance());
+        }
+        return instance;
+    }
+    
+    public boolean isRemoteDown() {
+        return remoteDown;
+    }
+    
+    private boolean tryRemote() {
+        return !remoteDown || System.nanoTime() - retryAt >= 0;
+    }
+    
+    private void remoteFailed(UnavailableException e) {
+        if (!remoteDown) {
+            Log.warn("⚠️ MySQL unavailable, using the local store: {}", e.getMessage());
+        }
+        retryAt = System.nanoTime() + RETRY_NANOS;
+        remoteDown = true;
+    }
+    
+    private void remoteAnswered() {
+        if (remoteDown) {
+            remoteDown = false;
+            Log.info("✅ MySQL is back");
+        }
+    }
+    
+    @Override
+    public boolean createUser(String username, String passwordHash) {
+        if (tryRemote()) {
+            try {
+                boolean created = remote.createUser(username, passwordHash);
+                remoteAnswered();
+                if (created) mirror(() -> local.mirrorUser(username, passwordHash, new Player(username)));
+                return created;
+            } catch (UnavailableException e) {
+                remoteFailed(e);
+            }
+        }
+        // The name may still be taken in MySQL; that shows up when the registration is replayed
+        localReads.increment();
+        if (!local.createUser(username, passwordHash)) return false;
+        PersistenceQueue.getInstance().register(username, passwordHash);
+        Log.info("👤 Registered {} locally, will be added to MySQL when it is back", username);
+        return true;
+    }
+    
+    @Override
+    public Player authenticate(String username, String passwordHash) {
+        if (tryRemote()) {
+            try {
+                Player player = remote.authenticate(username, passwordHash);
+                remoteAnswered();
+                if (player != null) {
+                    mirror(() -> local.mirrorUser(username, passwordHash, unlessPending(player)));
+                    return player;
+                }
+                // Registered offline and not replayed yet
+                if (!PersistenceQueue.getInstance().isRegistrationPending(username)) return null;
+            } catch (UnavailableException e) {
+                remoteFailed(e);
+            }
+        }
+        localReads.increment();
+        return local.authenticate(username, passwordHash);
+    }
+    
+    @Override
+    public Player loadPlayer(String username) {
+        if (tryRemote()) {
+            try {
+                Player player = remote.loadPlayer(username);
+                remoteAnswered();
+                if (player != null) {
+                    Player stats = unlessPending(player);
+                    if (stats != null) mirror(() -> local.mirrorUser(username, null, stats));
+                    return player;
+                }
+                if (!PersistenceQueue.getInstance().isRegistrationPending(username)) return null;
+            } catch (UnavailableException e) {
+                remoteFailed(e);
+            }
+        }
+        localReads.increment();
+        return local.loadPlayer(username);
+    }
+    
+    @Override
+    public void saveStats(Player player) {
+        PersistenceQueue.getInstance().savePlayer(player);
+    }
+    
+    @Override
+    public void saveSession(String username, int sessionScore, double sessionAccuracy, int gamesInSession) {
+        PersistenceQueue.getInstance().saveSession(username, sessionScore, sessionAccuracy, gamesInSession);
+    }
+    
+    @Override
+    public List<LeaderboardEntry> loadLeaderboard(int limit) {
+        if (tryRemote()) {
+            try {
+                List<LeaderboardEntry> rows = remote.loadLeaderboard(limit);
+                remoteAnswered();
+                mirror(() -> mirrorLeaderboard(rows));
+                return rows;
+            } catch (UnavailableException e) {
+                remoteFailed(e);
+            }
+        }
+        localReads.increment();
+        return local.loadLeaderboard(limit);
+    }
+    
+    private void mirrorLeaderboard(List<LeaderboardEntry> rows) {
+        PersistenceQueue persistence = PersistenceQueue.getInstance();
+        List<LeaderboardEntry> settled = new ArrayList<>();
+        for (LeaderboardEntry row : rows.subList(0, Math.min(MIRROR_LIMIT, rows.size()))) {
+            // Local rows with queued changes are newer than MySQL
+            if (persistence.getPendingPlayer(row.getUsername()) == null) settled.add(row);
+        }
+        int changed = local.mirrorLeaderboard(settled);
+        if (changed > 0) {
+            Log.debug("🗄️ Mirrored {} changed leaderboard rows", changed);
+        }
+    }
+    
+    /**
+     * The stats to mirror, or null while newer ones are still queued.
+     */
+    private static Player unlessPending(Player player) {
+        return PersistenceQueue.getInstance().getPendingPlayer(player.getUsername()) == null ? player : null;
+    }
+    
+    private void mirror(Runnable task) {
+        if (!local.isAvailable()) return;
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.warn("⚠️ Could not update the local store: {}", e.getMessage());
+        }
+    }
+}
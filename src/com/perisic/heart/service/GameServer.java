@@ -1,47 +1,107 @@
 package com.perisic.heart.service;
 
+import com.perisic.heart.log.Log;
 import com.perisic.heart.model.Game;
-import java.awt.image.BufferedImage;
-import java.io.*;
-import java.net.*;
-import java.util.Base64;
-import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
-public class GameServer {
-    
-    private String readUrl(String urlString) {
-        try {
-            URL url = new URI(urlString).toURL();
-            InputStream inputStream = url.openStream();
-            ByteArrayOutputStream result = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = inputStream.read(buffer)) != -1) {
-                result.write(buffer, 0, length);
+/**
+ * The game's puzzle source: an upstream GameSource with the local corpus as backup.
+ *
+ * The upstream is chosen with the heart.source system property:
+ *   http - the heart API, or heart.source.url if set (default)
+ *   stub - an embedded LocalStubServer on localhost
+ *   generated - puzzles drawn locally by HeartPuzzleGenerator, seeded with
+ *               heart.generator.seed if set
+ *
+ * Corpus mode is chosen with the heart.corpus.mode system property:
+ *   record  - fetch live, store every new puzzle, fall back to the corpus when offline (default)
+ *   offline - serve random puzzles from the corpus only, no network
+ *   off     - fetch live only
+ */
+public class GameServer implements GameSource {
+    private static final String API_URL = "https://marcconrad.com/uob/heart/api.php?out=csv&base64=yes";
+    
+    private final PuzzleCorpus corpus;
+    private final GameSource primary;
+    private final GameSource fallback;
+    private LocalStubServer stub;
+    
+    public GameServer() {
+        String mode = System.getProperty("heart.corpus.mode", "record");
+        this.corpus = mode.equalsIgnoreCase("off") ? null : PuzzleCorpus.getInstance();
+        
+        if (mode.equalsIgnoreCase("offline")) {
+            this.primary = new CorpusGameSource(corpus);
+            this.fallback = null;
+        } else {
+            this.primary = createUpstream(System.getProperty("heart.source", "http"));
+            this.fallback = corpus != null ? new CorpusGameSource(corpus) : null;
+        }
+        Log.info("🌐 Puzzle source: " + getName());
+    }
+    
+    public GameServer(GameSource primary, GameSource fallback) {
+        this.corpus = null;
+        this.primary = primary;
+        this.fallback = fallback;
+    }
+    
+    private GameSource createUpstream(String source) {
+        if (source.equalsIgnoreCase("generated")) {
+            long seed = Long.getLong("heart.generator.seed", ThreadLocalRandom.current().nextLong());
+            return new GeneratedGameSource(HeartPuzzleGenerator.fromSystemProperties(), seed);
+        }
+        if (source.equalsIgnoreCase("stub")) {
+            try {
+                stub = new LocalStubServer(0, corpus);
+                stub.start();
+                // Don't record the stub's own puzzles back into the corpus
+                return new HttpGameSource(stub.getUri(), null);
+            } catch (IOException e) {
+                Log.error("❌ Could not start local stub: " + e.getMessage());
             }
-            return result.toString("UTF-8");
-        } catch (Exception e) {
-            System.out.println("Error reading URL: " + e.getMessage());
-            return null;
         }
+        return new HttpGameSource(URI.create(System.getProperty("heart.source.url", API_URL)), corpus);
     }
     
     public Game getRandomGame() {
-        String apiUrl = "https://marcconrad.com/uob/heart/api.php?out=csv&base64=yes";
-        String data = readUrl(apiUrl);
-        
-        if (data == null) return null;
-        
-        String[] parts = data.split(",");
-        byte[] imageBytes = Base64.getDecoder().decode(parts[0]);
-        int solution = Integer.parseInt(parts[1].trim());
-        
-        try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
-            return new Game(image, solution);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+        return nextGame();
+    }
+    
+    @Override
+    public Game nextGame() {
+        Game game = primary.nextGame();
+        if (game == null && fallback != null) {
+            // Upstream is slow or gone - keep the game going from the local corpus
+            return fallback.nextGame();
         }
+        return game;
+    }
+    
+    @Override
+    public CompletableFuture<Game> nextGameAsync() {
+        return primary.nextGameAsync().thenCompose(game ->
+            game == null && fallback != null ? fallback.nextGameAsync()
+                                             : CompletableFuture.completedFuture(game));
+    }
+    
+    @Override
+    public String getName() {
+        return primary.getName() + (fallback != null ? " (fallback: " + fallback.getName() + ")" : "");
+    }
+    
+    @Override
+    public void close() {
+        primary.close();
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+    
+    public PuzzleCorpus getCorpus() {
+        return corpus;
     }
-}
\ No newline at end of file
+}
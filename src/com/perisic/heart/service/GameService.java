@@ -1,36 +1,48 @@
 package com.perisic.heart.service;
 
+import com.perisic.heart.log.Log;
 import com.perisic.heart.model.*;
 import com.perisic.heart.events.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * GameService with non-blocking game loading
- * Games load in background thread - NO MORE LAGGING!
+ * Games are prefetched in the background - NO MORE LAGGING!
  */
 public class GameService {
-    private GameServer gameServer;
+    private PuzzlePrefetcher prefetcher;
     private GameEventDispatcher dispatcher;
     private GameSession session;
     private LeaderboardService leaderboardService;
-    private boolean isLoadingGame = false;
-    private boolean hasSessionEnded = false;  // ← ADDED: Prevent multiple endSession calls
+    private BackgroundExecutor.TaskScope sessionTasks;
+    private volatile boolean isLoadingGame = false;
+    private volatile boolean hasSessionEnded = false;  // ← ADDED: Prevent multiple endSession calls
     
     public GameService() {
-        this.gameServer = new GameServer();
+        this(PuzzlePrefetcher.getInstance());
+    }
+    
+    public GameService(PuzzlePrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
         this.dispatcher = GameEventDispatcher.getInstance();
         this.leaderboardService = LeaderboardService.getInstance();
     }
     
     // 30 SECONDS GAME MODE!
     public void startSession(Player player) {
+        if (sessionTasks != null) {
+            sessionTasks.close();
+        }
         this.session = new GameSession(player, 30); // 30 seconds!
+        this.sessionTasks = BackgroundExecutor.getInstance().newScope("session of " + player.getUsername());
         this.hasSessionEnded = false;  // ← ADDED: Reset flag for new session
         dispatcher.notifyPlayerLoggedIn(new GameEvent.PlayerLoggedIn(player));
         loadNextGame();
     }
     
     /**
-     * Load game in BACKGROUND THREAD - UI stays responsive!
+     * Take the next game from the prefetch queue - usually already decoded!
+     * Only waits in a background thread when the queue has run dry.
      */
     public void loadNextGame() {
         // Don't load if already loading or session ended
@@ -41,45 +53,47 @@ public class GameService {
             return;
         }
         
+        Game ready = prefetcher.poll();
+        if (ready != null) {
+            deliverGame(ready);
+            return;
+        }
+        
         isLoadingGame = true;
         
-        // Load game in background thread (doesn't block UI!)
-        new Thread(new Runnable() {
+        // Queue was empty - wait for a producer in the background (doesn't block UI!)
+        // Cancelled along with the rest of the session's tasks when it ends; the flag is
+        // cleared even if that happens before the task starts
+        sessionTasks.submit(new Runnable() {
             @Override
             public void run() {
                 try {
-                    System.out.println("📥 Loading game from API...");
+                    Log.debug("📥 Prefetch queue empty, waiting for next game...");
                     
-                    // This slow network call runs in background
-                    Game game = gameServer.getRandomGame();
+                    Game game = null;
+                    while (game == null && session != null && session.isSessionActive()) {
+                        game = prefetcher.take(1, TimeUnit.SECONDS);
+                    }
                     
                     // Check if session is still active
-                    if (session != null && session.isSessionActive()) {
-                        if (game != null) {
-                            System.out.println("✅ Game loaded successfully!");
-                            session.setCurrentGame(game);
-                            dispatcher.notifyGameLoaded(new GameEvent.GameLoaded(game));
-                        } else {
-                            System.out.println("❌ Failed to load game from API");
-                            // Retry after 1 second
-                            Thread.sleep(1000);
-                            isLoadingGame = false;
-                            loadNextGame();
-                        }
+                    if (game != null && session != null && session.isSessionActive()) {
+                        deliverGame(game);
                     } else {
-                        System.out.println("⏰ Session ended while loading game");
+                        Log.debug("⏰ Session ended while loading game");
                     }
                     
                 } catch (InterruptedException e) {
-                    System.out.println("⚠️ Game loading interrupted: " + e.getMessage());
+                    Log.warn("⚠️ Game loading interrupted: " + e.getMessage());
                 } catch (Exception e) {
-                    System.out.println("❌ Error loading game: " + e.getMessage());
-                    e.printStackTrace();
-                } finally {
-                    isLoadingGame = false;
+                    Log.error("❌ Error loading game: " + e.getMessage(), e);
                 }
             }
-        }).start();
+        }, () -> isLoadingGame = false);
+    }
+    
+    private void deliverGame(Game game) {
+        session.setCurrentGame(game);
+        dispatcher.notifyGameLoaded(new GameEvent.GameLoaded(game));
     }
     
     public boolean submitAnswer(int answer) {
@@ -89,17 +103,20 @@ public class GameService {
         }
         
         Player player = session.getPlayer();
-        boolean correct = session.checkAnswer(answer);
+        Game game = session.getCurrentGame();
+        long now = System.nanoTime();
+        boolean correct = session.checkAnswer(answer, now);
         
         dispatcher.notifyAnswerSubmitted(
-            new GameEvent.AnswerSubmitted(answer, correct, player)
+            new GameEvent.AnswerSubmitted(answer, correct, player, game,
+                                          session.getClock().getStartNanos(), now,
+                                          session.getLastReactionNanos())
         );
         
         leaderboardService.updatePlayer(
             player.getUsername(), 
             player.getScore(), 
-            player.getAccuracy(),
-            player.getTotalAttempts()
+            player.getAccuracy()
         );
         
         dispatcher.notifyScoreUpdated(new GameEvent.ScoreUpdated(player));
@@ -110,14 +127,19 @@ public class GameService {
     public void endSession() {
         // Prevent multiple calls to endSession
         if (hasSessionEnded) {
-            System.out.println("⚠️ endSession already called, ignoring duplicate call");
+            Log.warn("⚠️ endSession already called, ignoring duplicate call");
             return;
         }
         
         if (session != null) {
-            System.out.println("🎮 Ending game session...");
+            Log.info("🎮 Ending game session...");
             hasSessionEnded = true;
             session.endSession();
+            sessionTasks.close();
+            Log.info("📦 Prefetch stats: " + prefetcher.getStats());
+            Log.info("🧵 Background stats: " + BackgroundExecutor.getInstance().getStats());
+            Log.info("📨 Event stats: " + dispatcher.getStats());
+            Log.info("🔐 Login stats: " + AuthService.getInstance().getStats());
             dispatcher.notifySessionEnded(new GameEvent.SessionEnded(session.getPlayer()));
         }
     }
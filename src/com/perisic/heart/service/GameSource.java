@@ -0,0 +1,24 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.model.Game;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Somewhere puzzles come from: the live heart API, the local corpus,
+ * or a local stub server for benchmarking.
+ */
+public interface GameSource {
+    
+    /**
+     * Blocking fetch. Returns null if no puzzle could be produced.
+     */
+    Game nextGame();
+    
+    default CompletableFuture<Game> nextGameAsync() {
+        return CompletableFuture.supplyAsync(this::nextGame);
+    }
+    
+    String getName();
+    
+    default void close() {}
+}
@@ -0,0 +1,59 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.model.Game;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves puzzles drawn by a HeartPuzzleGenerator - unlimited supply, no
+ * network.
+ *
+ * Puzzles are rendered a batch at a time across all cores. With a fixed
+ * seed the sequence is the same on every run, which makes benchmarks
+ * repeatable.
+ */
+public class GeneratedGameSource implements GameSource {
+    private static final int BATCH_SIZE = 64;
+    
+    private final HeartPuzzleGenerator generator;
+    private final long seed;
+    private final Queue<Game> ready = new ConcurrentLinkedQueue<>();
+    private long nextIndex = 0;
+    
+    public GeneratedGameSource(HeartPuzzleGenerator generator, long seed) {
+        this.generator = generator;
+        this.seed = seed;
+    }
+    
+    @Override
+    public Game nextGame() {
+        Game game = ready.poll();
+        while (game == null) {
+            refill();
+            game = ready.poll();
+        }
+        return game;
+    }
+    
+    private synchronized void refill() {
+        // Someone else may have refilled while we waited for the lock
+        if (!ready.isEmpty()) return;
+        List<Game> batch = generator.generate(seed, nextIndex, BATCH_SIZE);
+        nextIndex += BATCH_SIZE;
+        ready.addAll(batch);
+    }
+    
+    @Override
+    public CompletableFuture<Game> nextGameAsync() {
+        Game game = ready.poll();
+        return game != null ? CompletableFuture.completedFuture(game)
+                            : CompletableFuture.supplyAsync(this::nextGame);
+    }
+    
+    @Override
+    public String getName() {
+        return "generated (seed " + seed + ")";
+    }
+}
@@ -0,0 +1,274 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.model.Game;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws heart puzzles locally with Java2D, so the game can run with no
+ * network at all.
+ *
+ * Every heart is placed so it lies fully inside the image and overlaps its
+ * neighbours by at most maxOverlap, which keeps the count unambiguous - the
+ * solution is exactly the number drawn. Each puzzle is rendered from its own
+ * seed, so a batch from generate(seed, first, count) is the same whatever the
+ * number of cores, and batches are split across the fork/join pool.
+ *
+ * Settings come from system properties (see fromSystemProperties):
+ *   heart.generator.width / height     image size (400 x 200)
+ *   heart.generator.minHearts / maxHearts  count range (0 - 9)
+ *   heart.generator.minSize / maxSize  heart size in pixels (28 - 52)
+ *   heart.generator.maxOverlap         0 = hearts never touch, 0.3 = up to 30% (0.15)
+ *   heart.generator.maxRotation        degrees either way (35)
+ *   heart.generator.colourJitter       0 = all the same red, 1 = any warm colour (0.3)
+ *   heart.generator.noise              share of pixels turned to speckle (0.02)
+ *
+ * Run with: java com.perisic.heart.service.HeartPuzzleGenerator [count] [seed] [--corpus]
+ * to measure serial and parallel throughput, or with --corpus to add the
+ * generated puzzles to the local corpus.
+ */
+public class HeartPuzzleGenerator {
+    private static final int PLACEMENT_ATTEMPTS = 200;
+    private static final int SPLIT_THRESHOLD = 4;
+    private static final Shape HEART = unitHeart();
+    
+    private final int width;
+    private final int height;
+    private final int minHearts;
+    private final int maxHearts;
+    private final int minSize;
+    private final int maxSize;
+    private final double maxOverlap;
+    private final double maxRotation;
+    private final double colourJitter;
+    private final double noise;
+    
+    public HeartPuzzleGenerator(int width, int height, int minHearts, int maxHearts, int minSize, int maxSize,
+                                double maxOverlap, double maxRotationDegrees, double colourJitter, double noise) {
+        if (minHearts < 0 || maxHearts < minHearts) {
+            throw new IllegalArgumentException("Bad heart count range " + minHearts + "-" + maxHearts);
+        }
+        if (minSize < 4 || maxSize < minSize || maxSize > Math.min(width, height)) {
+            throw new IllegalArgumentException("Bad heart size range " + minSize + "-" + maxSize);
+        }
+        this.width = width;
+        this.height = height;
+        this.minHearts = minHearts;
+        this.maxHearts = maxHearts;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxOverlap = Math.max(0, Math.min(0.9, maxOverlap));
+        this.maxRotation = Math.toRadians(Math.max(0, maxRotationDegrees));
+        this.colourJitter = Math.max(0, Math.min(1, colourJitter));
+        this.noise = Math.max(0, Math.min(1, noise));
+    }
+    
+    public static HeartPuzzleGenerator fromSystemProperties() {
+        return new HeartPuzzleGenerator(
+            Integer.getInteger("heart.generator.width", 400),
+            Integer.getInteger("heart.generator.height", 200),
+            Integer.getInteger("heart.generator.minHearts", 0),
+            Integer.getInteger("heart.generator.maxHearts", 9),
+            Integer.getInteger("heart.generator.minSize", 28),
+            Integer.getInteger("heart.generator.maxSize", 52),
+            Double.parseDouble(System.getProperty("heart.generator.maxOverlap", "0.15")),
+            Double.parseDouble(System.getProperty("heart.generator.maxRotation", "35")),
+            Double.parseDouble(System.getProperty("heart.generator.colourJitter", "0.3")),
+            Double.parseDouble(System.getProperty("heart.generator.noise", "0.02")));
+    }
+    
+    /**
+     * Puzzle number index of the sequence started by seed.
+     */
+    public Game generate(long seed, long index) {
+        Random random = new Random(mix(seed + index));
+        int target = minHearts + random.nextInt(maxHearts - minHearts + 1);
+        
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        paintBackground(g, random);
+        
+        // Circles bounding the hearts placed so far: x, y, radius
+        double[] placed = new double[target * 3];
+        int count = 0;
+        for (int i = 0; i < target; i++) {
+            double size = minSize + random.nextDouble() * (maxSize - minSize);
+            double radius = size / 2;
+            double x = 0;
+            double y = 0;
+            boolean fits = false;
+            for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS && !fits; attempt++) {
+                x = radius + random.nextDouble() * (width - size);
+                y = radius + random.nextDouble() * (height - size);
+                fits = true;
+                for (int j = 0; j < count && fits; j++) {
+                    double dx = x - placed[j * 3];
+                    double dy = y - placed[j * 3 + 1];
+                    double minDistance = (radius + placed[j * 3 + 2]) * (1 - maxOverlap);
+                    fits = dx * dx + dy * dy >= minDistance * minDistance;
+                }
+            }
+            // Crowded: fewer hearts than planned, and the solution says so
+            if (!fits) break;
+            
+            AffineTransform transform = new AffineTransform();
+            transform.translate(x, y);
+            transform.rotate((random.nextDouble() * 2 - 1) * maxRotation);
+            transform.scale(size, size);
+            g.setColor(heartColour(random));
+            g.fill(transform.createTransformedShape(HEART));
+            
+            placed[count * 3] = x;
+            placed[count * 3 + 1] = y;
+            placed[count * 3 + 2] = radius;
+            count++;
+        }
+        g.dispose();
+        
+        addNoise(image, random);
+        return new Game(image, count);
+    }
+    
+    /**
+     * Puzzles first to first + count - 1 of the sequence started by seed,
+     * rendered in parallel on the common fork/join pool.
+     */
+    public List<Game> generate(long seed, long first, int count) {
+        Game[] games = new Game[count];
+        ForkJoinPool.commonPool().invoke(new RenderTask(seed, first, games, 0, count));
+        return Arrays.asList(games);
+    }
+    
+    private class RenderTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final long seed;
+        private final long first;
+        private final Game[] games;
+        private final int from;
+        private final int to;
+        
+        RenderTask(long seed, long first, Game[] games, int from, int to) {
+            this.seed = seed;
+            this.first = first;
+            this.games = games;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    games[i] = generate(seed, first + i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RenderTask(seed, first, games, from, middle),
+                      new RenderTask(seed, first, games, middle, to));
+        }
+    }
+    
+    private void paintBackground(Graphics2D g, Random random) {
+        int base = 235 + random.nextInt(21);
+        Color top = new Color(base, base, Math.min(255, base + random.nextInt(8)));
+        Color bottom = new Color(base - 10, base - 10 + random.nextInt(6), base - 10);
+        g.setPaint(new GradientPaint(0, 0, top, 0, height, bottom));
+        g.fillRect(0, 0, width, height);
+    }
+    
+    private Color heartColour(Random random) {
+        // Reds by default; jitter strays towards pinks and oranges
+        float hue = (float) ((random.nextDouble() * 2 - 1) * 0.06 * colourJitter);
+        float saturation = (float) (0.85 - random.nextDouble() * 0.4 * colourJitter);
+        float brightness = (float) (0.85 - random.nextDouble() * 0.3 * colourJitter);
+        return Color.getHSBColor(hue < 0 ? hue + 1 : hue, saturation, brightness);
+    }
+    
+    private void addNoise(BufferedImage image, Random random) {
+        int speckles = (int) (width * height * noise);
+        if (speckles == 0) return;
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < speckles; i++) {
+            int grey = 96 + random.nextInt(128);
+            pixels[random.nextInt(pixels.length)] = (grey << 16) | (grey << 8) | grey;
+        }
+    }
+    
+    /**
+     * A heart one unit across, centred on the origin, point down.
+     */
+    private static Shape unitHeart() {
+        Path2D.Double heart = new Path2D.Double();
+        heart.moveTo(0, 0.45);
+        heart.curveTo(-0.65, 0.0, -0.45, -0.6, 0, -0.22);
+        heart.curveTo(0.45, -0.6, 0.65, 0.0, 0, 0.45);
+        heart.closePath();
+        return heart;
+    }
+    
+    /**
+     * SplitMix64 finaliser, so neighbouring indexes get unrelated seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        boolean toCorpus = args.length > 2 && args[2].equals("--corpus");
+        HeartPuzzleGenerator generator = fromSystemProperties();
+        
+        // Warm up the JIT and Java2D pipelines
+        generator.generate(seed, 0, 200);
+        
+        long start = System.nanoTime();
+        long serialChecksum = 0;
+        for (int i = 0; i < count; i++) {
+            serialChecksum = serialChecksum * 31 + generator.generate(seed, i).getSolution();
+        }
+        double serial = (System.nanoTime() - start) / 1e9;
+        
+        start = System.nanoTime();
+        List<Game> games = generator.generate(seed, 0, count);
+        double parallel = (System.nanoTime() - start) / 1e9;
+        long parallelChecksum = 0;
+        for (Game game : games) {
+            parallelChecksum = parallelChecksum * 31 + game.getSolution();
+        }
+        
+        System.out.printf("serial:   %,.0f puzzles/s%n", count / serial);
+        System.out.printf("parallel: %,.0f puzzles/s on %d cores%n",
+                          count / parallel, ForkJoinPool.commonPool().getParallelism());
+        System.out.println("solutions " + (serialChecksum == parallelChecksum ? "match" : "DIFFER")
+                           + " (checksum " + Long.toHexString(parallelChecksum) + ")");
+        
+        if (toCorpus) {
+            PuzzleCorpus corpus = PuzzleCorpus.getInstance();
+            int added = 0;
+            for (Game game : games) {
+                ByteArrayOutputStream png = new ByteArrayOutputStream(16 * 1024);
+                ImageIO.write(game.getImage(), "png", png);
+                if (corpus.append(png.toByteArray(), game.getSolution())) added++;
+            }
+            corpus.close();
+            System.out.println("💾 Added " + added + " generated puzzles (seed " + seed + ") to " + corpus.getFile());
+        }
+    }
+}
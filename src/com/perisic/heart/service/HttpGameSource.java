@@ -0,0 +1,86 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.model.Game;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fetches puzzles over a shared java.net.http.HttpClient.
+ *
+ * The client keeps connections alive between puzzles and negotiates HTTP/2
+ * where the server supports it. Every request has its own timeout
+ * (heart.source.timeoutMs, default 5000).
+ */
+public class HttpGameSource implements GameSource {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    
+    private final HttpClient client;
+    private final HttpRequest request;
+    private final PuzzleCorpus recordTo;
+    
+    public HttpGameSource(URI endpoint, PuzzleCorpus recordTo) {
+        this(endpoint, recordTo, Duration.ofMillis(Long.getLong("heart.source.timeoutMs", 5000)));
+    }
+    
+    public HttpGameSource(URI endpoint, PuzzleCorpus recordTo, Duration requestTimeout) {
+        this.recordTo = recordTo;
+        // HTTP/2 over TLS; a plain-http endpoint (the local stub) gains nothing from an h2c upgrade
+        HttpClient.Version version = "https".equalsIgnoreCase(endpoint.getScheme())
+            ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+        this.client = HttpClient.newBuilder()
+            .version(version)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.request = HttpRequest.newBuilder(endpoint)
+            .timeout(requestTimeout)
+            .GET()
+            .build();
+    }
+    
+    @Override
+    public Game nextGame() {
+        try {
+            return nextGameAsync().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Game> nextGameAsync() {
+        return fetchBody()
+            .thenApply(body -> PuzzleCsv.decode(body, recordTo))
+            .exceptionally(e -> {
+                Log.info("Error reading URL: " + e.getMessage());
+                return null;
+            });
+    }
+    
+    /**
+     * Raw response body, without decoding.
+     */
+    public CompletableFuture<byte[]> fetchBody() {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("HTTP " + response.statusCode());
+                }
+                return response.body();
+            });
+    }
+    
+    @Override
+    public String getName() {
+        return "http " + request.uri();
+    }
+}
@@ -0,0 +1,627 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.database.LeaderboardTable;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.Counter;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.LeaderboardEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the leaderboard that answers rank, total and top-N
+ * without SQL.
+ *
+ * Entries live in an indexable skip list ordered like LeaderboardEntry
+ * (score desc, accuracy desc, then username so keys are unique). Every
+ * forward link remembers how many entries it jumps over, so finding a
+ * rank or the n-th entry is O(log n). The index is loaded from the
+ * leaderboard view at startup, updated from score events, and reloaded
+ * periodically so it can't drift from the database for long.
+ *
+ * Instead of asking for a rank after every answer, callers can subscribe()
+ * to a player. An update only wakes the subscribers whose rank it can
+ * change - those it moved past, or those behind a player who joins or
+ * leaves - and each subscriber hears at most once per interval, with
+ * whatever the rank is by then, and only if it differs from the last one
+ * it was told.
+ */
+public class LeaderboardIndex {
+    private static LeaderboardIndex instance;
+    
+    private static final long RECONCILE_INTERVAL_MS = Long.getLong("heart.leaderboard.reconcileMs", 60_000);
+    // Local updates this recent may not have reached MySQL yet, so they win over the reload
+    private static final long LOCAL_GRACE_MS = 10_000;
+    private static final double ACCURACY_TOLERANCE = 0.01;
+    private static final long RANK_INTERVAL_MS = Long.getLong("heart.leaderboard.rankIntervalMs", 250);
+    // Score then accuracy only: players in the same bucket share a rank
+    private static final Comparator<Node> BY_RANK = (a, b) ->
+        SkipList.isAhead(a, b.score, b.accuracy) ? -1 : SkipList.isAhead(b, a.score, a.accuracy) ? 1 : 0;
+    
+    private SkipList entries = new SkipList();
+    private final Map<String, Long> localUpdates = new HashMap<>();
+    private volatile boolean ready = false;
+    
+    // Guarded by this: subscriptions by player, and subscribed players by their rank key
+    private final Map<String, List<Subscription>> subscriptions = new HashMap<>();
+    private final TreeMap<Node, Set<String>> subscribedByRank = new TreeMap<>(BY_RANK);
+    private final Counter rankChecks = MetricsRegistry.getInstance().counter("leaderboard.rankChecks");
+    private final Counter rankDeliveries = MetricsRegistry.getInstance().counter("leaderboard.rankDeliveries");
+    
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private long reconciles = 0;
+    private long lastDrift = 0;
+    private long lastLoadMillis = 0;
+    
+    private LeaderboardIndex() {
+        BackgroundExecutor.getInstance().submit(this::reconcileAndReschedule);
+    }
+    
+    public static synchronized LeaderboardIndex getInstance() {
+        if (instance == null) {
+            instance = new LeaderboardIndex();
+        }
+        return instance;
+    }
+    
+    /**
+     * True once the first load from the database has finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * New score and accuracy for the player. Their games played stay as they
+     * were; see recordGame.
+     */
+    public synchronized void update(String username, int score, double accuracy) {
+        updates.incrementAndGet();
+        localUpdates.put(username, System.currentTimeMillis());
+        Node old = entries.get(username);
+        Node node = new Node(username, score, accuracy, old != null ? old.gamesPlayed : 0);
+        entries.put(node);
+        if (!subscriptions.isEmpty()) {
+            rankMoved(old, node);
+        }
+    }
+    
+    /**
+     * One more finished game for the player. Their rank doesn't change.
+     */
+    public synchronized void recordGame(String username) {
+        Node old = entries.get(username);
+        if (old == null) return;
+        updates.incrementAndGet();
+        localUpdates.put(username, System.currentTimeMillis());
+        Node node = new Node(username, old.score, old.accuracy, old.gamesPlayed + 1);
+        // Same score and accuracy, so subscribedByRank needs no change
+        entries.put(node);
+    }
+    
+    public synchronized void remove(String username) {
+        localUpdates.remove(username);
+        Node old = entries.get(username);
+        entries.remove(username);
+        if (old != null && !subscriptions.isEmpty()) {
+            unindex(old);
+            // Only the players behind move up
+            for (Set<String> players : subscribedByRank.tailMap(old, false).values()) {
+                wake(players);
+            }
+        }
+    }
+    
+    /**
+     * 1-based rank; players with the same score and accuracy share a rank.
+     * Returns -1 for unknown players.
+     */
+    public synchronized int getRank(String username) {
+        queries.incrementAndGet();
+        Node node = entries.get(username);
+        if (node == null) return -1;
+        return entries.countAhead(node.score, node.accuracy) + 1;
+    }
+    
+    public synchronized int getTotal() {
+        queries.incrementAndGet();
+        return entries.size();
+    }
+    
+    /**
+     * Best players first. A limit of 0 or less returns everyone.
+     */
+    public synchronized List<LeaderboardEntry> getTop(int limit) {
+        return getRange(0, limit > 0 ? limit : entries.size());
+    }
+    
+    /**
+     * count entries starting at the 0-based position offset.
+     */
+    public synchronized List<LeaderboardEntry> getRange(int offset, int count) {
+        queries.incrementAndGet();
+        List<LeaderboardEntry> result = new ArrayList<>(Math.max(0, Math.min(count, entries.size() - offset)));
+        Node node = entries.byPosition(offset + 1);
+        while (node != null && result.size() < count) {
+            result.add(new LeaderboardEntry(node.username, node.score, node.accuracy, node.gamesPlayed));
+            node = node.next[0];
+        }
+        return result;
+    }
+    
+    /**
+     * Up to count entries that come after the given one in leaderboard order
+     * (score, then accuracy, then username) - the next page for keyset
+     * pagination, even if the rows before it have moved since.
+     */
+    public synchronized List<LeaderboardEntry> getPageAfter(LeaderboardEntry after, int count) {
+        queries.incrementAndGet();
+        List<LeaderboardEntry> result = new ArrayList<>(Math.max(0, Math.min(count, entries.size())));
+        Node key = new Node(after.getUsername(), after.getScore(), after.getAccuracy(), after.getGamesPlayed());
+        Node node = entries.firstAfter(key);
+        while (node != null && result.size() < count) {
+            result.add(new LeaderboardEntry(node.username, node.score, node.accuracy, node.gamesPlayed));
+            node = node.next[0];
+        }
+        return result;
+    }
+    
+    /**
+     * 0-based position in leaderboard order, unlike getRank never shared.
+     * Returns -1 for unknown players.
+     */
+    public synchronized int getPosition(String username) {
+        queries.incrementAndGet();
+        Node node = entries.get(username);
+        return node == null ? -1 : entries.countBefore(node);
+    }
+    
+    /**
+     * Told when a player's rank changes. total is the number of players at
+     * that moment; a change in it alone isn't delivered.
+     */
+    public interface RankListener {
+        /** rank is -1 while the player isn't on the leaderboard. */
+        void onRankChanged(String username, int rank, int total);
+    }
+    
+    /**
+     * One subscribe() call. Cancel it when the caller goes away.
+     */
+    public final class Subscription {
+        private final String username;
+        private final RankListener listener;
+        private final Executor executor;
+        private final long intervalNanos;
+        private final AtomicBoolean checkScheduled = new AtomicBoolean(false);
+        private volatile boolean cancelled = false;
+        // Guarded by LeaderboardIndex.this
+        private int lastRank = Integer.MIN_VALUE;
+        private long lastDeliveredNanos;
+        
+        private Subscription(String username, RankListener listener, Executor executor, long intervalMillis) {
+            this.username = username;
+            this.listener = listener;
+            this.executor = executor;
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+            this.lastDeliveredNanos = System.nanoTime() - intervalNanos;
+        }
+        
+        public void cancel() {
+            unsubscribe(this);
+        }
+    }
+    
+    /**
+     * Hear about the player's rank on executor: once as soon as the index is
+     * loaded, then whenever it moves, at most every
+     * heart.leaderboard.rankIntervalMs (default 250).
+     */
+    public Subscription subscribe(String username, RankListener listener, Executor executor) {
+        return subscribe(username, listener, executor, RANK_INTERVAL_MS);
+    }
+    
+    public synchronized Subscription subscribe(String username, RankListener listener, Executor executor,
+                                               long intervalMillis) {
+        Subscription subscription = new Subscription(username, listener, executor, intervalMillis);
+        List<Subscription> forPlayer = subscriptions.computeIfAbsent(username, u -> new ArrayList<>());
+        if (forPlayer.isEmpty()) {
+            Node node = entries.get(username);
+            if (node != null) index(node);
+        }
+        forPlayer.add(subscription);
+        scheduleCheck(subscription);
+        return subscription;
+    }
+    
+    private synchronized void unsubscribe(Subscription subscription) {
+        subscription.cancelled = true;
+        List<Subscription> forPlayer = subscriptions.get(subscription.username);
+        if (forPlayer == null || !forPlayer.remove(subscription) || !forPlayer.isEmpty()) return;
+        subscriptions.remove(subscription.username);
+        Node node = entries.get(subscription.username);
+        if (node != null) unindex(node);
+    }
+    
+    private void index(Node node) {
+        subscribedByRank.computeIfAbsent(node, n -> new HashSet<>()).add(node.username);
+    }
+    
+    private void unindex(Node node) {
+        Set<String> players = subscribedByRank.get(node);
+        if (players != null && players.remove(node.username) && players.isEmpty()) {
+            subscribedByRank.remove(node);
+        }
+    }
+    
+    /**
+     * A player went from old (null if new) to node. Wake the subscribers
+     * whose rank that can change. Caller holds the lock.
+     */
+    private void rankMoved(Node old, Node node) {
+        boolean subscribed = subscriptions.containsKey(node.username);
+        if (subscribed) {
+            if (old != null) unindex(old);
+            index(node);
+        }
+        if (old == null) {
+            // A new player pushes back only those behind them
+            for (Set<String> players : subscribedByRank.tailMap(node, false).values()) {
+                wake(players);
+            }
+        } else {
+            int direction = BY_RANK.compare(node, old);
+            if (direction != 0) {
+                // Everyone now level with or behind the better key and at or ahead of the worse one
+                Node better = direction < 0 ? node : old;
+                Node worse = direction < 0 ? old : node;
+                for (Set<String> players : subscribedByRank.subMap(better, false, worse, true).values()) {
+                    wake(players);
+                }
+            }
+        }
+        if (subscribed) {
+            wake(Set.of(node.username));
+        }
+    }
+    
+    private void wake(Set<String> players) {
+        for (String username : players) {
+            List<Subscription> forPlayer = subscriptions.get(username);
+            if (forPlayer == null) continue;
+            for (Subscription subscription : forPlayer) {
+                scheduleCheck(subscription);
+            }
+        }
+    }
+    
+    /**
+     * Check the subscription once its interval has passed, unless a check
+     * is already on its way.
+     */
+    private void scheduleCheck(Subscription subscription) {
+        if (!subscription.checkScheduled.compareAndSet(false, true)) return;
+        long wait = subscription.lastDeliveredNanos + subscription.intervalNanos - System.nanoTime();
+        if (wait <= 0) {
+            BackgroundExecutor.getInstance().execute(() -> check(subscription));
+        } else {
+            BackgroundExecutor.getInstance().schedule(() -> check(subscription), wait, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private void check(Subscription subscription) {
+        subscription.checkScheduled.set(false);
+        rankChecks.increment();
+        int rank;
+        int total;
+        synchronized (this) {
+            if (subscription.cancelled || !ready) return;
+            Node node = entries.get(subscription.username);
+            rank = node == null ? -1 : entries.countAhead(node.score, node.accuracy) + 1;
+            total = entries.size();
+            if (rank == subscription.lastRank) return;
+            subscription.lastRank = rank;
+            subscription.lastDeliveredNanos = System.nanoTime();
+        }
+        rankDeliveries.increment();
+        subscription.executor.execute(() -> {
+            if (!subscription.cancelled) {
+                subscription.listener.onRankChanged(subscription.username, rank, total);
+            }
+        });
+    }
+    
+    private void reconcileAndReschedule() {
+        try {
+            reconcile();
+        } finally {
+            BackgroundExecutor.getInstance().schedule(this::reconcileAndReschedule,
+                RECONCILE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Reload everything from the leaderboard view and swap it in, keeping
+     * local updates that the database may not have seen yet.
+     */
+    public void reconcile() {
+        long started = System.currentTimeMillis();
+        List<LeaderboardEntry> rows;
+        try {
+            // The local store's copy while MySQL is down
+            rows = FallbackPlayerRepository.getInstance().loadLeaderboard(0);
+        } catch (RuntimeException e) {
+            rows = null;
+        }
+        if (rows == null) return; // Database unavailable - keep what we have
+        
+        SkipList reloaded = new SkipList();
+        for (LeaderboardEntry row : rows) {
+            reloaded.put(new Node(row.getUsername(), row.getScore(), row.getAccuracy(), row.getGamesPlayed()));
+        }
+        
+        PersistenceQueue persistence = PersistenceQueue.getInstance();
+        synchronized (this) {
+            long keepAfter = started - LOCAL_GRACE_MS;
+            localUpdates.values().removeIf(at -> at < keepAfter);
+            for (String username : localUpdates.keySet()) {
+                Node local = entries.get(username);
+                if (local != null) reloaded.put(local.copy());
+            }
+            for (Node node = entries.byPosition(1); node != null; node = node.next[0]) {
+                if (!localUpdates.containsKey(node.username)
+                        && persistence.getPendingPlayer(node.username) != null) {
+                    reloaded.put(node.copy());
+                }
+            }
+            
+            long drift = 0;
+            for (Node node = reloaded.byPosition(1); node != null; node = node.next[0]) {
+                Node old = entries.get(node.username);
+                if (old == null || old.score != node.score
+                        || Math.abs(old.accuracy - node.accuracy) > ACCURACY_TOLERANCE) {
+                    drift++;
+                }
+            }
+            drift += Math.max(0, entries.size() - reloaded.size());
+            
+            entries = reloaded;
+            subscribedByRank.clear();
+            for (String username : subscriptions.keySet()) {
+                Node node = entries.get(username);
+                if (node != null) index(node);
+            }
+            reconciles++;
+            lastDrift = reconciles > 1 ? drift : 0;
+            lastLoadMillis = System.currentTimeMillis() - started;
+        }
+        
+        boolean first = !ready;
+        ready = true;
+        synchronized (this) {
+            // Anyone's rank may have moved
+            wake(subscriptions.keySet());
+        }
+        if (first) {
+            Log.info("🏆 Leaderboard index loaded: " + reloaded.size() + " players in "
+                     + lastLoadMillis + " ms");
+        } else if (lastDrift > 0) {
+            Log.info("🏆 Leaderboard index reconciled, corrected " + lastDrift + " entries");
+        }
+    }
+    
+    public synchronized String getStats() {
+        return String.format("players=%d levels=%d queries=%d updates=%d reconciles=%d lastDrift=%d load %d ms",
+            entries.size(), entries.level, queries.get(), updates.get(), reconciles, lastDrift, lastLoadMillis);
+    }
+    
+    private static class Node {
+        final String username;
+        final int score;
+        final double accuracy;
+        final int gamesPlayed;
+        Node[] next;
+        int[] span; // entries passed when following next[i], counting the target
+        
+        Node(String username, int score, double accuracy, int gamesPlayed) {
+            this.username = username;
+            this.score = score;
+            this.accuracy = accuracy;
+            this.gamesPlayed = gamesPlayed;
+        }
+        
+        Node copy() {
+            return new Node(username, score, accuracy, gamesPlayed);
+        }
+    }
+    
+    /**
+     * Indexable skip list, the same layout Redis uses for sorted sets.
+     * Not thread-safe; LeaderboardIndex guards it.
+     */
+    private static class SkipList {
+        private static final int MAX_LEVEL = 32;
+        private static final double LEVEL_PROBABILITY = 0.25;
+        
+        private final Node head = new Node(null, 0, 0, 0);
+        private final Map<String, Node> byUsername = new HashMap<>();
+        private int level = 1;
+        private int size = 0;
+        
+        SkipList() {
+            head.next = new Node[MAX_LEVEL];
+            head.span = new int[MAX_LEVEL];
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        Node get(String username) {
+            return byUsername.get(username);
+        }
+        
+        /**
+         * Same order as LeaderboardEntry.compareTo, with username as the tiebreak.
+         */
+        private static int compare(Node a, Node b) {
+            if (a.score != b.score) return Integer.compare(b.score, a.score);
+            int byAccuracy = Double.compare(b.accuracy, a.accuracy);
+            if (byAccuracy != 0) return byAccuracy;
+            return LeaderboardTable.compareUsernames(a.username, b.username);
+        }
+        
+        private static boolean isAhead(Node node, int score, double accuracy) {
+            return node.score > score || (node.score == score && Double.compare(node.accuracy, accuracy) > 0);
+        }
+        
+        void put(Node node) {
+            remove(node.username);
+            
+            Node[] update = new Node[MAX_LEVEL];
+            int[] rank = new int[MAX_LEVEL];
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                rank[i] = i == level - 1 ? 0 : rank[i + 1];
+                while (x.next[i] != null && compare(x.next[i], node) < 0) {
+                    rank[i] += x.span[i];
+                    x = x.next[i];
+                }
+                update[i] = x;
+            }
+            
+            int nodeLevel = randomLevel();
+            if (nodeLevel > level) {
+                for (int i = level; i < nodeLevel; i++) {
+                    rank[i] = 0;
+                    update[i] = head;
+                    head.span[i] = size;
+                }
+                level = nodeLevel;
+            }
+            
+            node.next = new Node[nodeLevel];
+            node.span = new int[nodeLevel];
+            for (int i = 0; i < nodeLevel; i++) {
+                node.next[i] = update[i].next[i];
+                update[i].next[i] = node;
+                node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+                update[i].span[i] = rank[0] - rank[i] + 1;
+            }
+            for (int i = nodeLevel; i < level; i++) {
+                update[i].span[i]++;
+            }
+            
+            byUsername.put(node.username, node);
+            size++;
+        }
+        
+        void remove(String username) {
+            Node node = byUsername.remove(username);
+            if (node == null) return;
+            
+            Node[] update = new Node[MAX_LEVEL];
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && compare(x.next[i], node) < 0) {
+                    x = x.next[i];
+                }
+                update[i] = x;
+            }
+            
+            for (int i = 0; i < level; i++) {
+                if (update[i].next[i] == node) {
+                    update[i].span[i] += node.span[i] - 1;
+                    update[i].next[i] = node.next[i];
+                } else {
+                    update[i].span[i]--;
+                }
+            }
+            while (level > 1 && head.next[level - 1] == null) {
+                level--;
+            }
+            size--;
+        }
+        
+        /**
+         * Number of entries with a strictly better score/accuracy.
+         */
+        int countAhead(int score, double accuracy) {
+            int count = 0;
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && isAhead(x.next[i], score, accuracy)) {
+                    count += x.span[i];
+                    x = x.next[i];
+                }
+            }
+            return count;
+        }
+        
+        /**
+         * Number of entries ordered strictly before key.
+         */
+        int countBefore(Node key) {
+            int count = 0;
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && compare(x.next[i], key) < 0) {
+                    count += x.span[i];
+                    x = x.next[i];
+                }
+            }
+            return count;
+        }
+        
+        /**
+         * First entry ordered strictly after key, or null.
+         */
+        Node firstAfter(Node key) {
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && compare(x.next[i], key) <= 0) {
+                    x = x.next[i];
+                }
+            }
+            return x.next[0];
+        }
+        
+        /**
+         * The entry at a 1-based position, or null if out of range.
+         */
+        Node byPosition(int position) {
+            if (position < 1 || position > size) return null;
+            int traversed = 0;
+            Node x = head;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && traversed + x.span[i] <= position) {
+                    traversed += x.span[i];
+                    x = x.next[i];
+                }
+                if (traversed == position) return x;
+            }
+            return null;
+        }
+        
+        private static int randomLevel() {
+            int nodeLevel = 1;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+                nodeLevel++;
+            }
+            return nodeLevel;
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.perisic.heart.service;
 
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
 import com.perisic.heart.model.LeaderboardEntry;
 import com.perisic.heart.database.DatabaseConnection;
+import com.perisic.heart.database.LeaderboardTable;
 import java.sql.*;
 import java.util.*;
 
 public class LeaderboardService {
     private static LeaderboardService instance;
     
+    private static final LatencyHistogram PAGE_LATENCY = MetricsRegistry.getInstance().histogram("db.leaderboard.page");
+    private static final LatencyHistogram POSITION_LATENCY = MetricsRegistry.getInstance().histogram("db.leaderboard.position");
+    private static final LatencyHistogram RANK_LATENCY = MetricsRegistry.getInstance().histogram("db.leaderboard.rank");
+    private static final LatencyHistogram TOTAL_LATENCY = MetricsRegistry.getInstance().histogram("db.leaderboard.total");
+    
     private LeaderboardService() {}
     
     public static LeaderboardService getInstance() {
@@ -17,46 +26,97 @@ public class LeaderboardService {
         return instance;
     }
     
-    public void updatePlayer(String username, int score, double accuracy, int gamesPlayed) {
-        // Data is automatically updated when PlayerDataService.savePlayer() is called
+    public void updatePlayer(String username, int score, double accuracy) {
+        // The database catches up when PlayerDataService.savePlayer() is called,
+        // the in-memory index right away
+        LeaderboardIndex.getInstance().update(username, score, accuracy);
+    }
+    
+    /**
+     * Count a finished game for the player, as saving their stats does in
+     * player_stats.
+     */
+    public void recordGame(String username) {
+        LeaderboardIndex.getInstance().recordGame(username);
     }
     
     public List<LeaderboardEntry> getTopPlayers(int limit) {
-        List<LeaderboardEntry> entries = new ArrayList<>();
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isReady()) {
+            return index.getTop(limit);
+        }
+        try {
+            return FallbackPlayerRepository.getInstance().loadLeaderboard(limit);
+        } catch (PlayerRepository.UnavailableException e) {
+            Log.error("Error loading leaderboard: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * One page of the leaderboard in (score, accuracy, username) order.
+     * Pass the last entry of the previous page as after when it is known:
+     * the database then seeks straight to it in the rank index instead of
+     * skipping offset rows. Null if the database couldn't be read.
+     */
+    public List<LeaderboardEntry> getPage(int offset, LeaderboardEntry after, int limit) {
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isReady()) {
+            return after != null ? index.getPageAfter(after, limit) : index.getRange(offset, limit);
+        }
         
-        String sql = "SELECT * FROM leaderboard" + 
-                     (limit > 0 ? " LIMIT ?" : "");
+        String sql = after != null ? LeaderboardTable.DEFAULT.pageAfterSql : LeaderboardTable.DEFAULT.pageSql;
+        List<LeaderboardEntry> entries = new ArrayList<>();
         
+        long start = System.nanoTime();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            if (limit > 0) {
+            if (after != null) {
+                stmt.setInt(1, after.getScore());
+                stmt.setInt(2, after.getScore());
+                stmt.setDouble(3, after.getAccuracy());
+                stmt.setDouble(4, after.getAccuracy());
+                stmt.setString(5, after.getUsername());
+                stmt.setInt(6, limit);
+            } else {
                 stmt.setInt(1, limit);
+                stmt.setInt(2, offset);
             }
             
             ResultSet rs = stmt.executeQuery();
-            
             while (rs.next()) {
-                LeaderboardEntry entry = new LeaderboardEntry(
+                entries.add(new LeaderboardEntry(
                     rs.getString("username"),
                     rs.getInt("total_score"),
                     rs.getDouble("accuracy"),
                     rs.getInt("games_played")
-                );
-                entries.add(entry);
+                ));
             }
-            
+        
         } catch (SQLException e) {
-            System.err.println("Error loading leaderboard: " + e.getMessage());
+            Log.error("Error loading leaderboard page: " + e.getMessage());
+            return null;
+        } finally {
+            PAGE_LATENCY.recordSince(start);
         }
         
         return entries;
     }
     
-    public int getPlayerRank(String username) {
-        String sql = "SELECT COUNT(*) + 1 as rank FROM leaderboard " +
-                     "WHERE total_score > (SELECT total_score FROM leaderboard WHERE username = ?)";
+    /**
+     * 0-based row of the player in leaderboard order, or -1 if unknown.
+     */
+    public int getPlayerPosition(String username) {
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isReady()) {
+            return index.getPosition(username);
+        }
         
+        // No row at all when the player isn't on the leaderboard
+        String sql = LeaderboardTable.DEFAULT.positionSql;
+        
+        long start = System.nanoTime();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -64,19 +124,55 @@ public class LeaderboardService {
             ResultSet rs = stmt.executeQuery();
             
             if (rs.next()) {
-                return rs.getInt("rank");
+                return rs.getInt("ahead");
             }
+        
+        } catch (SQLException e) {
+            Log.error("Error getting position: " + e.getMessage());
+        } finally {
+            POSITION_LATENCY.recordSince(start);
+        }
+        
+        return -1;
+    }
+    
+    public int getPlayerRank(String username) {
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isReady()) {
+            return index.getRank(username);
+        }
+        
+        String sql = LeaderboardTable.DEFAULT.rankSql;
+        
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             
+            stmt.setString(1, username);
+            ResultSet rs = stmt.executeQuery();
+            
+            if (rs.next()) {
+                return rs.getInt("player_rank");
+            }
+        
         } catch (SQLException e) {
-            System.err.println("Error getting rank: " + e.getMessage());
+            Log.error("Error getting rank: " + e.getMessage());
+        } finally {
+            RANK_LATENCY.recordSince(start);
         }
         
         return -1;
     }
     
     public int getTotalPlayers() {
-        String sql = "SELECT COUNT(*) as total FROM leaderboard";
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isReady()) {
+            return index.getTotal();
+        }
+        
+        String sql = LeaderboardTable.DEFAULT.totalSql;
         
+        long start = System.nanoTime();
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
@@ -84,9 +180,11 @@ public class LeaderboardService {
             if (rs.next()) {
                 return rs.getInt("total");
             }
-            
+        
         } catch (SQLException e) {
-            System.err.println("Error getting total players: " + e.getMessage());
+            Log.error("Error getting total players: " + e.getMessage());
+        } finally {
+            TOTAL_LATENCY.recordSince(start);
         }
         
         return 0;
@@ -0,0 +1,71 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.model.Game;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cycles through a fixed set of puzzles decoded once up front, so fetching
+ * one costs nothing. Meant for load tests, where the puzzle source must not
+ * be the bottleneck.
+ *
+ * Puzzles come from the local corpus, or are drawn like LocalStubServer's
+ * placeholders when the corpus is empty.
+ */
+public class LocalGameSource implements GameSource {
+    private static final int MAX_GAMES = 256;
+    private static final int GENERATED_GAMES = 32;
+    
+    private final List<Game> games = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    
+    public LocalGameSource(PuzzleCorpus corpus) {
+        int stored = corpus != null ? Math.min(corpus.size(), MAX_GAMES) : 0;
+        for (int i = 0; i < stored; i++) {
+            add(corpus.imageBytesAt(i), corpus.solutionAt(i));
+        }
+        
+        if (games.isEmpty()) {
+            Random random = new Random(42);
+            for (int i = 0; i < GENERATED_GAMES; i++) {
+                int hearts = random.nextInt(10);
+                add(LocalStubServer.drawPlaceholder(hearts, random), hearts);
+            }
+        }
+    }
+    
+    private void add(byte[] png, int solution) {
+        try {
+            BufferedImage image = PuzzleCsv.readImage(new ByteArrayInputStream(png));
+            if (image != null) {
+                games.add(new Game(image, solution, ByteBuffer.wrap(png)));
+            }
+        } catch (IOException e) {
+            Log.error("❌ Could not decode local puzzle: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public Game nextGame() {
+        if (games.isEmpty()) return null;
+        return games.get(Math.floorMod(next.getAndIncrement(), games.size()));
+    }
+    
+    @Override
+    public CompletableFuture<Game> nextGameAsync() {
+        return CompletableFuture.completedFuture(nextGame());
+    }
+    
+    @Override
+    public String getName() {
+        return "local (" + games.size() + " puzzles)";
+    }
+}
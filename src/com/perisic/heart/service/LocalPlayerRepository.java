@@ -0,0 +1,224 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.model.LeaderboardEntry;
+import com.perisic.heart.model.Player;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Player data in the local LogStore, so the game keeps working, and keeps
+ * progress, while MySQL can't be reached.
+ *
+ * "user:<name>" holds the password hash, stats and best session,
+ * "rank:<name>" the player's leaderboard row. Both are mirrored from MySQL
+ * whenever it answers, so players who logged in here before can log in
+ * offline and the leaderboard still shows everyone last seen.
+ */
+public class LocalPlayerRepository implements PlayerRepository {
+    private static LocalPlayerRepository instance;
+    
+    private static final String USER_PREFIX = "user:";
+    private static final String RANK_PREFIX = "rank:";
+    private static final int USER_FORMAT = 1;
+    
+    private final LogStore store;
+    
+    public LocalPlayerRepository(LogStore store) {
+        this.store = store;
+    }
+    
+    public static synchronized LocalPlayerRepository getInstance() {
+        if (instance == null) {
+            instance = new LocalPlayerRepository(LogStore.getInstance());
+        }
+        return instance;
+    }
+    
+    public boolean isAvailable() {
+        return store != null;
+    }
+    
+    private static final class UserRecord {
+        String passwordHash;
+        int score;
+        int correct;
+        int attempts;
+        int bestSession;
+    }
+    
+    @Override
+    public synchronized boolean createUser(String username, String passwordHash) {
+        if (readUser(username) != null) return false;
+        UserRecord user = new UserRecord();
+        user.passwordHash = passwordHash;
+        writeUser(username, user);
+        write(RANK_PREFIX + username, encodeRank(0, 0, 0));
+        return true;
+    }
+    
+    @Override
+    public Player authenticate(String username, String passwordHash) {
+        UserRecord user = readUser(username);
+        if (user == null || user.passwordHash == null || !user.passwordHash.equals(passwordHash)) {
+            return null;
+        }
+        return toPlayer(username, user);
+    }
+    
+    @Override
+    public Player loadPlayer(String username) {
+        UserRecord user = readUser(username);
+        return user == null ? null : toPlayer(username, user);
+    }
+    
+    @Override
+    public synchronized void saveStats(Player player) {
+        String username = player.getUsername();
+        UserRecord user = readUser(username);
+        if (user == null) user = new UserRecord();
+        user.score = player.getScore();
+        user.correct = player.getCorrectAnswers();
+        user.attempts = player.getTotalAttempts();
+        writeUser(username, user);
+        
+        LeaderboardEntry row = readRank(username);
+        int games = row == null ? 1 : row.getGamesPlayed() + 1;
+        write(RANK_PREFIX + username, encodeRank(player.getScore(), player.getAccuracy(), games));
+    }
+    
+    @Override
+    public synchronized void saveSession(String username, int sessionScore, double sessionAccuracy, int gamesInSession) {
+        UserRecord user = readUser(username);
+        if (user == null) user = new UserRecord();
+        if (sessionScore > user.bestSession) {
+            user.bestSession = sessionScore;
+            writeUser(username, user);
+        }
+    }
+    
+    @Override
+    public List<LeaderboardEntry> loadLeaderboard(int limit) {
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        for (String key : requireStore().keysWithPrefix(RANK_PREFIX)) {
+            LeaderboardEntry entry = readRank(key.substring(RANK_PREFIX.length()));
+            if (entry != null) entries.add(entry);
+        }
+        Collections.sort(entries);
+        return limit > 0 && entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+    
+    /**
+     * Remember what MySQL said about a player. A null hash or stats keeps
+     * what is stored.
+     */
+    public synchronized void mirrorUser(String username, String passwordHash, Player stats) {
+        UserRecord user = readUser(username);
+        if (user == null) user = new UserRecord();
+        if (passwordHash != null) user.passwordHash = passwordHash;
+        if (stats != null) {
+            user.score = stats.getScore();
+            user.correct = stats.getCorrectAnswers();
+            user.attempts = stats.getTotalAttempts();
+        }
+        requireStore().putIfChanged(USER_PREFIX + username, encodeUser(user));
+    }
+    
+    /**
+     * Remember leaderboard rows read from MySQL. Returns how many changed.
+     */
+    public int mirrorLeaderboard(List<LeaderboardEntry> rows) {
+        LogStore local = requireStore();
+        int changed = 0;
+        for (LeaderboardEntry row : rows) {
+            if (local.putIfChanged(RANK_PREFIX + row.getUsername(),
+                    encodeRank(row.getScore(), row.getAccuracy(), row.getGamesPlayed()))) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+    
+    private LogStore requireStore() {
+        if (store == null) throw new UnavailableException("local store unavailable");
+        return store;
+    }
+    
+    private void write(String key, byte[] value) {
+        try {
+            requireStore().put(key, value);
+        } catch (IllegalStateException e) {
+            throw new UnavailableException(e.getMessage(), e);
+        }
+    }
+    
+    private static Player toPlayer(String username, UserRecord user) {
+        Player player = new Player(username);
+        player.setStats(user.score, user.correct, user.attempts);
+        return player;
+    }
+    
+    private UserRecord readUser(String username) {
+        byte[] bytes = requireStore().get(USER_PREFIX + username);
+        if (bytes == null) return null;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != USER_FORMAT) return null;
+            UserRecord user = new UserRecord();
+            String hash = in.readUTF();
+            user.passwordHash = hash.isEmpty() ? null : hash;
+            user.score = in.readInt();
+            user.correct = in.readInt();
+            user.attempts = in.readInt();
+            user.bestSession = in.readInt();
+            return user;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private void writeUser(String username, UserRecord user) {
+        write(USER_PREFIX + username, encodeUser(user));
+    }
+    
+    private static byte[] encodeUser(UserRecord user) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(USER_FORMAT);
+            out.writeUTF(user.passwordHash == null ? "" : user.passwordHash);
+            out.writeInt(user.score);
+            out.writeInt(user.correct);
+            out.writeInt(user.attempts);
+            out.writeInt(user.bestSession);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private LeaderboardEntry readRank(String username) {
+        byte[] bytes = requireStore().get(RANK_PREFIX + username);
+        if (bytes == null) return null;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return new LeaderboardEntry(username, in.readInt(), in.readDouble(), in.readInt());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private static byte[] encodeRank(int score, double accuracy, int gamesPlayed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(score);
+            out.writeDouble(accuracy);
+            out.writeInt(gamesPlayed);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
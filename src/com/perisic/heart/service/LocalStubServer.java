@@ -0,0 +1,121 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.imageio.ImageIO;
+
+/**
+ * Embedded HTTP stand-in for the heart API, serving the same
+ * "base64 image,solution" CSV format on localhost.
+ *
+ * Responses are pre-encoded from the local corpus (or from simple generated
+ * images when the corpus is empty), so the stub itself is never the bottleneck
+ * when benchmarking a GameSource.
+ *
+ * Run standalone with: java com.perisic.heart.service.LocalStubServer [port]
+ */
+public class LocalStubServer {
+    private static final int MAX_PAYLOADS = 256;
+    private static final int GENERATED_PAYLOADS = 32;
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<byte[]> payloads = new ArrayList<>();
+    
+    public LocalStubServer(int port, PuzzleCorpus corpus) throws IOException {
+        // Without this every response waits on delayed ACKs (~40 ms per puzzle)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        loadPayloads(corpus);
+        
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "stub-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+    
+    private void loadPayloads(PuzzleCorpus corpus) {
+        int stored = corpus != null ? Math.min(corpus.size(), MAX_PAYLOADS) : 0;
+        for (int i = 0; i < stored; i++) {
+            payloads.add(PuzzleCsv.encode(corpus.imageBytesAt(i), corpus.solutionAt(i)));
+        }
+        
+        if (payloads.isEmpty()) {
+            Random random = new Random(42);
+            for (int i = 0; i < GENERATED_PAYLOADS; i++) {
+                int hearts = random.nextInt(10);
+                payloads.add(PuzzleCsv.encode(drawPlaceholder(hearts, random), hearts));
+            }
+        }
+    }
+    
+    static byte[] drawPlaceholder(int hearts, Random random) {
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 400, 200);
+        g.setColor(new Color(231, 76, 60));
+        for (int i = 0; i < hearts; i++) {
+            g.fillOval(random.nextInt(360), random.nextInt(160), 40, 40);
+        }
+        g.dispose();
+        
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = payloads.get(ThreadLocalRandom.current().nextInt(payloads.size()));
+        exchange.getResponseHeaders().set("Content-Type", "text/csv");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    public void start() {
+        server.start();
+        Log.info("🧪 Local puzzle stub serving " + payloads.size() + " puzzles at " + getUri());
+    }
+    
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    public URI getUri() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort()
+                          + "/api.php?out=csv&base64=yes");
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8088;
+        new LocalStubServer(port, PuzzleCorpus.getInstance()).start();
+    }
+}
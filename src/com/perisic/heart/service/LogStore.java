@@ -0,0 +1,530 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A small embedded key-value store kept in one append-only log file.
+ *
+ * Every put or delete appends a record [crc][key length][value length][key][value]
+ * (value length -1 marks a delete) and points an in-memory index at it, so a
+ * read is one positional read. Appends only reach the OS page cache, which
+ * keeps a put in the microseconds; the file is forced to disk in the
+ * background within heart.store.syncMs (default 50) and on close. On open
+ * the log is replayed to rebuild the index, and a torn record at the end
+ * (a crash mid-write) is cut off.
+ *
+ * Overwritten and deleted records are garbage. Once that is more than half
+ * the file and over heart.store.compactBytes (default 4 MB), the live records
+ * are copied to a new file in the background; writes made meanwhile are
+ * carried over before the new file replaces the old one.
+ */
+public class LogStore {
+    private static LogStore instance;
+    
+    private static final int HEADER_SIZE = 12;
+    private static final int TOMBSTONE = -1;
+    private static final int MAX_KEY_BYTES = 1 << 16;
+    private static final int MAX_VALUE_BYTES = 1 << 24;
+    
+    private final Path file;
+    private final long syncDelayMs;
+    private final long compactBytes;
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    
+    // Appends hold the read lock plus appendLock; swapping in a compacted file holds the write lock
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Object appendLock = new Object();
+    private volatile FileChannel channel;
+    private volatile ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+    private long end;
+    private long liveBytes;
+    private volatile boolean closed = false;
+    private final List<Runnable> beforeClose = new CopyOnWriteArrayList<>();
+    
+    private final AtomicBoolean syncScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private volatile long compactions = 0;
+    private volatile long truncatedBytes = 0;
+    
+    /**
+     * Where a live value sits in the file.
+     */
+    private static final class Location {
+        final long valueOffset;
+        final int valueLength;
+        final int recordSize;
+        final long valueCrc;
+        
+        Location(long valueOffset, int valueLength, int recordSize, long valueCrc) {
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordSize = recordSize;
+            this.valueCrc = valueCrc;
+        }
+    }
+    
+    public LogStore(Path file, long syncDelayMs, long compactBytes) throws IOException {
+        this.file = file;
+        this.syncDelayMs = syncDelayMs;
+        this.compactBytes = compactBytes;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        long size = channel.size();
+        end = replay(channel, 0, size, index, null);
+        if (end < size) {
+            truncatedBytes = size - end;
+            Log.warn("⚠️ {}: dropped {} bytes of incomplete writes at the end", file, truncatedBytes);
+            channel.truncate(end);
+            channel.force(true);
+        }
+        for (Location location : index.values()) {
+            liveBytes += location.recordSize;
+        }
+    }
+    
+    /**
+     * The store for local player data, at heart.store.file (default
+     * ~/.heartgame_store.log). Returns null if it can't be opened.
+     */
+    public static synchronized LogStore getInstance() {
+        if (instance == null) {
+            Path path = Paths.get(System.getProperty("heart.store.file",
+                Paths.get(System.getProperty("user.home"), ".heartgame_store.log").toString()));
+            try {
+                instance = new LogStore(path, Long.getLong("heart.store.syncMs", 50),
+                                        Long.getLong("heart.store.compactBytes", 4L << 20));
+                Log.info("🗄️ Local store opened: {} keys in {}", instance.size(), path);
+                MetricsRegistry metrics = MetricsRegistry.getInstance();
+                metrics.register("store.write", instance.writeLatency);
+                metrics.gauge("store.keys", instance::size);
+                metrics.gauge("store.garbagePercent", instance::getGarbagePercent);
+                LogStore opened = instance;
+                try {
+                    Runtime.getRuntime().addShutdownHook(new Thread(opened::shutdown, "store-shutdown"));
+                } catch (IllegalStateException e) {
+                    // Already shutting down
+                }
+            } catch (IOException e) {
+                Log.error("❌ Could not open local store " + path + ": " + e.getMessage());
+                return null;
+            }
+        }
+        return instance;
+    }
+    
+    public void put(String key, byte[] value) {
+        append(key, value);
+    }
+    
+    /**
+     * Put unless the stored value is already the same. Returns true if it wrote.
+     */
+    public boolean putIfChanged(String key, byte[] value) {
+        Location current = index.get(key);
+        if (current != null && current.valueLength == value.length && current.valueCrc == crc(value)) {
+            return false;
+        }
+        append(key, value);
+        return true;
+    }
+    
+    public void delete(String key) {
+        if (index.containsKey(key)) {
+            append(key, null);
+        }
+    }
+    
+    /**
+     * The value, or null if the key isn't there.
+     */
+    public byte[] get(String key) {
+        swapLock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) return null;
+            ByteBuffer value = ByteBuffer.allocate(location.valueLength);
+            readFully(channel, value, location.valueOffset);
+            return value.array();
+        } catch (IOException e) {
+            Log.error("Error reading " + key + " from local store: " + e.getMessage());
+            return null;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+    
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+    
+    public List<String> keysWithPrefix(String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : index.keySet()) {
+            if (key.startsWith(prefix)) keys.add(key);
+        }
+        return keys;
+    }
+    
+    private void append(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_BYTES || (value != null && value.length > MAX_VALUE_BYTES)) {
+            throw new IllegalArgumentException("Record too large for " + key);
+        }
+        ByteBuffer record = encode(keyBytes, value);
+        
+        long start = System.nanoTime();
+        swapLock.readLock().lock();
+        try {
+            if (closed) throw new IllegalStateException("Local store is closed");
+            synchronized (appendLock) {
+                long offset = end;
+                writeFully(channel, record, offset);
+                end += record.limit();
+                
+                Location old;
+                if (value == null) {
+                    old = index.remove(key);
+                } else {
+                    Location location = new Location(offset + HEADER_SIZE + keyBytes.length, value.length,
+                                                     record.limit(), crc(value));
+                    old = index.put(key, location);
+                    liveBytes += location.recordSize;
+                }
+                if (old != null) liveBytes -= old.recordSize;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to local store: " + e.getMessage(), e);
+        } finally {
+            swapLock.readLock().unlock();
+            writeLatency.recordSince(start);
+        }
+        
+        scheduleSync();
+        if (shouldCompact()) {
+            scheduleCompaction();
+        }
+    }
+    
+    private static ByteBuffer encode(byte[] key, byte[] value) {
+        int valueLength = value == null ? TOMBSTONE : value.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + key.length + Math.max(0, valueLength));
+        record.putInt(0).putInt(key.length).putInt(valueLength).put(key);
+        if (value != null) record.put(value);
+        
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.position() - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+    
+    private static long crc(byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(value);
+        return crc.getValue();
+    }
+    
+    /**
+     * Read records from [from, to) into the index (and out, if given).
+     * Returns where the last intact record ends.
+     */
+    private static long replay(FileChannel source, long from, long to,
+                               Map<String, Location> into, RecordSink out) throws IOException {
+        source.position(from);
+        // Not closed: that would close the channel
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(source), 1 << 16));
+        long offset = from;
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_SIZE <= to) {
+            int storedCrc;
+            int keyLength;
+            int valueLength;
+            byte[] key;
+            byte[] value;
+            try {
+                storedCrc = in.readInt();
+                keyLength = in.readInt();
+                valueLength = in.readInt();
+                if (keyLength < 0 || keyLength > MAX_KEY_BYTES || valueLength < TOMBSTONE
+                        || valueLength > MAX_VALUE_BYTES
+                        || offset + HEADER_SIZE + keyLength + Math.max(0, valueLength) > to) {
+                    break;
+                }
+                key = new byte[keyLength];
+                in.readFully(key);
+                value = valueLength == TOMBSTONE ? null : new byte[valueLength];
+                if (value != null) in.readFully(value);
+            } catch (EOFException e) {
+                break;
+            }
+            
+            crc.reset();
+            ByteBuffer lengths = ByteBuffer.allocate(8).putInt(keyLength).putInt(valueLength);
+            crc.update(lengths.array());
+            crc.update(key);
+            if (value != null) crc.update(value);
+            if ((int) crc.getValue() != storedCrc) break;
+            
+            String name = new String(key, StandardCharsets.UTF_8);
+            int recordSize = HEADER_SIZE + keyLength + Math.max(0, valueLength);
+            if (out != null) {
+                out.accept(name, value);
+            } else if (value == null) {
+                into.remove(name);
+            } else {
+                into.put(name, new Location(offset + HEADER_SIZE + keyLength, valueLength, recordSize, crc(value)));
+            }
+            offset += recordSize;
+        }
+        return offset;
+    }
+    
+    private interface RecordSink {
+        void accept(String key, byte[] value) throws IOException;
+    }
+    
+    private static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException("Local store record cut short");
+        }
+    }
+    
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer, position + buffer.position());
+        }
+    }
+    
+    private void scheduleSync() {
+        if (syncScheduled.compareAndSet(false, true)) {
+            BackgroundExecutor.getInstance().schedule(() -> {
+                syncScheduled.set(false);
+                sync();
+            }, syncDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Force everything written so far to disk.
+     */
+    public void sync() {
+        swapLock.readLock().lock();
+        try {
+            if (!closed) channel.force(false);
+        } catch (IOException e) {
+            Log.error("Error syncing local store: " + e.getMessage());
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+    
+    private boolean shouldCompact() {
+        synchronized (appendLock) {
+            long garbage = end - liveBytes;
+            return garbage > compactBytes && garbage > liveBytes;
+        }
+    }
+    
+    private void scheduleCompaction() {
+        if (compacting.compareAndSet(false, true)) {
+            BackgroundExecutor.getInstance().execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Rewrite the file with only the live records. Reads and writes carry on
+     * while the copy is made; they only wait for the final catch-up and swap.
+     */
+    public void compact() {
+        long started = System.currentTimeMillis();
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        Map<String, Location> snapshot;
+        long copiedUpTo;
+        long before;
+        FileChannel source = channel;
+        synchronized (appendLock) {
+            snapshot = new HashMap<>(index);
+            copiedUpTo = end;
+            before = end;
+        }
+        
+        FileChannel target = null;
+        try {
+            target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                      StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            RecordWriter writer = new RecordWriter(target);
+            for (Map.Entry<String, Location> entry : snapshot.entrySet()) {
+                Location location = entry.getValue();
+                ByteBuffer value = ByteBuffer.allocate(location.valueLength);
+                readFully(source, value, location.valueOffset);
+                writer.accept(entry.getKey(), value.array());
+            }
+            
+            swapLock.writeLock().lock();
+            try {
+                if (closed || channel != source) return;
+                // Whatever was written during the copy, deletes included
+                replay(source, copiedUpTo, end, null, writer);
+                writer.finish();
+                target.force(true);
+                Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                
+                source.close();
+                channel = target;
+                index = writer.index;
+                end = writer.offset;
+                liveBytes = 0;
+                for (Location location : index.values()) {
+                    liveBytes += location.recordSize;
+                }
+                target = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            compactions++;
+            Log.info("🗄️ Local store compacted from {} to {} KB in {} ms", before / 1024,
+                     end / 1024, System.currentTimeMillis() - started);
+        } catch (IOException | RuntimeException e) {
+            Log.error("Error compacting local store: " + e.getMessage());
+        } finally {
+            if (target != null) {
+                try {
+                    target.close();
+                    Files.deleteIfExists(compacted);
+                } catch (IOException e) {
+                    // Nothing else to do
+                }
+            }
+        }
+    }
+    
+    /**
+     * Appends records to the compacted file and indexes them.
+     */
+    private static final class RecordWriter implements RecordSink {
+        final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+        final DataOutputStream out;
+        long offset = 0;
+        
+        RecordWriter(FileChannel target) {
+            // Not closed: that would close the channel
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(target), 1 << 16));
+        }
+        
+        @Override
+        public void accept(String key, byte[] value) throws IOException {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = encode(keyBytes, value);
+            out.write(record.array(), 0, record.limit());
+            if (value == null) {
+                // Still written, so the older copy above stays deleted after a restart
+                index.remove(key);
+            } else {
+                index.put(key, new Location(offset + HEADER_SIZE + keyBytes.length, value.length,
+                                            record.limit(), crc(value)));
+            }
+            offset += record.limit();
+        }
+        
+        void finish() throws IOException {
+            out.flush();
+        }
+    }
+    
+    /**
+     * Run task at shutdown while the store is still open, e.g. to write out
+     * a queue. Tasks run one after another, in the order they were added,
+     * and the store closes after the last one. Other shutdown hooks run
+     * concurrently in no fixed order, so anything that writes here on the
+     * way out must go through this instead of its own hook.
+     */
+    public void beforeClose(Runnable task) {
+        beforeClose.add(task);
+    }
+    
+    private void shutdown() {
+        for (Runnable task : beforeClose) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.error("Error at local store shutdown: " + e.getMessage(), e);
+            }
+        }
+        close();
+    }
+    
+    public void close() {
+        swapLock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            Log.error("Error closing local store: " + e.getMessage());
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        return index.size();
+    }
+    
+    public double getGarbagePercent() {
+        synchronized (appendLock) {
+            return end == 0 ? 0 : (end - liveBytes) * 100.0 / end;
+        }
+    }
+    
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+    
+    public String getStats() {
+        long fileBytes;
+        synchronized (appendLock) {
+            fileBytes = end;
+        }
+        return String.format("keys=%d file=%d KB garbage=%.0f%% compactions=%d write %s",
+            size(), fileBytes / 1024, getGarbagePercent(), compactions,
+            writeLatency.summary(TimeUnit.MICROSECONDS));
+    }
+}
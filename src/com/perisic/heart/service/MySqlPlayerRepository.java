@@ -0,0 +1,319 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.database.DatabaseConnection;
+import com.perisic.heart.database.LeaderboardTable;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.LeaderboardEntry;
+import com.perisic.heart.model.Player;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Player data in MySQL. Connection failures surface as UnavailableException,
+ * any other SQL error is logged and treated as "not found" like before.
+ */
+public class MySqlPlayerRepository implements PlayerRepository {
+    private static MySqlPlayerRepository instance;
+    
+    private static final LatencyHistogram LOAD_LATENCY = MetricsRegistry.getInstance().histogram("db.player.load");
+    private static final LatencyHistogram SAVE_LATENCY = MetricsRegistry.getInstance().histogram("db.player.save");
+    private static final LatencyHistogram SESSION_LATENCY = MetricsRegistry.getInstance().histogram("db.session.save");
+    private static final LatencyHistogram BEST_SESSION_LATENCY = MetricsRegistry.getInstance().histogram("db.session.best");
+    private static final LatencyHistogram LEADERBOARD_LATENCY = MetricsRegistry.getInstance().histogram("db.leaderboard.top");
+    
+    private MySqlPlayerRepository() {}
+    
+    public static synchronized MySqlPlayerRepository getInstance() {
+        if (instance == null) {
+            instance = new MySqlPlayerRepository();
+        }
+        return instance;
+    }
+    
+    private static Connection connect() {
+        Connection conn = DatabaseConnection.getConnection();
+        if (conn == null) throw new UnavailableException("no database connection");
+        return conn;
+    }
+    
+    /**
+     * Rethrow lost connections as unavailable, log anything else.
+     */
+    private static void failed(String what, SQLException e) {
+        String state = e.getSQLState();
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException
+                || (state != null && state.startsWith("08"))) {
+            throw new UnavailableException(what + ": " + e.getMessage(), e);
+        }
+        Log.error(what + ": " + e.getMessage());
+    }
+    
+    @Override
+    public boolean createUser(String username, String passwordHash) {
+        String sql = "INSERT INTO users (username, password_hash) VALUES (?, ?)";
+        
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            
+            stmt.setString(1, username);
+            stmt.setString(2, passwordHash);
+            
+            int rowsAffected = stmt.executeUpdate();
+            
+            if (rowsAffected > 0) {
+                ResultSet keys = stmt.getGeneratedKeys();
+                if (keys.next()) {
+                    int userId = keys.getInt(1);
+                    createInitialStats(conn, userId, username);
+                }
+                return true;
+            }
+            
+        } catch (SQLIntegrityConstraintViolationException e) {
+            Log.info("Username already exists");
+        } catch (SQLException e) {
+            failed("Error registering user", e);
+        }
+        
+        return false;
+    }
+    
+    private void createInitialStats(Connection conn, int userId, String username) {
+        String sql = "INSERT INTO player_stats (user_id, total_score, correct_answers, total_attempts) " +
+                     "VALUES (?, 0, 0, 0)";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             LeaderboardTable.Maintenance leaderboard = LeaderboardTable.DEFAULT.maintenance(conn)) {
+            
+            conn.setAutoCommit(false);
+            try {
+                stmt.setInt(1, userId);
+                stmt.executeUpdate();
+                leaderboard.add(username);
+                leaderboard.execute();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            Log.error("Error creating initial stats: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Checks the password and loads the player's stats in one query. The
+     * last_login update happens in the background.
+     */
+    @Override
+    public Player authenticate(String username, String passwordHash) {
+        String sql = "SELECT u.user_id, ps.total_score, ps.correct_answers, ps.total_attempts " +
+                     "FROM users u LEFT JOIN player_stats ps ON u.user_id = ps.user_id " +
+                     "WHERE u.username = ? AND u.password_hash = ?";
+        
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, username);
+            stmt.setString(2, passwordHash);
+            
+            ResultSet rs = stmt.executeQuery();
+            
+            if (rs.next()) {
+                int userId = rs.getInt("user_id");
+                BackgroundExecutor.getInstance().execute(() -> updateLastLogin(userId));
+                
+                Player player = new Player(username);
+                // All zero when the player has no stats row yet
+                player.setStats(
+                    rs.getInt("total_score"),
+                    rs.getInt("correct_answers"),
+                    rs.getInt("total_attempts")
+                );
+                return player;
+            }
+            
+        } catch (SQLException e) {
+            failed("Error during login", e);
+        }
+        
+        return null;
+    }
+    
+    private void updateLastLogin(int userId) {
+        String sql = "UPDATE users SET last_login = CURRENT_TIMESTAMP WHERE user_id = ?";
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, userId);
+            stmt.executeUpdate();
+            
+        } catch (SQLException | RuntimeException e) {
+            Log.error("Error updating last login: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public Player loadPlayer(String username) {
+        String sql = "SELECT ps.total_score, ps.correct_answers, ps.total_attempts " +
+                     "FROM users u JOIN player_stats ps ON u.user_id = ps.user_id " +
+                     "WHERE u.username = ?";
+        
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, username);
+            ResultSet rs = stmt.executeQuery();
+            
+            if (rs.next()) {
+                Player player = new Player(username);
+                player.setStats(
+                    rs.getInt("total_score"),
+                    rs.getInt("correct_answers"),
+                    rs.getInt("total_attempts")
+                );
+                return player;
+            }
+            
+        } catch (SQLException e) {
+            failed("Error loading player", e);
+        } finally {
+            LOAD_LATENCY.recordSince(start);
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public void saveStats(Player player) {
+        String sql = "UPDATE player_stats ps " +
+                     "JOIN users u ON ps.user_id = u.user_id " +
+                     "SET ps.total_score = ?, " +
+                     "    ps.correct_answers = ?, " +
+                     "    ps.total_attempts = ?, " +
+                     "    ps.games_played = ps.games_played + 1, " +
+                     "    ps.last_played = CURRENT_TIMESTAMP " +
+                     "WHERE u.username = ?";
+        
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             LeaderboardTable.Maintenance leaderboard = LeaderboardTable.DEFAULT.maintenance(conn)) {
+            
+            conn.setAutoCommit(false);
+            try {
+                stmt.setInt(1, player.getScore());
+                stmt.setInt(2, player.getCorrectAnswers());
+                stmt.setInt(3, player.getTotalAttempts());
+                stmt.setString(4, player.getUsername());
+                stmt.executeUpdate();
+                
+                leaderboard.add(player.getUsername());
+                leaderboard.execute();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            failed("Error saving player", e);
+        } finally {
+            SAVE_LATENCY.recordSince(start);
+        }
+    }
+    
+    @Override
+    public void saveSession(String username, int sessionScore, double sessionAccuracy, int gamesInSession) {
+        String sql = "INSERT INTO game_sessions " +
+                     "(user_id, session_score, session_accuracy, games_in_session) " +
+                     "SELECT user_id, ?, ?, ? FROM users WHERE username = ?";
+        
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, sessionScore);
+            stmt.setDouble(2, sessionAccuracy);
+            stmt.setInt(3, gamesInSession);
+            stmt.setString(4, username);
+            
+            stmt.executeUpdate();
+            
+            updateBestSession(conn, username, sessionScore);
+            
+        } catch (SQLException e) {
+            failed("Error saving session", e);
+        } finally {
+            SESSION_LATENCY.recordSince(start);
+        }
+    }
+    
+    private void updateBestSession(Connection conn, String username, int sessionScore) {
+        String sql = "UPDATE player_stats ps " +
+                     "JOIN users u ON ps.user_id = u.user_id " +
+                     "SET ps.best_session_score = ? " +
+                     "WHERE u.username = ? AND ps.best_session_score < ?";
+        
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, sessionScore);
+            stmt.setString(2, username);
+            stmt.setInt(3, sessionScore);
+            
+            stmt.executeUpdate();
+            
+        } catch (SQLException e) {
+            Log.error("Error updating best session: " + e.getMessage());
+        } finally {
+            BEST_SESSION_LATENCY.recordSince(start);
+        }
+    }
+    
+    /**
+     * Read the leaderboard table in rank order.
+     */
+    @Override
+    public List<LeaderboardEntry> loadLeaderboard(int limit) {
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(LeaderboardTable.DEFAULT.topSql)) {
+            
+            stmt.setInt(1, limit > 0 ? limit : Integer.MAX_VALUE);
+            
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                LeaderboardEntry entry = new LeaderboardEntry(
+                    rs.getString("username"),
+                    rs.getInt("total_score"),
+                    rs.getDouble("accuracy"),
+                    rs.getInt("games_played")
+                );
+                entries.add(entry);
+            }
+            
+        } catch (SQLException e) {
+            // A half-read leaderboard would look like players had vanished
+            failed("Error loading leaderboard", e);
+            throw new UnavailableException("leaderboard query failed", e);
+        } finally {
+            LEADERBOARD_LATENCY.recordSince(start);
+        }
+        
+        return entries;
+    }
+}
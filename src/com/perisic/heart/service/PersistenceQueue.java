@@ -0,0 +1,808 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.database.DatabaseConnection;
+import com.perisic.heart.database.LeaderboardTable;
+import com.perisic.heart.database.SchemaMigrator;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.Player;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue for player stats and finished sessions.
+ *
+ * The UI hands its writes over and returns immediately. Writes for the same
+ * player are coalesced: the latest stats win, games played and best session
+ * are folded into a single UPDATE, and sessions become INSERTs. Each flush
+ * sends everything pending as JDBC batches inside one transaction, which
+ * rewriteBatchedStatements turns into a few large statements; the players'
+ * rows in the leaderboard table are updated in that same transaction.
+ *
+ * Each write also goes straight to the LocalPlayerRepository, and what is
+ * queued for a player is kept in the LogStore under "queue:<name>" until
+ * MySQL has it. Nothing is lost if MySQL is down or the game crashes: the
+ * queue is reloaded at the next start and replayed once MySQL answers,
+ * including accounts registered while offline. Without a local store,
+ * whatever can't be written at shutdown is spilled to a text file instead.
+ *
+ * Replays are idempotent: every queued write carries a random id that is
+ * inserted into applied_writes in the same transaction as the write, and a
+ * write whose id is already there is skipped. So a crash between the commit
+ * and clearing the local copy doesn't count games or sessions twice.
+ */
+public class PersistenceQueue {
+    private static PersistenceQueue instance;
+    
+    private static final long FLUSH_DELAY_MS = 250;
+    private static final long RETRY_DELAY_MS = 5_000;
+    private static final String OUTBOX_PREFIX = "queue:";
+    private static final LatencyHistogram FLUSH_LATENCY = MetricsRegistry.getInstance().histogram("db.persistence.flush");
+    
+    private static final String UPDATE_STATS_SQL =
+        "UPDATE player_stats ps " +
+        "JOIN users u ON ps.user_id = u.user_id " +
+        "SET ps.total_score = ?, " +
+        "    ps.correct_answers = ?, " +
+        "    ps.total_attempts = ?, " +
+        "    ps.games_played = ps.games_played + ?, " +
+        "    ps.best_session_score = GREATEST(ps.best_session_score, ?), " +
+        "    ps.last_played = CURRENT_TIMESTAMP " +
+        "WHERE u.username = ?";
+    
+    // Accounts registered offline. INSERT IGNORE leaves a name taken meanwhile alone.
+    private static final String INSERT_USER_SQL =
+        "INSERT IGNORE INTO users (username, password_hash) VALUES (?, ?)";
+    
+    private static final String INSERT_INITIAL_STATS_SQL =
+        "INSERT INTO player_stats (user_id, total_score, correct_answers, total_attempts) " +
+        "SELECT u.user_id, 0, 0, 0 FROM users u " +
+        "WHERE u.username = ? AND u.password_hash = ? " +
+        "AND NOT EXISTS (SELECT 1 FROM player_stats ps WHERE ps.user_id = u.user_id)";
+    
+    private static final String OWNER_SQL = "SELECT password_hash FROM users WHERE username = ?";
+    
+    // Inserts nothing if the write was applied before
+    private static final String CLAIM_WRITE_SQL = "INSERT IGNORE INTO applied_writes (write_id) VALUES (?)";
+    
+    private static final String PRUNE_WRITES_SQL =
+        "DELETE FROM applied_writes WHERE applied_at < NOW() - INTERVAL 30 DAY";
+    
+    private static final String INSERT_SESSION_SQL =
+        "INSERT INTO game_sessions " +
+        "(user_id, session_score, session_accuracy, games_in_session) " +
+        "SELECT user_id, ?, ?, ? FROM users WHERE username = ?";
+    
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    // The batch being written right now, still visible to readers until it commits
+    private Map<String, PendingWrite> inFlight = Collections.emptyMap();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+    private final Path spillFile;
+    private final LogStore store;
+    private final LocalPlayerRepository local;
+    
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong registrationConflicts = new AtomicLong();
+    private final AtomicLong replaysSkipped = new AtomicLong();
+    private volatile boolean pruned = false;
+    private volatile boolean closing = false;
+    // Without a store: the spill file was re-queued and still holds writes now in MySQL
+    private volatile boolean spillLoaded = false;
+    
+    private PersistenceQueue() {
+        spillFile = Paths.get(System.getProperty("user.home"), ".heartgame_pending.txt");
+        local = LocalPlayerRepository.getInstance();
+        store = LogStore.getInstance();
+        loadOutbox();
+        loadSpilled();
+        if (store != null) {
+            // Must finish before the store closes, which its own hook does
+            store.beforeClose(this::shutdown);
+        } else {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "persistence-shutdown"));
+        }
+        MetricsRegistry.getInstance().gauge("persistence.pending", this::getPendingCount);
+    }
+    
+    public static synchronized PersistenceQueue getInstance() {
+        if (instance == null) {
+            instance = new PersistenceQueue();
+        }
+        return instance;
+    }
+    
+    /**
+     * Queue the player's totals and count one more game played.
+     */
+    public void savePlayer(Player player) {
+        PlayerCache.getInstance().put(player);
+        saveLocally(() -> local.saveStats(player));
+        synchronized (pending) {
+            PendingWrite write = pendingFor(player.getUsername());
+            write.hasStats = true;
+            write.totalScore = player.getScore();
+            write.correctAnswers = player.getCorrectAnswers();
+            write.totalAttempts = player.getTotalAttempts();
+            write.gamesPlayed++;
+            persist(player.getUsername());
+        }
+        scheduleFlush(FLUSH_DELAY_MS);
+    }
+    
+    public void saveSession(String username, int sessionScore, double sessionAccuracy, int gamesInSession) {
+        saveLocally(() -> local.saveSession(username, sessionScore, sessionAccuracy, gamesInSession));
+        synchronized (pending) {
+            PendingWrite write = pendingFor(username);
+            write.sessions.add(new SessionRecord(sessionScore, sessionAccuracy, gamesInSession));
+            write.bestSessionScore = Math.max(write.bestSessionScore, sessionScore);
+            persist(username);
+        }
+        scheduleFlush(FLUSH_DELAY_MS);
+    }
+    
+    /**
+     * Queue an account created in the local store while MySQL was down.
+     */
+    public void register(String username, String passwordHash) {
+        synchronized (pending) {
+            pendingFor(username).passwordHash = passwordHash;
+            persist(username);
+        }
+        scheduleFlush(FLUSH_DELAY_MS);
+    }
+    
+    public boolean isRegistrationPending(String username) {
+        synchronized (pending) {
+            PendingWrite write = pending.get(username);
+            PendingWrite flushing = inFlight.get(username);
+            return (write != null && write.registers()) || (flushing != null && flushing.registers());
+        }
+    }
+    
+    private void saveLocally(Runnable task) {
+        if (!local.isAvailable()) return;
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.error("Error saving player data locally: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Keep what is queued for the player, in flight or not, in the local
+     * store. Caller holds the pending lock.
+     */
+    private void persist(String username) {
+        if (store == null) return;
+        List<String> lines = new ArrayList<>();
+        PendingWrite flushing = inFlight.get(username);
+        if (flushing != null) lines.addAll(lines(flushing));
+        PendingWrite queued = pending.get(username);
+        if (queued != null) lines.addAll(lines(queued));
+        try {
+            if (lines.isEmpty()) {
+                store.delete(OUTBOX_PREFIX + username);
+            } else {
+                store.putIfChanged(OUTBOX_PREFIX + username,
+                    String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (RuntimeException e) {
+            Log.error("Error keeping queued player data locally: " + e.getMessage());
+        }
+    }
+    
+    private PendingWrite pendingFor(String username) {
+        enqueued.incrementAndGet();
+        PendingWrite write = pending.get(username);
+        if (write == null || write.sealed) {
+            // A sealed write may already be in MySQL, so it can't take more
+            PendingWrite older = write;
+            write = new PendingWrite(username);
+            if (older != null) write.runAfter(older);
+            pending.put(username, write);
+        } else {
+            coalesced.incrementAndGet();
+        }
+        return write;
+    }
+    
+    /**
+     * Stats not yet written to MySQL, so a reload right after game over
+     * sees the player's latest progress. Returns null if nothing is pending.
+     */
+    public Player getPendingPlayer(String username) {
+        synchronized (pending) {
+            PendingWrite write = pending.get(username) != null ? pending.get(username).latestStats() : null;
+            if (write == null && inFlight.get(username) != null) {
+                write = inFlight.get(username).latestStats();
+            }
+            if (write == null) return null;
+            Player player = new Player(username);
+            player.setStats(write.totalScore, write.correctAnswers, write.totalAttempts);
+            return player;
+        }
+    }
+    
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+    
+    private void scheduleFlush(long delayMs) {
+        // Once closing, shutdown() writes whatever is left itself
+        if (closing) return;
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                BackgroundExecutor.getInstance().schedule(() -> {
+                    flushScheduled.set(false);
+                    if (!flush()) {
+                        scheduleFlush(RETRY_DELAY_MS);
+                    }
+                }, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // The executor has shut down first; shutdown() will flush
+                flushScheduled.set(false);
+            }
+        }
+    }
+    
+    /**
+     * Write everything pending in one transaction. Returns false if it had to
+     * be put back because the database couldn't take it.
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            List<PendingWrite> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) return true;
+                batch = new ArrayList<>(pending.values());
+                inFlight = new LinkedHashMap<>(pending);
+                pending.clear();
+            }
+            
+            long start = System.nanoTime();
+            try {
+                write(batch);
+                FLUSH_LATENCY.recordSince(start);
+                flushes.incrementAndGet();
+                if (spillLoaded) {
+                    forgetSpilled();
+                }
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                Log.error("Error saving player data, will retry: " + e.getMessage());
+                requeue(batch);
+                return false;
+            } finally {
+                synchronized (pending) {
+                    inFlight = Collections.emptyMap();
+                    for (PendingWrite write : batch) {
+                        persist(write.username);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void write(List<PendingWrite> batch) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        if (conn == null) throw new SQLException("no database connection");
+        // The writes need applied_writes and the ranked table; retried here if startup couldn't migrate
+        if (!SchemaMigrator.migrate(conn)) {
+            conn.close();
+            throw new SQLException("database schema is not up to date");
+        }
+        
+        try (Connection c = conn;
+             PreparedStatement stats = c.prepareStatement(UPDATE_STATS_SQL);
+             PreparedStatement sessions = c.prepareStatement(INSERT_SESSION_SQL);
+             LeaderboardTable.Maintenance leaderboard = LeaderboardTable.DEFAULT.maintenance(c)) {
+            
+            c.setAutoCommit(false);
+            int statRows = 0;
+            int sessionRows = 0;
+            Set<String> conflicts;
+            List<PendingWrite> writes = new ArrayList<>();
+            try {
+                conflicts = registerUsers(c, batch);
+                for (PendingWrite player : batch) {
+                    if (conflicts.contains(player.username)) continue;
+                    for (PendingWrite write : player.inOrder()) {
+                        if (claim(c, write)) writes.add(write);
+                    }
+                }
+            } catch (SQLException e) {
+                c.rollback();
+                c.setAutoCommit(true);
+                throw e;
+            }
+            Set<String> onLeaderboard = new HashSet<>();
+            for (PendingWrite write : writes) {
+                if (write.hasStats) {
+                    stats.setInt(1, write.totalScore);
+                    stats.setInt(2, write.correctAnswers);
+                    stats.setInt(3, write.totalAttempts);
+                    stats.setInt(4, write.gamesPlayed);
+                    stats.setInt(5, write.bestSessionScore);
+                    stats.setString(6, write.username);
+                    stats.addBatch();
+                    statRows++;
+                }
+                if ((write.hasStats || write.passwordHash != null) && onLeaderboard.add(write.username)) {
+                    leaderboard.add(write.username);
+                }
+                for (SessionRecord session : write.sessions) {
+                    sessions.setInt(1, session.score);
+                    sessions.setDouble(2, session.accuracy);
+                    sessions.setInt(3, session.games);
+                    sessions.setString(4, write.username);
+                    sessions.addBatch();
+                    sessionRows++;
+                }
+            }
+            
+            try {
+                if (statRows > 0) stats.executeBatch();
+                leaderboard.execute();
+                if (sessionRows > 0) sessions.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+            rowsWritten.addAndGet(statRows + sessionRows);
+            prune(c);
+        }
+    }
+    
+    /**
+     * Record the write as applied. Returns false if it already was, by an
+     * earlier run that crashed before forgetting it. Part of the caller's
+     * transaction.
+     */
+    private boolean claim(Connection c, PendingWrite write) throws SQLException {
+        try (PreparedStatement stmt = c.prepareStatement(CLAIM_WRITE_SQL)) {
+            stmt.setLong(1, write.writeId);
+            if (stmt.executeUpdate() > 0) return true;
+        }
+        replaysSkipped.incrementAndGet();
+        Log.info("💾 Skipped a queued write for {} that was already applied", write.username);
+        return false;
+    }
+    
+    /**
+     * Forget old write ids, once per run. A queued write is replayed long
+     * before then.
+     */
+    private void prune(Connection c) {
+        if (pruned) return;
+        pruned = true;
+        try (Statement stmt = c.createStatement()) {
+            stmt.executeUpdate(PRUNE_WRITES_SQL);
+        } catch (SQLException e) {
+            Log.warn("⚠️ Could not prune applied_writes: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Create the accounts registered offline. Returns the names someone else
+     * took in MySQL meanwhile; their queued writes would land on the wrong
+     * account, so they are dropped.
+     */
+    private Set<String> registerUsers(Connection c, List<PendingWrite> batch) throws SQLException {
+        Set<String> conflicts = new HashSet<>();
+        for (PendingWrite player : batch) {
+            String passwordHash = null;
+            for (PendingWrite write : player.inOrder()) {
+                if (write.passwordHash != null) passwordHash = write.passwordHash;
+            }
+            if (passwordHash == null) continue;
+            try (PreparedStatement user = c.prepareStatement(INSERT_USER_SQL);
+                 PreparedStatement initialStats = c.prepareStatement(INSERT_INITIAL_STATS_SQL);
+                 PreparedStatement owner = c.prepareStatement(OWNER_SQL)) {
+                
+                user.setString(1, player.username);
+                user.setString(2, passwordHash);
+                user.executeUpdate();
+                
+                initialStats.setString(1, player.username);
+                initialStats.setString(2, passwordHash);
+                initialStats.executeUpdate();
+                
+                owner.setString(1, player.username);
+                ResultSet rs = owner.executeQuery();
+                if (!rs.next() || !passwordHash.equals(rs.getString(1))) {
+                    conflicts.add(player.username);
+                    registrationConflicts.incrementAndGet();
+                    Log.warn("⚠️ {} was registered offline but the name is taken in MySQL; "
+                             + "its local progress was not uploaded", player.username);
+                }
+            }
+        }
+        return conflicts;
+    }
+    
+    /**
+     * Put a failed batch back without losing anything queued in the meantime.
+     */
+    private void requeue(List<PendingWrite> batch) {
+        synchronized (pending) {
+            for (PendingWrite failed : batch) {
+                PendingWrite newer = pending.get(failed.username);
+                failed.sealed = true;
+                if (newer == null) {
+                    pending.put(failed.username, failed);
+                } else {
+                    newer.runAfter(failed);
+                }
+            }
+        }
+    }
+    
+    public void shutdown() {
+        closing = true;
+        // Wait out a flush in progress; if it fails its writes are pending again
+        synchronized (flushLock) {
+            if (getPendingCount() == 0) return;
+            Log.info("💾 Flushing " + getPendingCount() + " pending player write(s)...");
+            if (!flush()) {
+                if (store != null) {
+                    Log.info("💾 Database unavailable - " + getPendingCount()
+                             + " player write(s) stay queued in the local store");
+                } else {
+                    spill();
+                }
+            }
+        }
+    }
+    
+    /**
+     * One line per stats update, session or registration.
+     */
+    private static List<String> lines(PendingWrite player) {
+        List<String> lines = new ArrayList<>();
+        for (PendingWrite write : player.inOrder()) {
+            String username = escape(write.username);
+            lines.add("W|" + username + "|" + write.writeId);
+            if (write.passwordHash != null) {
+                lines.add("R|" + username + "|" + escape(write.passwordHash));
+            }
+            if (write.hasStats) {
+                lines.add("P|" + username + "|" + write.totalScore + "|" + write.correctAnswers
+                          + "|" + write.totalAttempts + "|" + write.gamesPlayed);
+            }
+            for (SessionRecord session : write.sessions) {
+                lines.add("S|" + username + "|" + session.score + "|" + session.accuracy
+                          + "|" + session.games);
+            }
+        }
+        return lines;
+    }
+    
+    /**
+     * Make a text field safe for a queued line: no '|' to split on and no
+     * line breaks.
+     */
+    private static String escape(String field) {
+        StringBuilder escaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '|': escaped.append("\\p"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+    
+    private static String unescape(String field) {
+        if (field.indexOf('\\') < 0) return field;
+        StringBuilder plain = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\') {
+                plain.append(c);
+                continue;
+            }
+            char next = ++i < field.length() ? field.charAt(i) : 0;
+            switch (next) {
+                case '\\': plain.append('\\'); break;
+                case 'p': plain.append('|'); break;
+                case 'n': plain.append('\n'); break;
+                case 'r': plain.append('\r'); break;
+                default: throw new IllegalArgumentException("bad escape");
+            }
+        }
+        return plain.toString();
+    }
+    
+    /**
+     * Split a queued line into its fields, unescaping the text ones, and
+     * check it has the fields its type needs and that the numbers are
+     * numbers. Throws IllegalArgumentException otherwise.
+     */
+    private static String[] parseLine(String line) {
+        String[] f = line.split("\\|", -1);
+        if (f.length < 2) throw new IllegalArgumentException("too few fields");
+        f[1] = unescape(f[1]);
+        try {
+            if (f[0].equals("W") && f.length == 3) {
+                Long.parseLong(f[2]);
+            } else if (f[0].equals("P") && f.length == 6) {
+                for (int i = 2; i < 6; i++) Integer.parseInt(f[i]);
+            } else if (f[0].equals("S") && f.length == 5) {
+                Integer.parseInt(f[2]);
+                Double.parseDouble(f[3]);
+                Integer.parseInt(f[4]);
+            } else if (f[0].equals("R") && f.length == 3) {
+                f[2] = unescape(f[2]);
+            } else {
+                throw new IllegalArgumentException("unknown record");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad number");
+        }
+        return f;
+    }
+    
+    /**
+     * Queue lines that all parsed. Caller holds the pending lock.
+     */
+    private void queueLines(List<String[]> lines) {
+        for (String[] f : lines) {
+            queueLine(f);
+        }
+    }
+    
+    private void queueLine(String[] f) {
+        if (f[0].equals("W")) {
+            // A new write; the player's lines so far belong to earlier ones
+            PendingWrite write = new PendingWrite(f[1], Long.parseLong(f[2]));
+            write.sealed = true;
+            PendingWrite previous = pending.put(f[1], write);
+            if (previous != null) write.runAfter(previous);
+        } else if (f[0].equals("P")) {
+            PendingWrite write = loaded(f[1]);
+            write.hasStats = true;
+            write.totalScore = Integer.parseInt(f[2]);
+            write.correctAnswers = Integer.parseInt(f[3]);
+            write.totalAttempts = Integer.parseInt(f[4]);
+            write.gamesPlayed += Integer.parseInt(f[5]);
+        } else if (f[0].equals("S")) {
+            PendingWrite write = loaded(f[1]);
+            int score = Integer.parseInt(f[2]);
+            write.sessions.add(new SessionRecord(score, Double.parseDouble(f[3]), Integer.parseInt(f[4])));
+            write.bestSessionScore = Math.max(write.bestSessionScore, score);
+        } else if (f[0].equals("R")) {
+            loaded(f[1]).passwordHash = f[2];
+        }
+    }
+    
+    /**
+     * The write the outbox lines being read belong to. Unlike pendingFor()
+     * it adds to a reloaded write; lines from before write ids get a new one.
+     */
+    private PendingWrite loaded(String username) {
+        PendingWrite write = pending.get(username);
+        return write != null ? write : pendingFor(username);
+    }
+    
+    private void spill() {
+        try {
+            int lines = writeSpill();
+            Log.info("💾 Database unavailable - kept " + lines + " write(s) in " + spillFile);
+        } catch (IOException e) {
+            Log.error("❌ Could not keep pending player data: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Replace the spill file with what is pending now, or delete it if
+     * nothing is. Pending always includes what was loaded from the file,
+     * so the file never holds a write twice. Returns the lines written.
+     */
+    private int writeSpill() throws IOException {
+        List<String> lines = new ArrayList<>();
+        synchronized (pending) {
+            for (PendingWrite write : pending.values()) {
+                lines.addAll(lines(write));
+            }
+        }
+        if (lines.isEmpty()) {
+            Files.deleteIfExists(spillFile);
+            return 0;
+        }
+        Path temp = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return lines.size();
+    }
+    
+    /**
+     * The loaded spill file's writes have reached MySQL: keep only what is
+     * still pending in it.
+     */
+    private void forgetSpilled() {
+        try {
+            writeSpill();
+            spillLoaded = false;
+        } catch (IOException e) {
+            Log.error("❌ Could not update " + spillFile + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Re-queue the spill file. Nothing is queued unless every line parses:
+     * a damaged file is moved aside for a look, rather than half-queued now
+     * and queued again next start.
+     */
+    private void loadSpilled() {
+        if (!Files.exists(spillFile)) return;
+        try {
+            List<String> lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+            List<String[]> parsed = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                try {
+                    parsed.add(parseLine(lines.get(i)));
+                } catch (IllegalArgumentException e) {
+                    Path unreadable = spillFile.resolveSibling(spillFile.getFileName() + ".unreadable");
+                    Files.move(spillFile, unreadable, StandardCopyOption.REPLACE_EXISTING);
+                    Log.error("❌ Line " + (i + 1) + " of " + spillFile + " is damaged (" + e.getMessage()
+                              + "); nothing was re-queued, the file is now " + unreadable);
+                    return;
+                }
+            }
+            synchronized (pending) {
+                queueLines(parsed);
+                // From now on the local store keeps them
+                for (String username : pending.keySet()) {
+                    persist(username);
+                }
+            }
+            if (store != null) {
+                Files.delete(spillFile);
+            } else {
+                // Without a store the file stays until the writes reach MySQL; see flush()
+                spillLoaded = true;
+            }
+            Log.info("💾 Re-queued " + lines.size() + " player write(s) from " + spillFile);
+            scheduleFlush(FLUSH_DELAY_MS);
+        } catch (IOException | RuntimeException e) {
+            Log.error("Could not read pending player data: " + e.getMessage());
+        }
+    }
+    
+    private void loadOutbox() {
+        if (store == null) return;
+        int players = 0;
+        synchronized (pending) {
+            for (String key : store.keysWithPrefix(OUTBOX_PREFIX)) {
+                byte[] queued = store.get(key);
+                if (queued == null) continue;
+                List<String[]> parsed = new ArrayList<>();
+                try {
+                    for (String line : new String(queued, StandardCharsets.UTF_8).split("\n")) {
+                        parsed.add(parseLine(line));
+                    }
+                } catch (IllegalArgumentException e) {
+                    Log.error("Could not read queued data in " + key + " (" + e.getMessage() + "): "
+                              + new String(queued, StandardCharsets.UTF_8));
+                    continue;
+                }
+                queueLines(parsed);
+                players++;
+            }
+        }
+        if (players > 0) {
+            Log.info("💾 Re-queued writes for " + players + " player(s) from the local store");
+            scheduleFlush(FLUSH_DELAY_MS);
+        }
+    }
+    
+    public String getStats() {
+        return String.format("pending=%d enqueued=%d coalesced=%d flushes=%d rows=%d failedFlushes=%d conflicts=%d replaysSkipped=%d",
+            getPendingCount(), enqueued.get(), coalesced.get(), flushes.get(),
+            rowsWritten.get(), failedFlushes.get(), registrationConflicts.get(), replaysSkipped.get());
+    }
+    
+    private static class PendingWrite {
+        final String username;
+        final long writeId;
+        // Tried before, or reloaded; new data goes into a write of its own
+        boolean sealed;
+        // This player's writes from before, each applied (or skipped) on its own first
+        List<PendingWrite> earlier = new ArrayList<>();
+        String passwordHash;
+        boolean hasStats = false;
+        int totalScore;
+        int correctAnswers;
+        int totalAttempts;
+        int gamesPlayed = 0;
+        int bestSessionScore = 0;
+        final List<SessionRecord> sessions = new ArrayList<>();
+        
+        PendingWrite(String username) {
+            this(username, ThreadLocalRandom.current().nextLong());
+        }
+        
+        PendingWrite(String username, long writeId) {
+            this.username = username;
+            this.writeId = writeId;
+        }
+        
+        /**
+         * Queue older, and whatever it was queued behind, ahead of this
+         * write. They aren't merged: older may have been applied already.
+         */
+        void runAfter(PendingWrite older) {
+            List<PendingWrite> merged = new ArrayList<>(older.earlier);
+            older.earlier = new ArrayList<>();
+            merged.add(older);
+            merged.addAll(earlier);
+            earlier = merged;
+        }
+        
+        List<PendingWrite> inOrder() {
+            List<PendingWrite> writes = new ArrayList<>(earlier);
+            writes.add(this);
+            return writes;
+        }
+        
+        /**
+         * The newest write with stats, or null.
+         */
+        PendingWrite latestStats() {
+            if (hasStats) return this;
+            for (int i = earlier.size() - 1; i >= 0; i--) {
+                if (earlier.get(i).hasStats) return earlier.get(i);
+            }
+            return null;
+        }
+        
+        boolean registers() {
+            for (PendingWrite write : inOrder()) {
+                if (write.passwordHash != null) return true;
+            }
+            return false;
+        }
+    }
+    
+    private static class SessionRecord {
+        final int score;
+        final double accuracy;
+        final int games;
+        
+        SessionRecord(int score, double accuracy, int games) {
+            this.score = score;
+            this.accuracy = accuracy;
+            this.games = games;
+        }
+    }
+}
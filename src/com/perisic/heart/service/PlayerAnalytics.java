@@ -0,0 +1,503 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.events.GameEvent;
+import com.perisic.heart.events.GameEventDispatcher;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.MetricsRegistry;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Running answer statistics per player and for everyone together, kept up
+ * to date from AnswerSubmitted events: reaction-time quantiles, accuracy
+ * decayed towards recent answers, and streaks of correct answers.
+ *
+ * Players get dense ids from an open-addressing name table and their state
+ * lives in parallel primitive arrays, so an answer is a hash lookup and a
+ * few array writes. Each answer also rebuilds that player's Summary and
+ * publishes it to a concurrent map, so the game-over dialog and the
+ * leaderboard read finished numbers in O(1) without taking the lock. The
+ * saved players' summaries are worked out in the background at install.
+ *
+ * Reaction times go into log-linear millisecond buckets, 16 per power of
+ * two (about 6% precision) up to 65 s: 208 ints per player. A player's state
+ * is saved to the LogStore as "analytics:<name>" a couple of seconds after
+ * it changes, with the buckets written sparsely, and loaded the first time
+ * the player is seen, so nothing is ever recomputed from old answers.
+ */
+public class PlayerAnalytics implements GameEventDispatcher.GameEventListener {
+    private static PlayerAnalytics instance;
+    
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MILLIS = (1 << 16) - 1;
+    static final int BUCKETS = (16 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final byte FORMAT_VERSION = 1;
+    private static final String KEY_PREFIX = "analytics:";
+    private static final String GLOBAL_KEY = "analytics.all";
+    private static final int GLOBAL = 0;
+    
+    private final LogStore store;
+    private final double decay;
+    private final long flushMillis;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    // Held from snapshot to last put, so an older snapshot never lands after a newer one
+    private final Object flushLock = new Object();
+    
+    // Guarded by this; index 0 is everyone
+    private final NameIndex ids = new NameIndex();
+    private String[] names = new String[64];
+    private int[] answers = new int[64];
+    private int[] streak = new int[64];
+    private int[] bestStreak = new int[64];
+    private long[] reactionMillis = new long[64];
+    private double[] decayedAccuracy = new double[64];
+    private int[] histograms = new int[64 * BUCKETS];
+    private Summary[] summaries = new Summary[64];
+    private int players = 1;
+    private final BitSet dirty = new BitSet();
+    
+    // Everyone's latest Summary by name, for readers on the EDT
+    private final Map<String, Summary> published = new ConcurrentHashMap<>();
+    
+    /**
+     * One player's numbers as of their last answer. Immutable.
+     */
+    public static final class Summary {
+        public static final Summary EMPTY = new Summary(0, 0, 0, 0, 0, 0, 0);
+        
+        private final int answers;
+        private final int medianMillis;
+        private final int p90Millis;
+        private final int meanMillis;
+        private final double decayedAccuracy;
+        private final int streak;
+        private final int bestStreak;
+        
+        Summary(int answers, int medianMillis, int p90Millis, int meanMillis,
+                double decayedAccuracy, int streak, int bestStreak) {
+            this.answers = answers;
+            this.medianMillis = medianMillis;
+            this.p90Millis = p90Millis;
+            this.meanMillis = meanMillis;
+            this.decayedAccuracy = decayedAccuracy;
+            this.streak = streak;
+            this.bestStreak = bestStreak;
+        }
+        
+        public int getAnswers() { return answers; }
+        public int getMedianMillis() { return medianMillis; }
+        public int getP90Millis() { return p90Millis; }
+        public int getMeanMillis() { return meanMillis; }
+        /** Percent correct, each answer weighing heart.analytics.decay more than the one before. */
+        public double getDecayedAccuracy() { return decayedAccuracy; }
+        public int getStreak() { return streak; }
+        public int getBestStreak() { return bestStreak; }
+    }
+    
+    public PlayerAnalytics(LogStore store, double decay, long flushMillis) {
+        this.store = store;
+        this.decay = decay;
+        this.flushMillis = flushMillis;
+        names[GLOBAL] = "";
+        summaries[GLOBAL] = Summary.EMPTY;
+        load(GLOBAL, GLOBAL_KEY);
+    }
+    
+    public static synchronized PlayerAnalytics getInstance() {
+        if (instance == null) {
+            instance = new PlayerAnalytics(LogStore.getInstance(),
+                Double.parseDouble(System.getProperty("heart.analytics.decay", "0.1")),
+                Long.getLong("heart.analytics.flushMs", 2000));
+            PlayerAnalytics analytics = instance;
+            MetricsRegistry.getInstance().gauge("analytics.reactionP50Ms", () -> analytics.getGlobal().getMedianMillis());
+            MetricsRegistry.getInstance().gauge("analytics.reactionP90Ms", () -> analytics.getGlobal().getP90Millis());
+            MetricsRegistry.getInstance().gauge("analytics.players", analytics::getPlayerCount);
+        }
+        return instance;
+    }
+    
+    /**
+     * Start following the answers GameService publishes.
+     */
+    public static void install() {
+        PlayerAnalytics analytics = getInstance();
+        GameEventDispatcher.getInstance().addListener(analytics);
+        BackgroundExecutor.getInstance().execute(analytics::preload);
+    }
+    
+    /**
+     * Count one answer. reactionNanos <= 0 means the time isn't known; the
+     * answer still counts for accuracy and streaks.
+     */
+    public void record(String username, boolean correct, long reactionNanos) {
+        synchronized (this) {
+            int id = idFor(username);
+            long millis = reactionNanos > 0 ? Math.min(MAX_MILLIS, TimeUnit.NANOSECONDS.toMillis(reactionNanos)) : -1;
+            update(id, correct, millis);
+            update(GLOBAL, correct, millis);
+        }
+        scheduleFlush();
+    }
+    
+    private void update(int id, boolean correct, long millis) {
+        double outcome = correct ? 100.0 : 0.0;
+        decayedAccuracy[id] = answers[id] == 0 ? outcome : decay * outcome + (1 - decay) * decayedAccuracy[id];
+        answers[id]++;
+        if (correct) {
+            streak[id]++;
+            bestStreak[id] = Math.max(bestStreak[id], streak[id]);
+        } else {
+            streak[id] = 0;
+        }
+        if (millis >= 0) {
+            histograms[id * BUCKETS + bucketOf((int) millis)]++;
+            reactionMillis[id] += millis;
+        }
+        summaries[id] = summarize(id);
+        publish(id);
+        dirty.set(id);
+    }
+    
+    private void publish(int id) {
+        if (id != GLOBAL) published.put(names[id], summaries[id]);
+    }
+    
+    private Summary summarize(int id) {
+        return summarize(histograms, id * BUCKETS, answers[id], reactionMillis[id],
+                         decayedAccuracy[id], streak[id], bestStreak[id]);
+    }
+    
+    private static Summary summarize(int[] histograms, int base, int answers, long reactionMillis,
+                                     double decayedAccuracy, int streak, int bestStreak) {
+        long timed = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            timed += histograms[base + b];
+        }
+        int median = 0;
+        int p90 = 0;
+        if (timed > 0) {
+            long seen = 0;
+            for (int b = 0; b < BUCKETS && p90 == 0; b++) {
+                seen += histograms[base + b];
+                if (median == 0 && seen * 2 >= timed) median = Math.max(1, valueOf(b));
+                if (seen * 10 >= timed * 9) p90 = Math.max(1, valueOf(b));
+            }
+        }
+        int mean = timed > 0 ? (int) (reactionMillis / timed) : 0;
+        return new Summary(answers, median, p90, mean, decayedAccuracy, streak, bestStreak);
+    }
+    
+    private static int bucketOf(int millis) {
+        if (millis < SUB_BUCKETS) return millis;
+        int exponent = 31 - Integer.numberOfLeadingZeros(millis);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (millis >>> shift) - SUB_BUCKETS;
+        return ((shift + 1) << SUB_BUCKET_BITS) | sub;
+    }
+    
+    /**
+     * Middle of the range of milliseconds a bucket covers.
+     */
+    private static int valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        int sub = bucket & (SUB_BUCKETS - 1);
+        int lower = (SUB_BUCKETS + sub) << shift;
+        return lower + ((1 << shift) >>> 1);
+    }
+    
+    /**
+     * The player's id. A player seen for the first time gets a slot, filled
+     * from the store if an earlier run saved one. Caller holds the lock.
+     */
+    private int idFor(String username) {
+        int id = ids.get(username);
+        if (id >= 0) return id;
+        String key = KEY_PREFIX + username;
+        
+        id = players++;
+        if (id == names.length) grow();
+        ids.put(username, id);
+        names[id] = username;
+        summaries[id] = Summary.EMPTY;
+        load(id, key);
+        return id;
+    }
+    
+    private void grow() {
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        answers = Arrays.copyOf(answers, capacity);
+        streak = Arrays.copyOf(streak, capacity);
+        bestStreak = Arrays.copyOf(bestStreak, capacity);
+        reactionMillis = Arrays.copyOf(reactionMillis, capacity);
+        decayedAccuracy = Arrays.copyOf(decayedAccuracy, capacity);
+        histograms = Arrays.copyOf(histograms, capacity * BUCKETS);
+        summaries = Arrays.copyOf(summaries, capacity);
+    }
+    
+    /**
+     * The player's numbers, or Summary.EMPTY if they have never answered.
+     * Never blocks, so it is safe to call while painting; a saved player
+     * reads as EMPTY until the preload has reached them.
+     */
+    public Summary getSummary(String username) {
+        return published.getOrDefault(username, Summary.EMPTY);
+    }
+    
+    /**
+     * Everyone's answers together.
+     */
+    public synchronized Summary getGlobal() {
+        return summaries[GLOBAL];
+    }
+    
+    public synchronized int getPlayerCount() {
+        return players - 1;
+    }
+    
+    @Override
+    public void onAnswerSubmitted(GameEvent.AnswerSubmitted event) {
+        record(event.player.getUsername(), event.correct, event.reactionNanos);
+    }
+    
+    @Override
+    public void onSessionEnded(GameEvent.SessionEnded event) {
+        flush();
+    }
+    
+    @Override
+    public void onGameLoaded(GameEvent.GameLoaded event) {}
+    
+    @Override
+    public void onPlayerLoggedIn(GameEvent.PlayerLoggedIn event) {}
+    
+    @Override
+    public void onScoreUpdated(GameEvent.ScoreUpdated event) {}
+    
+    // ---- Persistence ----
+    
+    private void scheduleFlush() {
+        if (store != null && flushScheduled.compareAndSet(false, true)) {
+            BackgroundExecutor.getInstance().schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, flushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Save every player who answered since the last flush. Answers keep
+     * being recorded while the store is written; only flushes wait for
+     * each other.
+     */
+    public void flush() {
+        if (store == null) return;
+        synchronized (flushLock) {
+            List<String> keys = new ArrayList<>();
+            List<byte[]> values = new ArrayList<>();
+            synchronized (this) {
+                for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+                    keys.add(id == GLOBAL ? GLOBAL_KEY : KEY_PREFIX + names[id]);
+                    values.add(encode(id));
+                }
+                dirty.clear();
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                store.put(keys.get(i), values.get(i));
+            }
+        }
+    }
+    
+    /**
+     * Version, counters, then the non-empty buckets as (gap from the last
+     * one, count) pairs, all as varints: about 60 bytes for a typical player.
+     */
+    private byte[] encode(int id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(FORMAT_VERSION);
+        writeVarLong(out, answers[id]);
+        writeVarLong(out, streak[id]);
+        writeVarLong(out, bestStreak[id]);
+        writeVarLong(out, reactionMillis[id]);
+        writeVarLong(out, Double.doubleToLongBits(decayedAccuracy[id]));
+        int base = id * BUCKETS;
+        int used = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            if (histograms[base + b] != 0) used++;
+        }
+        writeVarLong(out, used);
+        int last = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            if (histograms[base + b] == 0) continue;
+            writeVarLong(out, b - last);
+            writeVarLong(out, histograms[base + b]);
+            last = b;
+        }
+        return out.toByteArray();
+    }
+    
+    private void load(int id, String key) {
+        byte[] value = store != null ? store.get(key) : null;
+        if (value == null) return;
+        try {
+            Saved saved = Saved.decode(value);
+            if (saved == null) {
+                Log.warn("⚠️ Ignoring saved analytics for {} in an unknown format", key);
+                return;
+            }
+            answers[id] = saved.answers;
+            streak[id] = saved.streak;
+            bestStreak[id] = saved.bestStreak;
+            reactionMillis[id] = saved.reactionMillis;
+            decayedAccuracy[id] = saved.decayedAccuracy;
+            System.arraycopy(saved.histogram, 0, histograms, id * BUCKETS, BUCKETS);
+            summaries[id] = summarize(id);
+            publish(id);
+        } catch (RuntimeException e) {
+            Log.error("Error reading saved analytics for " + key + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Publish the summary of every player saved by an earlier run, without
+     * giving them slots: those are only taken by players who answer.
+     */
+    private void preload() {
+        if (store == null) return;
+        int loaded = 0;
+        for (String key : store.keysWithPrefix(KEY_PREFIX)) {
+            String username = key.substring(KEY_PREFIX.length());
+            byte[] value = store.get(key);
+            if (value == null || published.containsKey(username)) continue;
+            try {
+                Saved saved = Saved.decode(value);
+                if (saved == null) continue;
+                // An answer since the containsKey() check has published newer numbers
+                published.putIfAbsent(username, saved.summarize());
+                loaded++;
+            } catch (RuntimeException e) {
+                Log.error("Error reading saved analytics for " + key + ": " + e.getMessage());
+            }
+        }
+        Log.info("📈 Loaded reaction times for {} player(s)", loaded);
+    }
+    
+    /**
+     * One player's state as read back from the store.
+     */
+    private static final class Saved {
+        int answers;
+        int streak;
+        int bestStreak;
+        long reactionMillis;
+        double decayedAccuracy;
+        final int[] histogram = new int[BUCKETS];
+        
+        /**
+         * Null for an unknown format version. Throws on damaged data,
+         * including buckets out of range.
+         */
+        static Saved decode(byte[] value) {
+            ByteBuffer in = ByteBuffer.wrap(value);
+            if (in.get() != FORMAT_VERSION) return null;
+            Saved saved = new Saved();
+            saved.answers = (int) readVarLong(in);
+            saved.streak = (int) readVarLong(in);
+            saved.bestStreak = (int) readVarLong(in);
+            saved.reactionMillis = readVarLong(in);
+            saved.decayedAccuracy = Double.longBitsToDouble(readVarLong(in));
+            int used = (int) readVarLong(in);
+            long bucket = 0;
+            for (int i = 0; i < used; i++) {
+                bucket += readVarLong(in);
+                if (bucket < 0 || bucket >= BUCKETS) {
+                    throw new IllegalArgumentException("bucket " + bucket + " out of range");
+                }
+                saved.histogram[(int) bucket] = (int) readVarLong(in);
+            }
+            return saved;
+        }
+        
+        Summary summarize() {
+            return PlayerAnalytics.summarize(histogram, 0, answers, reactionMillis,
+                                             decayedAccuracy, streak, bestStreak);
+        }
+    }
+    
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+    
+    /**
+     * Username to id, open addressing with linear probing. No boxing, no
+     * entry objects.
+     */
+    private static final class NameIndex {
+        private String[] keys = new String[128];
+        private int[] values = new int[128];
+        private int size = 0;
+        
+        int get(String key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key.hashCode()) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot].equals(key)) return values[slot];
+            }
+            return -1;
+        }
+        
+        void put(String key, int value) {
+            if ((size + 1) * 2 > keys.length) rehash();
+            int mask = keys.length - 1;
+            int slot = mix(key.hashCode()) & mask;
+            while (keys[slot] != null) {
+                if (keys[slot].equals(key)) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+        
+        private void rehash() {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) put(oldKeys[i], oldValues[i]);
+            }
+        }
+        
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
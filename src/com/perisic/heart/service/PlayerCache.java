@@ -0,0 +1,118 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.Player;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recently loaded or saved player stats, so a replay from the game-over
+ * dialog doesn't go back to MySQL.
+ *
+ * Entries are snapshots: callers always get a fresh Player and changing it
+ * doesn't touch the cache. Every save goes through put(), so an entry is
+ * never older than this process's last write. Entries expire after
+ * heart.playerCache.ttlSeconds (default 300) to pick up changes made
+ * elsewhere, and the least recently used are dropped beyond
+ * heart.playerCache.size (default 1000).
+ */
+public class PlayerCache {
+    private static PlayerCache instance;
+    
+    private static final class Snapshot {
+        final int score;
+        final int correct;
+        final int attempts;
+        final long storedAtNanos;
+        
+        Snapshot(Player player) {
+            this.score = player.getScore();
+            this.correct = player.getCorrectAnswers();
+            this.attempts = player.getTotalAttempts();
+            this.storedAtNanos = System.nanoTime();
+        }
+    }
+    
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, Snapshot> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    
+    private PlayerCache() {
+        this.maxSize = Integer.getInteger("heart.playerCache.size", 1000);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Long.getLong("heart.playerCache.ttlSeconds", 300));
+        this.entries = new LinkedHashMap<String, Snapshot>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return size() > maxSize;
+            }
+        };
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("playerCache.size", this::size);
+        metrics.gauge("playerCache.hitRate", this::getHitRate);
+    }
+    
+    public static synchronized PlayerCache getInstance() {
+        if (instance == null) {
+            instance = new PlayerCache();
+        }
+        return instance;
+    }
+    
+    /**
+     * A copy of the cached player, or null if it isn't cached or has expired.
+     */
+    public Player get(String username) {
+        Snapshot snapshot;
+        synchronized (entries) {
+            snapshot = entries.get(username);
+            if (snapshot != null && System.nanoTime() - snapshot.storedAtNanos > ttlNanos) {
+                entries.remove(username);
+                expired.incrementAndGet();
+                snapshot = null;
+            }
+        }
+        if (snapshot == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        Player player = new Player(username);
+        player.setStats(snapshot.score, snapshot.correct, snapshot.attempts);
+        return player;
+    }
+    
+    public void put(Player player) {
+        Snapshot snapshot = new Snapshot(player);
+        synchronized (entries) {
+            entries.put(player.getUsername(), snapshot);
+        }
+    }
+    
+    public void invalidate(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+        }
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : h * 100.0 / total;
+    }
+    
+    public String getStats() {
+        return String.format("size=%d/%d hits=%d misses=%d expired=%d hitRate=%.1f%%",
+            size(), maxSize, hits.get(), misses.get(), expired.get(), getHitRate());
+    }
+}
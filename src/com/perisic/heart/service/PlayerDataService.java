@@ -1,12 +1,13 @@
 package com.perisic.heart.service;
 
+import com.perisic.heart.log.Log;
 import com.perisic.heart.model.Player;
-import com.perisic.heart.database.DatabaseConnection;
-import java.sql.*;
 
 public class PlayerDataService {
     private static PlayerDataService instance;
     
+    private final PlayerRepository repository = FallbackPlayerRepository.getInstance();
+    
     private PlayerDataService() {}
     
     public static PlayerDataService getInstance() {
@@ -17,98 +18,40 @@ public class PlayerDataService {
     }
     
     public Player loadPlayer(String username) {
-        String sql = "SELECT ps.total_score, ps.correct_answers, ps.total_attempts " +
-                     "FROM users u JOIN player_stats ps ON u.user_id = ps.user_id " +
-                     "WHERE u.username = ?";
+        // Progress that is still queued for writing is newer than the database
+        Player pending = PersistenceQueue.getInstance().getPendingPlayer(username);
+        if (pending != null) {
+            return pending;
+        }
+        
+        // Stats loaded at login or saved since, e.g. when replaying from the game-over dialog
+        PlayerCache cache = PlayerCache.getInstance();
+        Player cached = cache.get(username);
+        if (cached != null) {
+            return cached;
+        }
         
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                Player player = new Player(username);
-                player.setStats(
-                    rs.getInt("total_score"),
-                    rs.getInt("correct_answers"),
-                    rs.getInt("total_attempts")
-                );
+        try {
+            Player player = repository.loadPlayer(username);
+            if (player != null) {
+                cache.put(player);
                 return player;
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error loading player: " + e.getMessage());
+        } catch (PlayerRepository.UnavailableException e) {
+            Log.error("Error loading player: " + e.getMessage());
         }
         
         return new Player(username);
     }
     
+    /**
+     * Queued for MySQL and kept in the local store right away.
+     */
     public void savePlayer(Player player) {
-        String sql = "UPDATE player_stats ps " +
-                     "JOIN users u ON ps.user_id = u.user_id " +
-                     "SET ps.total_score = ?, " +
-                     "    ps.correct_answers = ?, " +
-                     "    ps.total_attempts = ?, " +
-                     "    ps.games_played = ps.games_played + 1, " +
-                     "    ps.last_played = CURRENT_TIMESTAMP " +
-                     "WHERE u.username = ?";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, player.getScore());
-            stmt.setInt(2, player.getCorrectAnswers());
-            stmt.setInt(3, player.getTotalAttempts());
-            stmt.setString(4, player.getUsername());
-            
-            stmt.executeUpdate();
-            
-        } catch (SQLException e) {
-            System.err.println("Error saving player: " + e.getMessage());
-            e.printStackTrace();
-        }
+        repository.saveStats(player);
     }
     
     public void saveSession(String username, int sessionScore, double sessionAccuracy, int gamesInSession) {
-        String sql = "INSERT INTO game_sessions " +
-                     "(user_id, session_score, session_accuracy, games_in_session) " +
-                     "SELECT user_id, ?, ?, ? FROM users WHERE username = ?";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, sessionScore);
-            stmt.setDouble(2, sessionAccuracy);
-            stmt.setInt(3, gamesInSession);
-            stmt.setString(4, username);
-            
-            stmt.executeUpdate();
-            
-            updateBestSession(username, sessionScore);
-            
-        } catch (SQLException e) {
-            System.err.println("Error saving session: " + e.getMessage());
-        }
-    }
-    
-    private void updateBestSession(String username, int sessionScore) {
-        String sql = "UPDATE player_stats ps " +
-                     "JOIN users u ON ps.user_id = u.user_id " +
-                     "SET ps.best_session_score = ? " +
-                     "WHERE u.username = ? AND ps.best_session_score < ?";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, sessionScore);
-            stmt.setString(2, username);
-            stmt.setInt(3, sessionScore);
-            
-            stmt.executeUpdate();
-            
-        } catch (SQLException e) {
-            System.err.println("Error updating best session: " + e.getMessage());
-        }
+        repository.saveSession(username, sessionScore, sessionAccuracy, gamesInSession);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.model.LeaderboardEntry;
+import com.perisic.heart.model.Player;
+import java.util.List;
+
+/**
+ * Where accounts, player stats and the leaderboard are kept: MySQL, the
+ * local store, or MySQL with the local store standing in while it's down.
+ *
+ * Methods throw UnavailableException when the backing store can't be
+ * reached at all, so callers can tell "no such player" from "don't know".
+ */
+public interface PlayerRepository {
+    
+    /**
+     * Returns false if the username is taken.
+     */
+    boolean createUser(String username, String passwordHash);
+    
+    /**
+     * The player with their stats, or null if the username or password is wrong.
+     */
+    Player authenticate(String username, String passwordHash);
+    
+    /**
+     * The player's stats, or null if there is no such player.
+     */
+    Player loadPlayer(String username);
+    
+    /**
+     * Store the player's totals and count one more game played.
+     */
+    void saveStats(Player player);
+    
+    void saveSession(String username, int sessionScore, double sessionAccuracy, int gamesInSession);
+    
+    /**
+     * The leaderboard, best first. A limit of 0 means everyone.
+     */
+    List<LeaderboardEntry> loadLeaderboard(int limit);
+    
+    class UnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        public UnavailableException(String message) {
+            super(message);
+        }
+        
+        public UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
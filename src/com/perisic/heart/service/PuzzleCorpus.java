@@ -0,0 +1,254 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.model.Game;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Append-only, memory-mapped store of fetched puzzles (image bytes + solution).
+ *
+ * File layout:
+ *   header  [int magic][int version][long end of data]
+ *   record  [int image length][int solution][32 byte SHA-256][image bytes]
+ *
+ * The offset index is rebuilt from the records when the file is opened.
+ * Images already in the corpus (same SHA-256) are not stored twice.
+ */
+public class PuzzleCorpus {
+    private static PuzzleCorpus instance;
+    
+    private static final int MAGIC = 0x48525443; // "HRTC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int HASH_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 8 + HASH_SIZE;
+    private static final long INITIAL_MAPPING = 16L * 1024 * 1024;
+    
+    private final Path file;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private long writePosition;
+    
+    private volatile long[] offsets = new long[256];
+    private volatile int count = 0;
+    private final Set<ByteBuffer> hashes = new HashSet<>();
+    private long duplicatesSkipped = 0;
+    
+    PuzzleCorpus(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        long existing = channel.size();
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(existing, INITIAL_MAPPING));
+        
+        if (existing < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, HEADER_SIZE);
+        }
+        this.writePosition = buffer.getLong(8);
+        rebuildIndex();
+    }
+    
+    public static synchronized PuzzleCorpus getInstance() {
+        if (instance == null) {
+            String path = System.getProperty("heart.corpus.file",
+                Paths.get(System.getProperty("user.home"), ".heartgame_corpus.dat").toString());
+            try {
+                instance = new PuzzleCorpus(Paths.get(path));
+                Runtime.getRuntime().addShutdownHook(new Thread(instance::close, "puzzle-corpus-close"));
+                Log.info("💾 Puzzle corpus opened: " + instance.size() + " puzzles in " + path);
+            } catch (IOException e) {
+                Log.error("❌ Could not open puzzle corpus: " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+    
+    private void rebuildIndex() {
+        long pos = HEADER_SIZE;
+        while (pos + RECORD_HEADER_SIZE <= writePosition) {
+            int length = buffer.getInt((int) pos);
+            if (length <= 0 || pos + RECORD_HEADER_SIZE + length > writePosition) {
+                Log.warn("⚠️ Corpus truncated at offset " + pos + ", ignoring the rest");
+                writePosition = pos;
+                buffer.putLong(8, writePosition);
+                break;
+            }
+            byte[] hash = new byte[HASH_SIZE];
+            buffer.get((int) pos + 8, hash);
+            hashes.add(ByteBuffer.wrap(hash));
+            addOffset(pos);
+            pos += RECORD_HEADER_SIZE + length;
+        }
+    }
+    
+    private void addOffset(long offset) {
+        long[] current = offsets;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            offsets = current;
+        }
+        current[count] = offset;
+        count = count + 1;
+    }
+    
+    /**
+     * Append a puzzle. Returns false if the same image is already stored.
+     */
+    public boolean append(byte[] imageBytes, int solution) {
+        return append(imageBytes, 0, imageBytes.length, solution);
+    }
+    
+    /**
+     * Append the image held in data[offset, offset + length).
+     */
+    public synchronized boolean append(byte[] data, int offset, int length, int solution) {
+        byte[] hash = sha256(data, offset, length);
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        if (hashes.contains(key)) {
+            duplicatesSkipped++;
+            return false;
+        }
+        
+        int recordSize = RECORD_HEADER_SIZE + length;
+        try {
+            ensureCapacity(writePosition + recordSize);
+        } catch (IOException e) {
+            Log.error("❌ Could not grow puzzle corpus: " + e.getMessage());
+            return false;
+        }
+        
+        MappedByteBuffer target = buffer;
+        int pos = (int) writePosition;
+        target.putInt(pos, length);
+        target.putInt(pos + 4, solution);
+        target.put(pos + 8, hash);
+        target.put(pos + RECORD_HEADER_SIZE, data, offset, length);
+        
+        // Publish the record only after its bytes are in place
+        writePosition += recordSize;
+        target.putLong(8, writePosition);
+        hashes.add(key);
+        addOffset(pos);
+        return true;
+    }
+    
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= buffer.capacity()) return;
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("corpus is full");
+        }
+        long newSize = buffer.capacity();
+        while (newSize < required) {
+            newSize *= 2;
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(newSize, Integer.MAX_VALUE));
+    }
+    
+    /**
+     * Decode a random stored puzzle straight from the mapped file.
+     */
+    public Game randomGame() {
+        int n = count;
+        if (n == 0) return null;
+        long offset = offsets[ThreadLocalRandom.current().nextInt(n)];
+        
+        ByteBuffer view = buffer.duplicate();
+        int pos = (int) offset;
+        int length = view.getInt(pos);
+        int solution = view.getInt(pos + 4);
+        view.position(pos + RECORD_HEADER_SIZE).limit(pos + RECORD_HEADER_SIZE + length);
+        
+        try {
+            ByteBuffer encoded = view.slice(); // Straight out of the mapped file, no copy
+            BufferedImage image = PuzzleCsv.readImage(new ByteBufferInputStream(view));
+            return image != null ? new Game(image, solution, encoded) : null;
+        } catch (IOException e) {
+            Log.error("❌ Could not decode corpus puzzle: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Copy of the stored image bytes of record i (0 <= i < size()).
+     */
+    public byte[] imageBytesAt(int i) {
+        int pos = (int) offsets[i];
+        ByteBuffer view = buffer.duplicate();
+        byte[] imageBytes = new byte[view.getInt(pos)];
+        view.get(pos + RECORD_HEADER_SIZE, imageBytes);
+        return imageBytes;
+    }
+    
+    public int solutionAt(int i) {
+        return buffer.getInt((int) offsets[i] + 4);
+    }
+    
+    public int size() { return count; }
+    public synchronized long getDuplicatesSkipped() { return duplicatesSkipped; }
+    public synchronized long getBytesUsed() { return writePosition; }
+    public Path getFile() { return file; }
+    
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            Log.info("Could not close puzzle corpus: " + e.getMessage());
+        }
+    }
+    
+    private static byte[] sha256(byte[] data, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, offset, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Reads a ByteBuffer region without copying it into a byte[] first.
+     */
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer source;
+        
+        ByteBufferInputStream(ByteBuffer source) {
+            this.source = source;
+        }
+        
+        @Override
+        public int read() {
+            return source.hasRemaining() ? (source.get() & 0xFF) : -1;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!source.hasRemaining()) return -1;
+            int n = Math.min(len, source.remaining());
+            source.get(b, off, n);
+            return n;
+        }
+        
+        @Override
+        public int available() {
+            return source.remaining();
+        }
+    }
+}
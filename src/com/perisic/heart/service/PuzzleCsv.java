@@ -0,0 +1,151 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.Game;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.imageio.ImageIO;
+
+/**
+ * Parses the heart API's "base64 image,solution" CSV body into a Game.
+ *
+ * Decoding works directly on the response buffer: the comma and solution are
+ * found in the raw bytes, and the Base64 image is decoded in place over the
+ * front of the same array before being handed to ImageIO. No Strings and no
+ * second copy of the payload are created.
+ */
+public class PuzzleCsv {
+    private static final int SKIP = -2;
+    private static final int INVALID = -1;
+    private static final int[] BASE64 = new int[256];
+    private static final LatencyHistogram DECODE_LATENCY = MetricsRegistry.getInstance().histogram("puzzle.decode");
+    
+    static {
+        Arrays.fill(BASE64, INVALID);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = i;
+        }
+        BASE64[' '] = SKIP;
+        BASE64['\t'] = SKIP;
+        BASE64['\r'] = SKIP;
+        BASE64['\n'] = SKIP;
+        
+        // Decode from memory instead of spilling every image to a temp file
+        ImageIO.setUseCache(false);
+    }
+    
+    private PuzzleCsv() {}
+    
+    /**
+     * Decode a response body, storing the image in the corpus when one is given.
+     * The body array is overwritten.
+     */
+    public static Game decode(byte[] body, PuzzleCorpus recordTo) {
+        if (body == null || body.length == 0) return null;
+        
+        int comma = lastIndexOf(body, (byte) ',');
+        if (comma < 0) {
+            Log.error("❌ Unexpected puzzle format");
+            return null;
+        }
+        
+        try {
+            int solution = parseSolution(body, comma + 1, body.length);
+            int imageLength = decodeBase64InPlace(body, 0, comma);
+            
+            BufferedImage image = readImage(new ByteArrayInputStream(body, 0, imageLength));
+            if (image == null) return null;
+            if (recordTo != null) {
+                recordTo.append(body, 0, imageLength, solution);
+            }
+            return new Game(image, solution, ByteBuffer.wrap(body, 0, imageLength));
+        } catch (IllegalArgumentException | IOException e) {
+            Log.error("❌ Could not decode puzzle: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Everything decode() does except ImageIO. Returns solution + image length.
+     * Used by the decode benchmark.
+     */
+    public static int parseOnly(byte[] body) {
+        int comma = lastIndexOf(body, (byte) ',');
+        return parseSolution(body, comma + 1, body.length) + decodeBase64InPlace(body, 0, comma);
+    }
+    
+    static BufferedImage readImage(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return ImageIO.read(in);
+        } finally {
+            DECODE_LATENCY.recordSince(start);
+        }
+    }
+    
+    private static int lastIndexOf(byte[] data, byte value) {
+        for (int i = data.length - 1; i >= 0; i--) {
+            if (data[i] == value) return i;
+        }
+        return -1;
+    }
+    
+    static int parseSolution(byte[] data, int from, int to) {
+        int i = from;
+        while (i < to && BASE64[data[i] & 0xFF] == SKIP) {
+            i++;
+        }
+        if (i == to || data[i] < '0' || data[i] > '9') {
+            throw new IllegalArgumentException("missing solution");
+        }
+        int value = 0;
+        while (i < to && data[i] >= '0' && data[i] <= '9') {
+            value = value * 10 + (data[i] - '0');
+            i++;
+        }
+        return value;
+    }
+    
+    /**
+     * Decodes Base64 in data[from, to) over the start of the same range and
+     * returns the decoded length. Safe because output never overtakes input.
+     */
+    static int decodeBase64InPlace(byte[] data, int from, int to) {
+        int out = from;
+        int acc = 0;
+        int bits = 0;
+        for (int i = from; i < to; i++) {
+            int c = data[i] & 0xFF;
+            if (c == '=') break;
+            int v = BASE64[c];
+            if (v < 0) {
+                if (v == SKIP) continue;
+                throw new IllegalArgumentException("illegal Base64 character " + c);
+            }
+            acc = (acc << 6) | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                data[out++] = (byte) (acc >> bits);
+            }
+        }
+        return out - from;
+    }
+    
+    /**
+     * Encode a puzzle the same way the heart API does.
+     */
+    static byte[] encode(byte[] imageBytes, int solution) {
+        String csv = Base64.getEncoder().encodeToString(imageBytes) + "," + solution;
+        return csv.getBytes(StandardCharsets.UTF_8);
+    }
+}
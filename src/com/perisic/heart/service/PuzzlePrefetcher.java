@@ -0,0 +1,179 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import com.perisic.heart.model.Game;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a bounded queue of already-decoded games topped up in the background,
+ * so the next puzzle is usually ready before the player answers.
+ *
+ * Queue size and producer count can be tuned per deployment with the
+ * heart.prefetch.capacity and heart.prefetch.producers system properties.
+ */
+public class PuzzlePrefetcher {
+    private static PuzzlePrefetcher instance;
+    
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final int DEFAULT_PRODUCERS = 2;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final LatencyHistogram FETCH_LATENCY = MetricsRegistry.getInstance().histogram("puzzle.fetch");
+    
+    private final GameSource source;
+    private final BlockingQueue<Game> queue;
+    private final int producerCount;
+    private final List<Thread> producers = new ArrayList<>();
+    private volatile boolean running = false;
+    private volatile Consumer<Game> preparer;
+    
+    // hit = game was ready, miss = caller had to wait, underflow = a take drained the queue
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong underflows = new AtomicLong();
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong fetchFailures = new AtomicLong();
+    
+    public PuzzlePrefetcher(GameSource source, int capacity, int producerCount) {
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.producerCount = Math.max(1, producerCount);
+    }
+    
+    public static synchronized PuzzlePrefetcher getInstance() {
+        if (instance == null) {
+            instance = new PuzzlePrefetcher(
+                new GameServer(),
+                Integer.getInteger("heart.prefetch.capacity", DEFAULT_CAPACITY),
+                Integer.getInteger("heart.prefetch.producers", DEFAULT_PRODUCERS)
+            );
+            instance.start();
+            MetricsRegistry metrics = MetricsRegistry.getInstance();
+            metrics.gauge("prefetch.queued", instance::getQueuedCount);
+            metrics.gauge("prefetch.hitRate", instance::getHitRate);
+            metrics.gauge("prefetch.fetchFailures", instance::getFetchFailures);
+        }
+        return instance;
+    }
+    
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        
+        for (int i = 0; i < producerCount; i++) {
+            Thread producer = new Thread(this::produce, "puzzle-prefetch-" + i);
+            producer.setDaemon(true);
+            producers.add(producer);
+            producer.start();
+        }
+        Log.info("📦 Puzzle prefetcher started (" + producerCount + " producers, capacity "
+                 + (queue.size() + queue.remainingCapacity()) + ")");
+    }
+    
+    public synchronized void stop() {
+        running = false;
+        for (Thread producer : producers) {
+            producer.interrupt();
+        }
+        producers.clear();
+        queue.clear();
+    }
+    
+    private void produce() {
+        while (running) {
+            try {
+                long start = System.nanoTime();
+                Game game = source.nextGame();
+                FETCH_LATENCY.recordSince(start);
+                if (game == null) {
+                    fetchFailures.incrementAndGet();
+                    Thread.sleep(RETRY_DELAY_MS);
+                    continue;
+                }
+                fetched.incrementAndGet();
+                prepare(game);
+                queue.put(game);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                fetchFailures.incrementAndGet();
+                Log.error("❌ Prefetch error: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Extra work done on each game by the producer thread before it is queued,
+     * e.g. converting the image for display so the EDT doesn't have to.
+     */
+    public void setPreparer(Consumer<Game> preparer) {
+        this.preparer = preparer;
+    }
+    
+    private void prepare(Game game) {
+        Consumer<Game> current = preparer;
+        if (current == null) return;
+        try {
+            current.accept(game);
+        } catch (Exception e) {
+            Log.warn("⚠️ Could not prepare game: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Non-blocking take. Returns null (and counts a miss) when nothing is ready.
+     */
+    public Game poll() {
+        Game game = queue.poll();
+        if (game == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        if (queue.isEmpty()) {
+            underflows.incrementAndGet();
+        }
+        return game;
+    }
+    
+    /**
+     * Blocking take used after a miss. Not counted again as a hit or miss.
+     */
+    public Game take(long timeout, TimeUnit unit) throws InterruptedException {
+        Game game = queue.poll(timeout, unit);
+        if (game != null && queue.isEmpty()) {
+            underflows.incrementAndGet();
+        }
+        return game;
+    }
+    
+    public int getQueuedCount() { return queue.size(); }
+    public int getCapacity() { return queue.size() + queue.remainingCapacity(); }
+    public int getProducerCount() { return producerCount; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getUnderflows() { return underflows.get(); }
+    public long getFetched() { return fetched.get(); }
+    public long getFetchFailures() { return fetchFailures.get(); }
+    
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        if (total == 0) return 0;
+        return (hits.get() * 100.0) / total;
+    }
+    
+    public String getStats() {
+        return String.format(
+            "queued=%d/%d hits=%d misses=%d underflows=%d hitRate=%.1f%% fetched=%d failures=%d",
+            getQueuedCount(), getCapacity(), getHits(), getMisses(), getUnderflows(),
+            getHitRate(), getFetched(), getFetchFailures()
+        );
+    }
+}
@@ -1,5 +1,6 @@
 package com.perisic.heart.service;
 
+import com.perisic.heart.log.Log;
 import java.io.*;
 import java.nio.file.*;
 
@@ -23,7 +24,7 @@ public class SessionManager {
         try {
             Files.write(sessionFile, username.getBytes());
         } catch (IOException e) {
-            System.out.println("Could not save session: " + e.getMessage());
+            Log.info("Could not save session: " + e.getMessage());
         }
     }
     
@@ -33,7 +34,7 @@ public class SessionManager {
                 return new String(Files.readAllBytes(sessionFile));
             }
         } catch (IOException e) {
-            System.out.println("Could not load session: " + e.getMessage());
+            Log.info("Could not load session: " + e.getMessage());
         }
         return null;
     }
@@ -42,7 +43,7 @@ public class SessionManager {
         try {
             Files.deleteIfExists(sessionFile);
         } catch (IOException e) {
-            System.out.println("Could not clear session: " + e.getMessage());
+            Log.info("Could not clear session: " + e.getMessage());
         }
     }
 }
@@ -1,26 +1,30 @@
 
 package com.perisic.heart.service;
 
-import javax.sound.sampled.*;
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.Counter;
+import com.perisic.heart.metrics.MetricsRegistry;
 import java.awt.Toolkit;
 import java.io.File;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Sound Manager - Plays sound files from sounds/ folder
+ * Sound Manager - Plays sound files from sounds/ folder through the AudioMixer
  * Falls back to system beeps if files not found
  */
 public class SoundManager {
     private static SoundManager instance;
-    private Map<String, Clip> soundClips;
+    private AudioMixer mixer;
     private boolean soundEnabled = true;
+    private BackgroundExecutor executor;
     
     private static final String SOUNDS_DIR = "sounds/";
+    private static final Counter CLIPS_PLAYED = MetricsRegistry.getInstance().counter("sound.clipsPlayed");
+    private static final Counter BEEPS_PLAYED = MetricsRegistry.getInstance().counter("sound.beepsPlayed");
     
     private SoundManager() {
-        soundClips = new HashMap<>();
+        mixer = new AudioMixer();
+        executor = BackgroundExecutor.getInstance();
         loadSounds();
     }
     
@@ -35,7 +39,7 @@ public class SoundManager {
      * Load all sound files from sounds/ folder
      */
     private void loadSounds() {
-        System.out.println("🔊 Loading sound files...");
+        Log.info("🔊 Loading sound files...");
         
         loadSound("correct", SOUNDS_DIR + "correct.wav");
         loadSound("wrong", SOUNDS_DIR + "wrong.wav");
@@ -43,38 +47,38 @@ public class SoundManager {
         loadSound("gameover", SOUNDS_DIR + "gameover.wav");
         loadSound("achievement", SOUNDS_DIR + "achievement.wav");
         
-        if (soundClips.isEmpty()) {
-            System.out.println("⚠️  No sound files found. Using system beeps.");
-            System.out.println("💡 To add sounds:");
-            System.out.println("   1. Create 'sounds/' folder in project root");
-            System.out.println("   2. Add these files:");
-            System.out.println("      - correct.wav (success sound)");
-            System.out.println("      - wrong.wav (error sound)");
-            System.out.println("      - tick.wav (timer tick)");
-            System.out.println("      - gameover.wav (time's up)");
-            System.out.println("      - achievement.wav (high score)");
+        if (mixer.getSoundCount() > 0 && !mixer.start()) {
+            // No audio device - same as having no files
+            mixer = new AudioMixer();
+        }
+        
+        if (mixer.getSoundCount() == 0) {
+            Log.warn("⚠️  No sound files found. Using system beeps.");
+            Log.info("💡 To add sounds:");
+            Log.info("   1. Create 'sounds/' folder in project root");
+            Log.info("   2. Add these files:");
+            Log.info("      - correct.wav (success sound)");
+            Log.info("      - wrong.wav (error sound)");
+            Log.info("      - tick.wav (timer tick)");
+            Log.info("      - gameover.wav (time's up)");
+            Log.info("      - achievement.wav (high score)");
         } else {
-            System.out.println("✅ Loaded " + soundClips.size() + " sound files!");
+            Log.info("✅ Loaded " + mixer.getSoundCount() + " sound files! (latency bound "
+                     + String.format("%.1f", mixer.getLatencyBoundMillis()) + " ms)");
         }
     }
     
     /**
-     * Load a single sound file
+     * Load a single sound file, pre-decoded into the mixer
      */
     private void loadSound(String name, String filePath) {
-        try {
-            File soundFile = new File(filePath);
-            if (soundFile.exists()) {
-                AudioInputStream audioStream = AudioSystem.getAudioInputStream(soundFile);
-                Clip clip = AudioSystem.getClip();
-                clip.open(audioStream);
-                soundClips.put(name, clip);
-                System.out.println("   ✓ " + name + ".wav loaded");
-            } else {
-                System.out.println("   ✗ " + name + ".wav not found");
+        File soundFile = new File(filePath);
+        if (soundFile.exists()) {
+            if (mixer.load(name, soundFile)) {
+                Log.info("   ✓ " + name + ".wav loaded");
             }
-        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
-            System.out.println("   ✗ " + name + ".wav error: " + e.getMessage());
+        } else {
+            Log.info("   ✗ " + name + ".wav not found");
         }
     }
     
@@ -84,17 +88,11 @@ public class SoundManager {
     public void playCorrectSound() {
         if (!soundEnabled) return;
         
-        if (soundClips.containsKey("correct")) {
+        if (mixer.hasSound("correct")) {
             playClip("correct");
         } else {
             // Fallback: Two quick beeps
-            new Thread(new Runnable() {
-                public void run() {
-                    Toolkit.getDefaultToolkit().beep();
-                    try { Thread.sleep(100); } catch (InterruptedException e) {}
-                    Toolkit.getDefaultToolkit().beep();
-                }
-            }).start();
+            playBeeps(2, 100);
         }
     }
     
@@ -104,7 +102,7 @@ public class SoundManager {
     public void playWrongSound() {
         if (!soundEnabled) return;
         
-        if (soundClips.containsKey("wrong")) {
+        if (mixer.hasSound("wrong")) {
             playClip("wrong");
         } else {
             // Fallback: One low beep
@@ -118,15 +116,11 @@ public class SoundManager {
     public void playTickSound() {
         if (!soundEnabled) return;
         
-        if (soundClips.containsKey("tick")) {
+        if (mixer.hasSound("tick")) {
             playClip("tick");
         } else {
             // Fallback: Quick beep (only if tick.wav not found)
-            new Thread(new Runnable() {
-                public void run() {
-                    Toolkit.getDefaultToolkit().beep();
-                }
-            }).start();
+            playBeeps(1, 0);
         }
     }
     
@@ -136,18 +130,11 @@ public class SoundManager {
     public void playGameOverSound() {
         if (!soundEnabled) return;
         
-        if (soundClips.containsKey("gameover")) {
+        if (mixer.hasSound("gameover")) {
             playClip("gameover");
         } else {
             // Fallback: Three beeps
-            new Thread(new Runnable() {
-                public void run() {
-                    for (int i = 0; i < 3; i++) {
-                        Toolkit.getDefaultToolkit().beep();
-                        try { Thread.sleep(200); } catch (InterruptedException e) {}
-                    }
-                }
-            }).start();
+            playBeeps(3, 200);
         }
     }
     
@@ -157,42 +144,33 @@ public class SoundManager {
     public void playAchievementSound() {
         if (!soundEnabled) return;
         
-        if (soundClips.containsKey("achievement")) {
+        if (mixer.hasSound("achievement")) {
             playClip("achievement");
         } else {
             // Fallback: Victory beeps
-            new Thread(new Runnable() {
-                public void run() {
-                    for (int i = 0; i < 3; i++) {
-                        Toolkit.getDefaultToolkit().beep();
-                        try { Thread.sleep(150); } catch (InterruptedException e) {}
-                    }
-                }
-            }).start();
+            playBeeps(3, 150);
         }
     }
     
     /**
-     * Play a sound clip from loaded files
+     * Play a sound clip from loaded files - mixed in, overlapping anything already playing
      */
     private void playClip(String name) {
-        if (soundClips.containsKey(name)) {
-            new Thread(new Runnable() {
-                public void run() {
-                    try {
-                        Clip clip = soundClips.get(name);
-                        if (clip != null) {
-                            clip.setFramePosition(0); // Rewind to start
-                            clip.start();
-                            System.out.println("🔊 Playing: " + name + ".wav"); // Debug log
-                        }
-                    } catch (Exception e) {
-                        System.out.println("❌ Error playing " + name + ": " + e.getMessage());
-                    }
-                }
-            }).start();
-        } else {
-            System.out.println("⚠️  " + name + ".wav not loaded, using beep"); // Debug log
+        mixer.play(name);
+        CLIPS_PLAYED.increment();
+    }
+    
+    public String getMixerStats() {
+        return mixer.getStats();
+    }
+    
+    /**
+     * Fallback beeps, spaced out by the background timer instead of a sleeping thread
+     */
+    private void playBeeps(int count, long intervalMs) {
+        BEEPS_PLAYED.add(count);
+        for (int i = 0; i < count; i++) {
+            executor.schedule(() -> Toolkit.getDefaultToolkit().beep(), i * intervalMs, TimeUnit.MILLISECONDS);
         }
     }
     
@@ -201,7 +179,7 @@ public class SoundManager {
      */
     public void toggleSound() {
         soundEnabled = !soundEnabled;
-        System.out.println(soundEnabled ? "🔊 Sound enabled" : "🔇 Sound muted");
+        Log.info(soundEnabled ? "🔊 Sound enabled" : "🔇 Sound muted");
     }
     
     /**
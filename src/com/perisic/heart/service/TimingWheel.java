@@ -0,0 +1,238 @@
+package com.perisic.heart.service;
+
+import com.perisic.heart.log.Log;
+import com.perisic.heart.metrics.LatencyHistogram;
+import com.perisic.heart.metrics.MetricsRegistry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel for large numbers of timeouts, such as one expiry per
+ * game session.
+ *
+ * Timeouts hash into a ring of buckets by deadline; a single thread advances
+ * one bucket per tick and fires what is due. Scheduling and cancelling are
+ * O(1) and a tick only touches one bucket, so thousands of idle sessions
+ * cost nothing between their deadlines. Deadlines further out than one turn
+ * of the wheel wait a number of rounds in their bucket.
+ *
+ * Timeouts fire up to one tick late, never early. Callbacks run on the wheel
+ * thread and must be short; hand anything slow to another executor.
+ */
+public class TimingWheel {
+    private static TimingWheel instance;
+    
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int FIRED = 2;
+    
+    /** A scheduled callback. */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // Owned by the wheel thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+        
+        /**
+         * Returns false if the timeout already fired or was cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+            cancelledQueue.add(this);
+            cancelledCount.incrementAndGet();
+            return true;
+        }
+        
+        public boolean isCancelled() { return state.get() == CANCELLED; }
+        public boolean hasFired() { return state.get() == FIRED; }
+        public long getDeadlineNanos() { return deadlineNanos; }
+    }
+    
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+        
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+        
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) timeout.prev.next = next;
+            if (next != null) next.prev = timeout.prev;
+            if (timeout == head) head = next;
+            if (timeout == tail) tail = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+    
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos;
+    private final Queue<Timeout> newQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledQueue = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick = 0; // Owned by the wheel thread
+    
+    // Metrics
+    private final LatencyHistogram lateness = new LatencyHistogram();
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong ticks = new AtomicLong();
+    
+    /**
+     * @param tick       resolution of the wheel
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     */
+    public TimingWheel(String name, long tick, TimeUnit unit, int wheelSize) {
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+     * The shared wheel: 10 ms ticks (heart.timer.tickMs) over 512 buckets.
+     */
+    public static synchronized TimingWheel getInstance() {
+        if (instance == null) {
+            instance = new TimingWheel("timing-wheel", Long.getLong("heart.timer.tickMs", 10),
+                                       TimeUnit.MILLISECONDS, 512);
+            MetricsRegistry.getInstance().register("timer.lateness", instance.getLateness());
+        }
+        return instance;
+    }
+    
+    /**
+     * Run the task once System.nanoTime() passes the deadline.
+     */
+    public Timeout schedule(Runnable task, long deadlineNanos) {
+        Timeout timeout = new Timeout(task, deadlineNanos);
+        scheduledCount.incrementAndGet();
+        newQueue.add(timeout);
+        return timeout;
+    }
+    
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, System.nanoTime() + unit.toNanos(delay));
+    }
+    
+    private void run() {
+        while (running) {
+            long tickEnd = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) - tickEnd < 0) {
+                LockSupport.parkNanos(tickEnd - now);
+                if (!running) return;
+            }
+            
+            removeCancelled();
+            addNew();
+            expire(wheel[(int) (tick & mask)], now);
+            tick++;
+            ticks.incrementAndGet();
+        }
+    }
+    
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledQueue.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+    
+    private void addNew() {
+        Timeout timeout;
+        while ((timeout = newQueue.poll()) != null) {
+            if (timeout.state.get() != PENDING) continue;
+            // Deadlines already in the past go into the current bucket
+            long dueTick = Math.max(tick, Math.floorDiv(timeout.deadlineNanos - startNanos, tickNanos));
+            timeout.rounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+    
+    private void expire(Bucket bucket, long now) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                timeout = timeout.next;
+                continue;
+            }
+            Timeout next = bucket.remove(timeout);
+            if (timeout.state.compareAndSet(PENDING, FIRED)) {
+                lateness.record(now - timeout.deadlineNanos);
+                firedCount.incrementAndGet();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    failedCount.incrementAndGet();
+                    Log.error("❌ Timer task failed: " + e);
+                }
+            }
+            timeout = next;
+        }
+    }
+    
+    /**
+     * Stops the wheel; pending timeouts never fire.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+    
+    /**
+     * How late timeouts fired compared to their deadline.
+     */
+    public LatencyHistogram getLateness() { return lateness; }
+    public long getPendingCount() {
+        return scheduledCount.get() - firedCount.get() - cancelledCount.get();
+    }
+    public long getFiredCount() { return firedCount.get(); }
+    public long getCancelledCount() { return cancelledCount.get(); }
+    public long getTickNanos() { return tickNanos; }
+    
+    public String getStats() {
+        return String.format("pending=%d fired=%d cancelled=%d failed=%d ticks=%d late %s",
+            getPendingCount(), firedCount.get(), cancelledCount.get(), failedCount.get(), ticks.get(),
+            lateness.summary(TimeUnit.MILLISECONDS));
+    }
+}